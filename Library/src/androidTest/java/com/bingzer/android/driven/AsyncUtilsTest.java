@@ -0,0 +1,117 @@
+package com.bingzer.android.driven;
+
+import android.test.AndroidTestCase;
+
+import com.bingzer.android.driven.contracts.Delegate;
+import com.bingzer.android.driven.contracts.Operation;
+import com.bingzer.android.driven.contracts.Task;
+import com.bingzer.android.driven.utils.AsyncUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class AsyncUtilsTest extends AndroidTestCase {
+
+    public void test_doAsync() throws Exception {
+        final CountDownLatch signal = new CountDownLatch(1);
+        Operation<String> operation = AsyncUtils.doAsync(new Task<String>() {
+            @Override
+            public void onCompleted(String result) {
+                assertEquals("Hello", result);
+                signal.countDown();
+            }
+        }, new Delegate<String>() {
+            @Override
+            public String invoke() {
+                return "Hello";
+            }
+        });
+
+        assertEquals("Hello", operation.get(5, TimeUnit.SECONDS));
+        signal.await();
+        assertTrue(operation.isDone());
+        assertFalse(operation.isCancelled());
+    }
+
+    public void test_doAsync_cancel() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        Operation<Boolean> operation = AsyncUtils.doAsync(new Task<Boolean>() {
+            @Override
+            public void onCompleted(Boolean result) {
+                fail("Should not be called");
+            }
+        }, new Delegate<Boolean>() {
+            @Override
+            public Boolean invoke() {
+                started.countDown();
+                try {
+                    Thread.sleep(10000);
+                }
+                catch (InterruptedException e){
+                    interrupted.countDown();
+                }
+                return true;
+            }
+        });
+
+        started.await();
+        try {
+            operation.get(10, TimeUnit.MILLISECONDS);
+            fail("Should throw exception");
+        }
+        catch (TimeoutException e){
+            // -- ignore
+        }
+
+        assertTrue(operation.cancel());
+        assertTrue(operation.isCancelled());
+        assertTrue(operation.isDone());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    public void test_doAsync_error() throws Exception {
+        final CountDownLatch signal = new CountDownLatch(1);
+        AsyncUtils.doAsync(new Task.WithErrorReporting<Boolean>() {
+            @Override
+            public void onCompleted(Boolean result) {
+                fail("Should not be called");
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                assertEquals("hi", error.getMessage());
+                signal.countDown();
+            }
+        }, new Delegate<Boolean>() {
+            @Override
+            public Boolean invoke() {
+                throw new DrivenException("hi");
+            }
+        });
+        signal.await();
+    }
+
+    public void test_doAsync_completedThrows() throws Exception {
+        final CountDownLatch signal = new CountDownLatch(1);
+        AsyncUtils.doAsync(new Task.WithErrorReporting<Boolean>() {
+            @Override
+            public void onCompleted(Boolean result) {
+                throw new IllegalStateException("hi");
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                assertTrue(error instanceof IllegalStateException);
+                signal.countDown();
+            }
+        }, new Delegate<Boolean>() {
+            @Override
+            public Boolean invoke() {
+                return true;
+            }
+        });
+        assertTrue(signal.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,84 @@
+package com.bingzer.android.driven;
+
+import android.test.AndroidTestCase;
+
+import com.bingzer.android.driven.utils.BandwidthLimiter;
+import com.bingzer.android.driven.utils.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class BandwidthLimiterTest extends AndroidTestCase {
+
+    public void test_unlimited() throws Exception {
+        BandwidthLimiter limiter = new BandwidthLimiter(BandwidthLimiter.UNLIMITED, null);
+        assertFalse(limiter.isLimited());
+
+        long start = System.currentTimeMillis();
+        limiter.acquire(100 * 1024 * 1024);
+        assertTrue(System.currentTimeMillis() - start < 100);
+    }
+
+    public void test_rate() throws Exception {
+        BandwidthLimiter limiter = new BandwidthLimiter(100 * 1024, null);
+        assertTrue(limiter.isLimited());
+
+        long start = System.currentTimeMillis();
+        // the first second's worth goes through right away
+        limiter.acquire(100 * 1024);
+        assertTrue(System.currentTimeMillis() - start < 100);
+
+        limiter.acquire(50 * 1024);
+        limiter.acquire(1);
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue(elapsed >= 450);
+        assertTrue(elapsed < 1500);
+    }
+
+    public void test_parent() throws Exception {
+        BandwidthLimiter parent = new BandwidthLimiter(BandwidthLimiter.UNLIMITED, null);
+        BandwidthLimiter limiter = new BandwidthLimiter(BandwidthLimiter.UNLIMITED, parent);
+        assertFalse(limiter.isLimited());
+
+        parent.setRate(1024);
+        assertTrue(limiter.isLimited());
+    }
+
+    public void test_setRate_wakesUp() throws Exception {
+        final BandwidthLimiter limiter = new BandwidthLimiter(1024, null);
+        limiter.acquire(1024 * 1024);
+
+        final CountDownLatch signal = new CountDownLatch(1);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    limiter.acquire(1);
+                    signal.countDown();
+                }
+                catch (Exception e){
+                    // fails below
+                }
+            }
+        }).start();
+
+        assertFalse(signal.await(200, TimeUnit.MILLISECONDS));
+        limiter.setRate(BandwidthLimiter.UNLIMITED);
+        assertTrue(signal.await(1, TimeUnit.SECONDS));
+    }
+
+    public void test_throttle() throws Exception {
+        BandwidthLimiter limiter = new BandwidthLimiter(64 * 1024, null);
+        InputStream input = IOUtils.throttle(new ByteArrayInputStream(new byte[160 * 1024]), limiter);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        long start = System.currentTimeMillis();
+        IOUtils.copy(input, output);
+        assertEquals(160 * 1024, output.size());
+        // the second 64 KB is paid back before the rest is read
+        assertTrue(System.currentTimeMillis() - start >= 900);
+    }
+}
@@ -0,0 +1,94 @@
+package com.bingzer.android.driven;
+
+import android.test.AndroidTestCase;
+
+import com.bingzer.android.driven.utils.BufferPool;
+import com.bingzer.android.driven.utils.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+
+public class BufferPoolTest extends AndroidTestCase {
+
+    public void test_acquire_roundsUp() throws Exception {
+        BufferPool pool = new BufferPool(2);
+        assertEquals(BufferPool.MIN_BUFFER_SIZE, pool.acquire(1).length);
+        assertEquals(BufferPool.MIN_BUFFER_SIZE * 2, pool.acquire(BufferPool.MIN_BUFFER_SIZE + 1).length);
+        assertEquals(BufferPool.MAX_BUFFER_SIZE, pool.acquire(BufferPool.MAX_BUFFER_SIZE).length);
+        assertEquals(BufferPool.MAX_BUFFER_SIZE + 1, pool.acquire(BufferPool.MAX_BUFFER_SIZE + 1).length);
+    }
+
+    public void test_release_reuses() throws Exception {
+        BufferPool pool = new BufferPool(2);
+        byte[] buffer = pool.acquire(100);
+        pool.release(buffer);
+        assertEquals(1, pool.size());
+
+        assertSame(buffer, pool.acquire(BufferPool.MIN_BUFFER_SIZE));
+        assertEquals(0, pool.size());
+    }
+
+    public void test_release_bounded() throws Exception {
+        BufferPool pool = new BufferPool(2);
+        pool.release(new byte[BufferPool.MIN_BUFFER_SIZE]);
+        pool.release(new byte[BufferPool.MIN_BUFFER_SIZE]);
+        pool.release(new byte[BufferPool.MIN_BUFFER_SIZE]);
+        // not a pooled size
+        pool.release(new byte[1000]);
+        pool.release(new byte[BufferPool.MAX_BUFFER_SIZE * 2]);
+
+        assertEquals(2, pool.size());
+    }
+
+    public void test_write_stream() throws Exception {
+        byte[] content = createContent(BufferPool.MIN_BUFFER_SIZE * 3 + 7);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        IOUtils.write(new ByteArrayInputStream(content), output, null);
+
+        assertTrue(Arrays.equals(content, output.toByteArray()));
+    }
+
+    public void test_write_file() throws Exception {
+        byte[] content = createContent(BufferPool.MIN_BUFFER_SIZE + 13);
+        File source = new File(getContext().getCacheDir(), "BufferPoolTest.source");
+        File dest = new File(getContext().getCacheDir(), "BufferPoolTest.dest");
+        try {
+            FileOutputStream output = new FileOutputStream(source);
+            output.write(content);
+            output.close();
+
+            // through the file channels
+            FileInputStream input = new FileInputStream(source);
+            output = new FileOutputStream(dest);
+            IOUtils.write(input, output, null);
+            input.close();
+            output.close();
+            assertEquals(content.length, dest.length());
+
+            // through a channel over the stream
+            input = new FileInputStream(source);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            IOUtils.write(input, bytes, null);
+            input.close();
+            assertTrue(Arrays.equals(content, bytes.toByteArray()));
+        }
+        finally {
+            source.delete();
+            dest.delete();
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static byte[] createContent(int length){
+        byte[] content = new byte[length];
+        for(int i = 0; i < length; i++){
+            content[i] = (byte) i;
+        }
+        return content;
+    }
+}
@@ -0,0 +1,66 @@
+package com.bingzer.android.driven;
+
+import android.test.AndroidTestCase;
+
+import com.bingzer.android.driven.utils.ChecksumCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+public class ChecksumCacheTest extends AndroidTestCase {
+
+    private File file;
+    private ChecksumCache cache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = new File(getContext().getCacheDir(), "ChecksumCacheTest");
+        cache = new ChecksumCache(ChecksumCache.DEFAULT_TTL, 10);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        file.delete();
+    }
+
+    public void test_md5() throws Exception {
+        write("abc");
+        assertEquals("900150983cd24fb0d6963f7d28e17f72", ChecksumCache.md5(file));
+
+        write("");
+        assertEquals("d41d8cd98f00b204e9800998ecf8427e", ChecksumCache.md5(file));
+    }
+
+    public void test_getMd5_changed() throws Exception {
+        write("abc");
+        assertEquals("900150983cd24fb0d6963f7d28e17f72", cache.getMd5(file));
+
+        // different size, different key
+        write("abcd");
+        assertEquals("e2fc714c4727ee9395f324cd2e7f331f", cache.getMd5(file));
+    }
+
+    public void test_getMd5_cached() throws Exception {
+        write("abc");
+        long modified = file.lastModified();
+        String md5 = cache.getMd5(file);
+
+        // same path, size and time: not hashed again
+        write("xyz");
+        file.setLastModified(modified);
+        assertEquals(md5, cache.getMd5(file));
+
+        cache.clear();
+        assertEquals("d16fb36f0911f878998c136191af705e", cache.getMd5(file));
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void write(String content) throws Exception {
+        FileOutputStream output = new FileOutputStream(file);
+        output.write(content.getBytes("UTF-8"));
+        output.close();
+    }
+}
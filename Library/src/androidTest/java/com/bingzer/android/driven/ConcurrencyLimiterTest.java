@@ -0,0 +1,59 @@
+package com.bingzer.android.driven;
+
+import android.test.AndroidTestCase;
+
+import com.bingzer.android.driven.utils.ConcurrencyLimiter;
+
+public class ConcurrencyLimiterTest extends AndroidTestCase {
+
+    public void test_acquireRelease() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 8);
+        limiter.acquire();
+        limiter.acquire();
+        assertEquals(2, limiter.getInFlight());
+
+        limiter.release(false);
+        limiter.release(false);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    public void test_additiveIncrease() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 3);
+        for(int i = 0; i < 10; i++){
+            limiter.acquire();
+            limiter.release(false);
+        }
+        assertEquals(3, limiter.getLimit());
+    }
+
+    public void test_multiplicativeDecrease() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(8, 1, 8);
+        limiter.acquire();
+        limiter.release(true);
+        assertEquals(4, limiter.getLimit());
+
+        for(int i = 0; i < 5; i++){
+            limiter.acquire();
+            limiter.release(true);
+        }
+        assertEquals(1, limiter.getLimit());
+    }
+
+    public void test_illegalArguments() {
+        try {
+            new ConcurrencyLimiter(0, 0, 1);
+            fail("Should throw");
+        }
+        catch (IllegalArgumentException e){
+            // good
+        }
+
+        try {
+            new ConcurrencyLimiter(5, 1, 4);
+            fail("Should throw");
+        }
+        catch (IllegalArgumentException e){
+            // good
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.bingzer.android.driven;
+
+import android.test.AndroidTestCase;
+
+import com.bingzer.android.driven.utils.IOUtils;
+
+import java.io.File;
+import java.io.FileWriter;
+
+public class ContentCacheTest extends AndroidTestCase {
+
+    private File directory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        directory = new File(getContext().getCacheDir(), "content-cache-test");
+        IOUtils.deleteTree(directory, true);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        IOUtils.deleteTree(directory, true);
+        super.tearDown();
+    }
+
+    public void test_putGet() throws Exception {
+        ContentCache cache = new ContentCache(directory, 1024);
+        cache.put("Id01", "Rev01", createFile("source", "Hello"));
+
+        File destination = new File(getContext().getCacheDir(), "destination");
+        assertTrue(cache.get("Id01", "Rev01", destination));
+        assertEquals(5, destination.length());
+
+        assertFalse(cache.get("Id01", "Rev02", destination));
+        assertFalse(cache.get("Id02", "Rev01", destination));
+        assertEquals(5, cache.getSize());
+    }
+
+    public void test_lruEviction() throws Exception {
+        ContentCache cache = new ContentCache(directory, 10);
+        File destination = new File(getContext().getCacheDir(), "destination");
+
+        cache.put("Id01", "Rev01", createFile("source1", "12345"));
+        cache.put("Id02", "Rev01", createFile("source2", "12345"));
+        assertTrue(cache.get("Id01", "Rev01", destination));
+
+        cache.put("Id03", "Rev01", createFile("source3", "12345"));
+        assertTrue(cache.get("Id01", "Rev01", destination));
+        assertFalse(cache.get("Id02", "Rev01", destination));
+        assertTrue(cache.get("Id03", "Rev01", destination));
+        assertEquals(10, cache.getSize());
+    }
+
+    public void test_reload() throws Exception {
+        new ContentCache(directory, 1024).put("Id01", "Rev01", createFile("source", "Hello"));
+
+        ContentCache cache = new ContentCache(directory, 1024);
+        assertEquals(5, cache.getSize());
+        assertTrue(cache.get("Id01", "Rev01", new File(getContext().getCacheDir(), "destination")));
+
+        cache.clear();
+        assertEquals(0, cache.getSize());
+    }
+
+    private File createFile(String name, String content) throws Exception {
+        File file = new File(getContext().getCacheDir(), name);
+        FileWriter writer = new FileWriter(file);
+        writer.write(content);
+        writer.close();
+        return file;
+    }
+}
@@ -0,0 +1,243 @@
+package com.bingzer.android.driven;
+
+import android.test.AndroidTestCase;
+
+import com.bingzer.android.driven.utils.Chunker;
+import com.bingzer.android.driven.utils.IOUtils;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DeltaSyncTest extends AndroidTestCase {
+
+    private final Chunker chunker = new Chunker(1024, 4096, 16 * 1024);
+
+    public void test_split_coversEverything() throws Exception {
+        byte[] content = createContent(100 * 1024);
+        List<Chunker.Chunk> chunks = chunker.split(new ByteArrayInputStream(content));
+
+        long offset = 0;
+        for(Chunker.Chunk chunk : chunks){
+            assertEquals(offset, chunk.getOffset());
+            assertTrue(chunk.getLength() <= 16 * 1024);
+            offset += chunk.getLength();
+        }
+        assertEquals(content.length, offset);
+    }
+
+    public void test_split_insertion() throws Exception {
+        byte[] content = createContent(100 * 1024);
+        byte[] modified = new byte[content.length + 10];
+        System.arraycopy(content, 0, modified, 0, 50 * 1024);
+        System.arraycopy(content, 50 * 1024, modified, 50 * 1024 + 10, content.length - 50 * 1024);
+
+        Set<String> hashes = new HashSet<String>();
+        for(Chunker.Chunk chunk : chunker.split(new ByteArrayInputStream(content))){
+            hashes.add(chunk.getHash());
+        }
+        List<Chunker.Chunk> chunks = chunker.split(new ByteArrayInputStream(modified));
+        int changed = 0;
+        for(Chunker.Chunk chunk : chunks){
+            if(!hashes.contains(chunk.getHash())) changed++;
+        }
+
+        // only the chunks around the insertion are different
+        assertTrue(changed > 0);
+        assertTrue(changed <= 2);
+    }
+
+    public void test_manifest() throws Exception {
+        List<Chunker.Chunk> chunks = chunker.split(new ByteArrayInputStream(createContent(50 * 1024)));
+        String manifest = DeltaSync.writeManifest(50 * 1024, chunks);
+
+        long[] length = new long[1];
+        List<Chunker.Chunk> parsed = DeltaSync.parseManifest(new ByteArrayInputStream(manifest.getBytes("UTF-8")), length);
+        assertEquals(50 * 1024, length[0]);
+        assertEquals(chunks.size(), parsed.size());
+        for(int i = 0; i < chunks.size(); i++){
+            assertEquals(chunks.get(i).getHash(), parsed.get(i).getHash());
+            assertEquals(chunks.get(i).getOffset(), parsed.get(i).getOffset());
+            assertEquals(chunks.get(i).getLength(), parsed.get(i).getLength());
+        }
+    }
+
+    public void test_upload_download() throws Exception {
+        MemoryProvider remote = new MemoryProvider();
+        DeltaSync deltaSync = new DeltaSync(remote.provider, chunker);
+        byte[] content = createContent(100 * 1024);
+
+        assertNotNull(deltaSync.upload(null, local("Upload01", content)));
+        assertTrue(remote.files.containsKey(DeltaSync.MANIFEST));
+
+        File target = file("Download01");
+        target.delete();
+        assertTrue(deltaSync.download(null, new LocalFile(target)));
+        assertTrue(Arrays.equals(content, read(target)));
+    }
+
+    public void test_upload_download_changed() throws Exception {
+        MemoryProvider remote = new MemoryProvider();
+        DeltaSync deltaSync = new DeltaSync(remote.provider, chunker);
+        byte[] content = createContent(100 * 1024);
+        deltaSync.upload(null, local("Upload02", content));
+        int chunks = remote.files.size() - 1;
+
+        // the same file, with a few bytes changed in the middle
+        byte[] modified = content.clone();
+        for(int i = 0; i < 10; i++) modified[50 * 1024 + i]++;
+        remote.created = 0;
+        assertNotNull(deltaSync.upload(null, local("Upload02", modified)));
+        assertTrue(remote.created <= 2);
+        // the manifest is replaced in place, never deleted
+        assertTrue(remote.files.containsKey(DeltaSync.MANIFEST));
+        assertEquals(0, remote.deletedManifests);
+
+        // the local copy still has the old content
+        File target = local("Upload02", content).getFile();
+        remote.opened = 0;
+        assertTrue(deltaSync.download(null, new LocalFile(target)));
+        assertTrue(Arrays.equals(modified, read(target)));
+        // the manifest and the changed chunks only
+        assertTrue(remote.opened <= 3);
+        assertTrue(remote.opened < chunks);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private LocalFile local(String name, byte[] content) throws IOException {
+        File file = file(name);
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(content);
+        }
+        finally {
+            output.close();
+        }
+        return new LocalFile(file);
+    }
+
+    private File file(String name){
+        return new File(getContext().getCacheDir(), name);
+    }
+
+    private static byte[] read(File file) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        IOUtils.copy(new FileInputStream(file), output);
+        return output.toByteArray();
+    }
+
+    private static byte[] createContent(int length){
+        byte[] content = new byte[length];
+        new Random(1).nextBytes(content);
+        return content;
+    }
+
+    /**
+     * A provider with a single folder, kept in memory
+     */
+    @SuppressWarnings("unchecked")
+    private static class MemoryProvider {
+        final Map<String, byte[]> files = new HashMap<String, byte[]>();
+        final StorageProvider provider = mock(StorageProvider.class);
+        final RemoteFile folder = remoteFile("Folder");
+        boolean folderCreated;
+        int created;
+        int opened;
+        int deletedManifests;
+
+        MemoryProvider() throws Exception {
+            when(provider.get(anyString())).then(new Answer<RemoteFile>() {
+                @Override
+                public RemoteFile answer(InvocationOnMock invocation) throws Throwable {
+                    return folderCreated ? folder : null;
+                }
+            });
+            when(provider.create(anyString())).then(new Answer<RemoteFile>() {
+                @Override
+                public RemoteFile answer(InvocationOnMock invocation) throws Throwable {
+                    folderCreated = true;
+                    return folder;
+                }
+            });
+            when(provider.get(any(RemoteFile.class), anyString())).then(new Answer<RemoteFile>() {
+                @Override
+                public RemoteFile answer(InvocationOnMock invocation) throws Throwable {
+                    String name = (String) invocation.getArguments()[1];
+                    return files.containsKey(name) ? remoteFile(name) : null;
+                }
+            });
+            when(provider.list(any(RemoteFile.class))).then(new Answer<List<RemoteFile>>() {
+                @Override
+                public List<RemoteFile> answer(InvocationOnMock invocation) throws Throwable {
+                    List<RemoteFile> list = new ArrayList<RemoteFile>();
+                    for(String name : files.keySet()) list.add(remoteFile(name));
+                    return list;
+                }
+            });
+            when(provider.create(any(RemoteFile.class), anyString(), anyString(), any(InputStream.class), anyLong())).then(new Answer<RemoteFile>() {
+                @Override
+                public RemoteFile answer(InvocationOnMock invocation) throws Throwable {
+                    String name = (String) invocation.getArguments()[1];
+                    ByteArrayOutputStream output = new ByteArrayOutputStream();
+                    IOUtils.copy((InputStream) invocation.getArguments()[3], output);
+                    files.put(name, output.toByteArray());
+                    created++;
+                    return remoteFile(name);
+                }
+            });
+            when(provider.update(any(RemoteFile.class), any(LocalFile.class))).then(new Answer<RemoteFile>() {
+                @Override
+                public RemoteFile answer(InvocationOnMock invocation) throws Throwable {
+                    RemoteFile remoteFile = (RemoteFile) invocation.getArguments()[0];
+                    files.put(remoteFile.getName(), read(((LocalFile) invocation.getArguments()[1]).getFile()));
+                    return remoteFile;
+                }
+            });
+            when(provider.open(any(RemoteFile.class))).then(new Answer<InputStream>() {
+                @Override
+                public InputStream answer(InvocationOnMock invocation) throws Throwable {
+                    byte[] content = files.get(((RemoteFile) invocation.getArguments()[0]).getName());
+                    opened++;
+                    return content != null ? new ByteArrayInputStream(content) : null;
+                }
+            });
+            when(provider.delete(anyString())).then(new Answer<Boolean>() {
+                @Override
+                public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                    String name = (String) invocation.getArguments()[0];
+                    if(DeltaSync.MANIFEST.equals(name)) deletedManifests++;
+                    return files.remove(name) != null;
+                }
+            });
+        }
+
+        static RemoteFile remoteFile(String name){
+            RemoteFile remoteFile = mock(RemoteFile.class);
+            when(remoteFile.getId()).thenReturn(name);
+            when(remoteFile.getName()).thenReturn(name);
+            return remoteFile;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.bingzer.android.driven;
+
+import android.test.AndroidTestCase;
+
+import com.bingzer.android.driven.contracts.ExecutorFactory;
+import com.bingzer.android.driven.contracts.Lane;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+public class ExecutorFactoryTest extends AndroidTestCase {
+
+    public void test_createExecutor() throws Exception {
+        ExecutorFactory.Default factory = new ExecutorFactory.Default(1, 2, 4);
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) factory.createExecutor("Test", Lane.INTERACTIVE);
+
+        assertEquals(1, executor.getCorePoolSize());
+        assertEquals(2, executor.getMaximumPoolSize());
+        assertEquals(4, executor.getQueue().remainingCapacity());
+
+        final String[] threadName = new String[1];
+        final CountDownLatch signal = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                threadName[0] = Thread.currentThread().getName();
+                signal.countDown();
+            }
+        });
+        signal.await();
+        assertEquals("Driven-Test-interactive-1", threadName[0]);
+
+        executor.shutdown();
+    }
+
+    public void test_createExecutor_rejected() throws Exception {
+        ExecutorService executor = new ExecutorFactory.Default(1, 1, 1).createExecutor("Test", Lane.TRANSFER);
+
+        final CountDownLatch block = new CountDownLatch(1);
+        Runnable blocking = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    block.await();
+                }
+                catch (InterruptedException e){
+                    // ignore
+                }
+            }
+        };
+
+        executor.execute(blocking); // running
+        executor.execute(blocking); // queued
+        try {
+            executor.execute(blocking);
+            fail("Should throw exception");
+        }
+        catch (RejectedExecutionException e){
+            // -- ignore
+        }
+
+        block.countDown();
+        executor.shutdown();
+    }
+
+    public void test_setPoolSize() throws Exception {
+        ExecutorFactory.Default factory = new ExecutorFactory.Default();
+        factory.setPoolSize(Lane.TRANSFER, 3, 5);
+
+        assertEquals(3, factory.getCorePoolSize(Lane.TRANSFER));
+        assertEquals(5, factory.getMaxPoolSize(Lane.TRANSFER));
+        assertEquals(1, factory.getMaxPoolSize(Lane.BACKGROUND));
+
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) factory.createExecutor("Test", Lane.TRANSFER);
+        assertEquals(3, executor.getCorePoolSize());
+        assertEquals(5, executor.getMaximumPoolSize());
+        executor.shutdown();
+    }
+
+    public void test_illegalArguments(){
+        try {
+            new ExecutorFactory.Default(0, 1);
+            fail("Should throw exception");
+        }
+        catch (IllegalArgumentException e){
+            // -- ignore
+        }
+
+        try {
+            new ExecutorFactory.Default(2, 1);
+            fail("Should throw exception");
+        }
+        catch (IllegalArgumentException e){
+            // -- ignore
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.bingzer.android.driven;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+
+public class ListingCacheTest extends AndroidTestCase {
+
+    public void test_putGet() throws Exception {
+        ListingCache cache = new ListingCache();
+        List<RemoteFile> files = new ArrayList<RemoteFile>();
+        files.add(mock(RemoteFile.class));
+
+        cache.put("Folder01", files, "Hash01");
+        files.add(mock(RemoteFile.class));
+
+        ListingCache.Listing listing = cache.get("Folder01");
+        assertEquals("Hash01", listing.getValidator());
+        assertEquals(1, listing.getFiles().size());
+        assertNull(cache.get("Folder02"));
+    }
+
+    public void test_put_noValidator() throws Exception {
+        ListingCache cache = new ListingCache();
+        cache.put("Folder01", new ArrayList<RemoteFile>(), null);
+        assertNull(cache.get("Folder01"));
+    }
+
+    public void test_lruEviction() throws Exception {
+        ListingCache cache = new ListingCache(2);
+        cache.put("Folder01", new ArrayList<RemoteFile>(), "1");
+        cache.put("Folder02", new ArrayList<RemoteFile>(), "2");
+        cache.get("Folder01");
+        cache.put("Folder03", new ArrayList<RemoteFile>(), "3");
+
+        assertNotNull(cache.get("Folder01"));
+        assertNull(cache.get("Folder02"));
+        assertNotNull(cache.get("Folder03"));
+
+        cache.invalidate("Folder01");
+        assertNull(cache.get("Folder01"));
+    }
+}
@@ -0,0 +1,99 @@
+package com.bingzer.android.driven;
+
+import android.test.AndroidTestCase;
+
+import com.bingzer.android.driven.utils.ExpiringLruCache;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MetadataCacheTest extends AndroidTestCase {
+
+    public void test_getById_getByName() throws Exception {
+        MetadataCache cache = new MetadataCache();
+        RemoteFile remoteFile = remoteFile("Id01", "Title01");
+
+        cache.put("Parent01", remoteFile);
+        assertSame(remoteFile, cache.get("Id01"));
+        assertSame(remoteFile, cache.get("Parent01", "Title01"));
+        assertNull(cache.get("Parent02", "Title01"));
+    }
+
+    public void test_invalidate() throws Exception {
+        MetadataCache cache = new MetadataCache();
+        cache.put("Parent01", remoteFile("Id01", "Title01"));
+
+        cache.invalidate("Id01");
+        assertNull(cache.get("Id01"));
+        assertNull(cache.get("Parent01", "Title01"));
+    }
+
+    public void test_invalidate_moved() throws Exception {
+        MetadataCache cache = new MetadataCache();
+        RemoteFile remoteFile = remoteFile("Id01", "Title01");
+        cache.put("Parent01", remoteFile);
+
+        cache.invalidate("Id01");
+        cache.put("Parent02", remoteFile);
+        assertNull(cache.get("Parent01", "Title01"));
+        assertSame(remoteFile, cache.get("Parent02", "Title01"));
+    }
+
+    public void test_renamed() throws Exception {
+        MetadataCache cache = new MetadataCache();
+        RemoteFile remoteFile = remoteFile("Id01", "Title01");
+        cache.put("Parent01", remoteFile);
+
+        when(remoteFile.getName()).thenReturn("Title02");
+        assertNull(cache.get("Parent01", "Title01"));
+    }
+
+    public void test_missing() throws Exception {
+        MetadataCache cache = new MetadataCache();
+        assertFalse(cache.isMissing("Parent01", "Title01"));
+
+        cache.putMissing("Parent01", "Title01");
+        assertTrue(cache.isMissing("Parent01", "Title01"));
+        assertFalse(cache.isMissing("Parent02", "Title01"));
+
+        // created somewhere
+        cache.put("Parent02", remoteFile("Id01", "Title01"));
+        assertFalse(cache.isMissing("Parent01", "Title01"));
+    }
+
+    public void test_lruEviction() throws Exception {
+        ExpiringLruCache<String, String> cache = new ExpiringLruCache<String, String>(1000, 2);
+        cache.put("1", "One");
+        cache.put("2", "Two");
+        cache.get("1");
+        cache.put("3", "Three");
+
+        assertEquals("One", cache.get("1"));
+        assertNull(cache.get("2"));
+        assertEquals("Three", cache.get("3"));
+    }
+
+    public void test_ttl() throws Exception {
+        final long[] now = new long[]{ 0 };
+        ExpiringLruCache<String, String> cache = new ExpiringLruCache<String, String>(1000, 2){
+            @Override
+            protected long now() {
+                return now[0];
+            }
+        };
+
+        cache.put("1", "One");
+        now[0] = 999;
+        assertEquals("One", cache.get("1"));
+        now[0] = 1000;
+        assertNull(cache.get("1"));
+        assertEquals(0, cache.size());
+    }
+
+    private static RemoteFile remoteFile(String id, String name){
+        RemoteFile remoteFile = mock(RemoteFile.class);
+        when(remoteFile.getId()).thenReturn(id);
+        when(remoteFile.getName()).thenReturn(name);
+        return remoteFile;
+    }
+}
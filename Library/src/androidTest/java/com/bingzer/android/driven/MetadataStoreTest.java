@@ -0,0 +1,125 @@
+package com.bingzer.android.driven;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MetadataStoreTest extends AndroidTestCase {
+
+    private static final String NAME = "driven-metadata-test.db";
+    private MetadataStore store;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getContext().deleteDatabase(NAME);
+        store = new MetadataStore(getContext(), NAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        store.close();
+        getContext().deleteDatabase(NAME);
+        super.tearDown();
+    }
+
+    public void test_putChildren() throws Exception {
+        List<MetadataStore.Record> records = new ArrayList<MetadataStore.Record>();
+        records.add(record("Id01", "Title01", 10));
+        records.add(record("Id02", "Title02", -1));
+        store.putChildren("Provider", "Parent01", records);
+
+        List<MetadataStore.Record> children = store.getChildren("Provider", "Parent01");
+        assertEquals(2, children.size());
+        assertEquals("Id01", children.get(0).id);
+        assertEquals("Parent01", children.get(0).parentKey);
+        assertEquals(10, children.get(0).size);
+        assertEquals("Rev-Id01", children.get(0).revision);
+        assertEquals(-1, children.get(1).size);
+
+        assertTrue(store.getChildren("Other", "Parent01").isEmpty());
+    }
+
+    public void test_putChildren_replaces() throws Exception {
+        List<MetadataStore.Record> records = new ArrayList<MetadataStore.Record>();
+        records.add(record("Id01", "Title01", 10));
+        store.putChildren("Provider", "Parent01", records);
+
+        records.clear();
+        records.add(record("Id02", "Title02", 20));
+        store.putChildren("Provider", "Parent01", records);
+
+        List<MetadataStore.Record> children = store.getChildren("Provider", "Parent01");
+        assertEquals(1, children.size());
+        assertEquals("Id02", children.get(0).id);
+        assertNull(store.get("Provider", "Id01"));
+    }
+
+    public void test_putChildren_multipleParents() throws Exception {
+        List<MetadataStore.Record> records = new ArrayList<MetadataStore.Record>();
+        records.add(record("Id01", "Title01", 10));
+        store.putChildren("Provider", "Parent01", records);
+        records.clear();
+        records.add(record("Id01", "Title01", 10));
+        store.putChildren("Provider", "Parent02", records);
+
+        // the file is listed in both parents
+        assertEquals(1, store.getChildren("Provider", "Parent01").size());
+        assertEquals(1, store.getChildren("Provider", "Parent02").size());
+
+        store.delete("Provider", "Id01");
+        assertTrue(store.getChildren("Provider", "Parent01").isEmpty());
+        assertTrue(store.getChildren("Provider", "Parent02").isEmpty());
+    }
+
+    public void test_delete() throws Exception {
+        store.put("Provider", record("Id01", "Title01", 10));
+        assertNotNull(store.get("Provider", "Id01"));
+
+        store.delete("Provider", "Id01");
+        assertNull(store.get("Provider", "Id01"));
+    }
+
+    public void test_tokens() throws Exception {
+        assertNull(store.getToken("Provider", "Key"));
+
+        store.putToken("Provider", "Key", "Value01");
+        store.putToken("Provider", "Key", "Value02");
+        assertEquals("Value02", store.getToken("Provider", "Key"));
+
+        store.clear("Provider");
+        assertNull(store.getToken("Provider", "Key"));
+    }
+
+    public void test_upgrade_keepsTokens() throws Exception {
+        store.close();
+        getContext().deleteDatabase(NAME);
+
+        // the first version, keyed by (provider, id)
+        SQLiteDatabase db = getContext().openOrCreateDatabase(NAME, Context.MODE_PRIVATE, null);
+        db.execSQL("CREATE TABLE files (provider TEXT NOT NULL, id TEXT NOT NULL, parent TEXT, name TEXT, " +
+                "type TEXT, directory INTEGER NOT NULL DEFAULT 0, size INTEGER, revision TEXT, modified TEXT, " +
+                "download_url TEXT, PRIMARY KEY (provider, id))");
+        db.execSQL("CREATE TABLE tokens (provider TEXT NOT NULL, key TEXT NOT NULL, value TEXT, PRIMARY KEY (provider, key))");
+        db.execSQL("INSERT INTO tokens VALUES ('Provider', 'Key', 'Value01')");
+        db.setVersion(1);
+        db.close();
+
+        store = new MetadataStore(getContext(), NAME);
+        assertEquals("Value01", store.getToken("Provider", "Key"));
+        assertTrue(store.getChildren("Provider", "Parent01").isEmpty());
+    }
+
+    private static MetadataStore.Record record(String id, String name, long size){
+        MetadataStore.Record record = new MetadataStore.Record();
+        record.id = id;
+        record.name = name;
+        record.type = "Type";
+        record.size = size;
+        record.revision = "Rev-" + id;
+        return record;
+    }
+}
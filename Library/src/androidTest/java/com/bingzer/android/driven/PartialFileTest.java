@@ -0,0 +1,86 @@
+package com.bingzer.android.driven;
+
+import android.test.AndroidTestCase;
+
+import com.bingzer.android.driven.utils.IOUtils;
+import com.bingzer.android.driven.utils.PartialFile;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+public class PartialFileTest extends AndroidTestCase {
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        dir = new File(getContext().getCacheDir(), "PartialFileTest");
+        IOUtils.deleteTree(dir, true);
+        IOUtils.safeCreateDir(dir);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        IOUtils.deleteTree(dir, true);
+        super.tearDown();
+    }
+
+    public void test_resume() throws Exception {
+        File target = new File(dir, "File01");
+        PartialFile partialFile = new PartialFile(target, "Rev01");
+        write(partialFile, false, "Hello");
+
+        partialFile = new PartialFile(target, "Rev01");
+        assertEquals(5, partialFile.length());
+        write(partialFile, true, " World");
+        partialFile.commit();
+
+        assertFalse(partialFile.getFile().exists());
+        assertEquals(11, target.length());
+    }
+
+    public void test_revisionChanged() throws Exception {
+        File target = new File(dir, "File01");
+        PartialFile partialFile = new PartialFile(target, "Rev01");
+        write(partialFile, false, "Hello");
+
+        PartialFile other = new PartialFile(target, "Rev02");
+        assertEquals(0, other.length());
+        assertFalse(partialFile.getFile().exists());
+    }
+
+    public void test_noRevision() throws Exception {
+        File target = new File(dir, "File01");
+        PartialFile partialFile = new PartialFile(target, null);
+        write(partialFile, false, "Hello");
+
+        assertEquals(0, new PartialFile(target, null).length());
+    }
+
+    public void test_segmented() throws Exception {
+        File target = new File(dir, "File01");
+        PartialFile partialFile = new PartialFile(target, "Rev01");
+        RandomAccessFile file = new RandomAccessFile(partialFile.getSegmentedFile(), "rw");
+        file.setLength(5);
+        file.close();
+
+        // a preallocated file is never resumed
+        partialFile = new PartialFile(target, "Rev01");
+        assertEquals(0, partialFile.length());
+        assertFalse(partialFile.getSegmentedFile().exists());
+
+        file = new RandomAccessFile(partialFile.getSegmentedFile(), "rw");
+        file.setLength(5);
+        file.close();
+        partialFile.commitSegmented();
+        assertEquals(5, target.length());
+    }
+
+    private static void write(PartialFile partialFile, boolean append, String content) throws Exception {
+        OutputStream output = partialFile.openOutput(append);
+        output.write(content.getBytes("UTF-8"));
+        output.close();
+    }
+}
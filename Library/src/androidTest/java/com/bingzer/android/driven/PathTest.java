@@ -4,6 +4,8 @@ import android.test.AndroidTestCase;
 
 import com.bingzer.android.driven.utils.Path;
 
+import java.util.Arrays;
+
 public class PathTest extends AndroidTestCase{
 
     public void test_combine(){
@@ -50,4 +52,12 @@ public class PathTest extends AndroidTestCase{
         assertEquals("SubFolder", Path.getFilename("/Folder/SubFolder/"));
         assertEquals("/", Path.getFilename("/"));
     }
+
+    public void test_split(){
+        assertEquals(0, Path.split(null).size());
+        assertEquals(0, Path.split("/").size());
+        assertEquals(Arrays.asList("Folder"), Path.split("Folder"));
+        assertEquals(Arrays.asList("Folder", "SubFolder", "File"), Path.split("/Folder/SubFolder/File"));
+        assertEquals(Arrays.asList("Folder", "SubFolder"), Path.split("/Folder//SubFolder/"));
+    }
 }
@@ -0,0 +1,174 @@
+package com.bingzer.android.driven;
+
+import android.test.AndroidTestCase;
+
+import com.bingzer.android.driven.contracts.Delegate;
+import com.bingzer.android.driven.contracts.Function;
+import com.bingzer.android.driven.contracts.Lane;
+import com.bingzer.android.driven.contracts.Operation;
+import com.bingzer.android.driven.utils.Pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class PipelineTest extends AndroidTestCase {
+
+    public void test_then() throws Exception {
+        final List<Thread> threads = new ArrayList<Thread>();
+        Operation<Integer> operation = Pipeline.start(new Delegate<String>() {
+            @Override
+            public String invoke() {
+                threads.add(Thread.currentThread());
+                return "Hello";
+            }
+        }).then(new Function<String, Integer>() {
+            @Override
+            public Integer invoke(String input) {
+                threads.add(Thread.currentThread());
+                return input.length();
+            }
+        }).run(null);
+
+        assertEquals(5, (int) operation.get(5, TimeUnit.SECONDS));
+        assertEquals(2, threads.size());
+        assertSame(threads.get(0), threads.get(1));
+    }
+
+    public void test_thenAsync() throws Exception {
+        String result = Pipeline.start(new Delegate<String>() {
+            @Override
+            public String invoke() {
+                return "Hello";
+            }
+        }).thenAsync(Lane.BACKGROUND, new Function<String, String>() {
+            @Override
+            public String invoke(String input) {
+                return input + " " + Thread.currentThread().getName();
+            }
+        }).execute();
+
+        assertTrue(result.startsWith("Hello Driven-Async-background"));
+    }
+
+    public void test_thenAsync_sameExecutor() throws Exception {
+        // the only worker is busy running the pipeline itself
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Operation<String> operation = Pipeline.start(new Delegate<String>() {
+                @Override
+                public String invoke() {
+                    return "Hello";
+                }
+            }).thenAsync(executor, new Function<String, String>() {
+                @Override
+                public String invoke(String input) {
+                    return input + " World";
+                }
+            }).run(executor, null);
+
+            assertEquals("Hello World", operation.get(5, TimeUnit.SECONDS));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void test_thenAsync_busyExecutor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // keeps the only worker busy for a while
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(300);
+                    }
+                    catch (InterruptedException e){
+                        // -- ignore
+                    }
+                }
+            });
+
+            // we're not one of its workers, so we wait our turn
+            Thread thread = Pipeline.start(new Delegate<String>() {
+                @Override
+                public String invoke() {
+                    return "Hello";
+                }
+            }).thenAsync(executor, new Function<String, Thread>() {
+                @Override
+                public Thread invoke(String input) {
+                    return Thread.currentThread();
+                }
+            }).execute();
+
+            assertNotSame(Thread.currentThread(), thread);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void test_recover() throws Exception {
+        String result = Pipeline.start(new Delegate<String>() {
+            @Override
+            public String invoke() {
+                throw new DrivenException("Error");
+            }
+        }).then(new Function<String, String>() {
+            @Override
+            public String invoke(String input) {
+                fail("Should not be called");
+                return input;
+            }
+        }).recover(new Function<Throwable, String>() {
+            @Override
+            public String invoke(Throwable error) {
+                return error.getMessage();
+            }
+        }).execute();
+
+        assertEquals("Error", result);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void test_allOf() throws Exception {
+        List<Integer> results = Pipeline.allOf(Pipeline.delegates(number(1), number(2), number(3))).execute();
+        assertEquals(3, results.size());
+        assertEquals(1, (int) results.get(0));
+        assertEquals(2, (int) results.get(1));
+        assertEquals(3, (int) results.get(2));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void test_anyOf() throws Exception {
+        Delegate<Integer> failing = new Delegate<Integer>() {
+            @Override
+            public Integer invoke() {
+                throw new DrivenException("Error");
+            }
+        };
+
+        assertEquals(7, (int) Pipeline.anyOf(Pipeline.delegates(failing, number(7))).execute());
+
+        try {
+            Pipeline.anyOf(Pipeline.delegates(failing, failing)).execute();
+            fail("Should throw");
+        }
+        catch (DrivenException e){
+            assertEquals("Error", e.getMessage());
+        }
+    }
+
+    private static Delegate<Integer> number(final int number){
+        return new Delegate<Integer>() {
+            @Override
+            public Integer invoke() {
+                return number;
+            }
+        };
+    }
+}
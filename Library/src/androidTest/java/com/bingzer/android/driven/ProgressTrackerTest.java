@@ -0,0 +1,63 @@
+package com.bingzer.android.driven;
+
+import android.test.AndroidTestCase;
+
+import com.bingzer.android.driven.contracts.TransferListener;
+import com.bingzer.android.driven.utils.ProgressTracker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProgressTrackerTest extends AndroidTestCase {
+
+    private long now;
+    private final List<TransferProgress> reports = new ArrayList<TransferProgress>();
+
+    public void test_rateLimited() throws Exception {
+        ProgressTracker tracker = createTracker(1000);
+        tracker.add(100);       // starts the clock
+        now += 100;
+        tracker.add(100);       // too soon
+        assertEquals(0, reports.size());
+
+        now += 150;
+        tracker.add(300);
+        assertEquals(1, reports.size());
+        assertEquals(500, reports.get(0).getBytesTransferred());
+        assertEquals(1000, reports.get(0).getTotalBytes());
+        assertEquals(2000, reports.get(0).getAverageRate());
+        assertEquals(250, reports.get(0).getEta());
+    }
+
+    public void test_done() throws Exception {
+        ProgressTracker tracker = createTracker(1000);
+        tracker.add(1000);
+        tracker.done();
+        tracker.done();
+
+        assertEquals(1, reports.size());
+        assertTrue(reports.get(0).isDone());
+        assertEquals(0, reports.get(0).getEta());
+    }
+
+    public void test_noListener() throws Exception {
+        ProgressTracker tracker = new ProgressTracker(null, 1000);
+        tracker.add(1000);
+        tracker.done();
+        assertEquals(1000, tracker.getBytesTransferred());
+    }
+
+    private ProgressTracker createTracker(long totalBytes){
+        return new ProgressTracker(new TransferListener() {
+            @Override
+            public void onProgress(TransferProgress progress) {
+                reports.add(progress);
+            }
+        }, totalBytes) {
+            @Override
+            protected long now() {
+                return now;
+            }
+        };
+    }
+}
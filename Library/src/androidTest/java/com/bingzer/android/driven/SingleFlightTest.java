@@ -0,0 +1,133 @@
+package com.bingzer.android.driven;
+
+import android.test.AndroidTestCase;
+
+import com.bingzer.android.driven.contracts.Delegate;
+import com.bingzer.android.driven.utils.SingleFlight;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SingleFlightTest extends AndroidTestCase {
+
+    public void test_execute_coalesce() throws Exception {
+        final SingleFlight singleFlight = new SingleFlight();
+        final AtomicInteger invocations = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(4);
+        final String[] results = new String[4];
+
+        final Delegate<String> delegate = new Delegate<String>() {
+            @Override
+            public String invoke() {
+                invocations.incrementAndGet();
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e){
+                    // ignore
+                }
+                return "Hello";
+            }
+        };
+
+        for(int i = 0; i < results.length; i++){
+            final int index = i;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    results[index] = singleFlight.execute("key", delegate);
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        while(invocations.get() == 0) Thread.sleep(10);
+        Thread.sleep(100);
+        release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, invocations.get());
+        for(String result : results){
+            assertEquals("Hello", result);
+        }
+        assertEquals(0, singleFlight.size());
+    }
+
+    public void test_execute_leaderCancelled() throws Exception {
+        final SingleFlight singleFlight = new SingleFlight();
+        final AtomicInteger invocations = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(1);
+        final String[] result = new String[1];
+
+        final Delegate<String> delegate = new Delegate<String>() {
+            @Override
+            public String invoke() {
+                if(invocations.incrementAndGet() > 1) return "Hello";
+                try {
+                    Thread.sleep(5000);
+                }
+                catch (InterruptedException e){
+                    // providers report a cancelled lookup as "not found"
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }
+        };
+
+        Thread leader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                singleFlight.execute("key", delegate);
+            }
+        });
+        leader.start();
+        while(invocations.get() == 0) Thread.sleep(10);
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                result[0] = singleFlight.execute("key", delegate);
+                done.countDown();
+            }
+        }).start();
+        Thread.sleep(100);
+        leader.interrupt();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals("Hello", result[0]);
+        assertEquals(2, invocations.get());
+    }
+
+    public void test_execute_notCached() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        final AtomicInteger invocations = new AtomicInteger();
+        Delegate<Integer> delegate = new Delegate<Integer>() {
+            @Override
+            public Integer invoke() {
+                return invocations.incrementAndGet();
+            }
+        };
+
+        assertEquals(1, (int) singleFlight.execute("key", delegate));
+        assertEquals(2, (int) singleFlight.execute("key", delegate));
+    }
+
+    public void test_execute_error() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        try {
+            singleFlight.execute("key", new Delegate<Object>() {
+                @Override
+                public Object invoke() {
+                    throw new DrivenException("Error");
+                }
+            });
+            fail("Should throw");
+        }
+        catch (DrivenException e){
+            assertEquals("Error", e.getMessage());
+        }
+        assertEquals(0, singleFlight.size());
+    }
+}
@@ -0,0 +1,151 @@
+package com.bingzer.android.driven;
+
+import android.test.AndroidTestCase;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TransferQueueTest extends AndroidTestCase {
+
+    private static final String NAME = "driven-transfers-test.db";
+    private TransferQueue queue;
+    private StorageProvider provider;
+    private RemoteFile remoteFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getContext().deleteDatabase(NAME);
+        queue = new TransferQueue(getContext(), NAME);
+
+        provider = mock(StorageProvider.class);
+        when(provider.getName()).thenReturn("Mock");
+        remoteFile = mock(RemoteFile.class);
+        when(remoteFile.getId()).thenReturn("Id01");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        queue.close();
+        getContext().deleteDatabase(NAME);
+        super.tearDown();
+    }
+
+    public void test_enqueue_dedupe() throws Exception {
+        long id = queue.enqueueDownload(provider, remoteFile, local("File01"));
+        assertEquals(id, queue.enqueueDownload(provider, remoteFile, local("File01")));
+        assertTrue(id != queue.enqueueDownload(provider, remoteFile, local("File02")));
+        assertTrue(id != queue.enqueueUpdate(provider, remoteFile, local("File01")));
+        assertEquals(3, queue.getTransfers().size());
+    }
+
+    public void test_cancel() throws Exception {
+        long id = queue.enqueueUpload(provider, null, local("File01"));
+        assertTrue(queue.cancel(id));
+        assertFalse(queue.cancel(id));
+        assertEquals(0, queue.getTransfers().size());
+    }
+
+    public void test_persists() throws Exception {
+        queue.enqueueUpload(provider, remoteFile, local("File01"));
+        queue.close();
+
+        queue = new TransferQueue(getContext(), NAME);
+        assertEquals(1, queue.getTransfers().size());
+        assertEquals("Mock", queue.getTransfers().get(0).provider);
+        assertEquals("Id01", queue.getTransfers().get(0).remoteId);
+    }
+
+    public void test_register_resumes() throws Exception {
+        when(provider.id("Id01")).thenReturn(remoteFile);
+        when(provider.download(any(RemoteFile.class), any(LocalFile.class))).thenReturn(true);
+        queue.enqueueDownload(provider, remoteFile, local("File01"));
+        queue.enqueueDownload(provider, remoteFile, local("File02"));
+
+        final CountDownLatch signal = new CountDownLatch(2);
+        queue.setListener(new TransferQueue.Listener() {
+            @Override
+            public void onProgress(TransferQueue.Transfer transfer, TransferProgress progress) {
+            }
+
+            @Override
+            public void onCompleted(TransferQueue.Transfer transfer, boolean success) {
+                if(success) signal.countDown();
+            }
+        });
+
+        // nothing runs until the provider is registered
+        assertEquals(2, queue.getTransfers().size());
+        queue.register(provider);
+        assertTrue(signal.await(5, TimeUnit.SECONDS));
+        assertEquals(0, queue.getTransfers().size());
+    }
+
+    public void test_retry() throws Exception {
+        when(provider.id("Id01")).thenReturn(remoteFile);
+        when(provider.download(any(RemoteFile.class), any(LocalFile.class))).thenReturn(false, true);
+        queue.setRetryDelay(100);
+        long id = queue.enqueueDownload(provider, remoteFile, local("File01"));
+
+        final CountDownLatch signal = new CountDownLatch(1);
+        final boolean[] result = new boolean[1];
+        queue.setListener(new TransferQueue.Listener() {
+            @Override
+            public void onProgress(TransferQueue.Transfer transfer, TransferProgress progress) {
+            }
+
+            @Override
+            public void onCompleted(TransferQueue.Transfer transfer, boolean success) {
+                result[0] = success;
+                signal.countDown();
+            }
+        });
+
+        queue.register(provider);
+        // the second attempt goes through on its own
+        assertTrue(signal.await(5, TimeUnit.SECONDS));
+        assertTrue(result[0]);
+        assertFalse(queue.cancel(id));
+        verify(provider, times(2)).download(any(RemoteFile.class), any(LocalFile.class));
+    }
+
+    public void test_maxAttempts() throws Exception {
+        when(provider.id("Id01")).thenReturn(remoteFile);
+        when(provider.download(any(RemoteFile.class), any(LocalFile.class))).thenReturn(false);
+        queue.setRetryDelay(10);
+        queue.setMaxAttempts(2);
+        queue.enqueueDownload(provider, remoteFile, local("File01"));
+
+        final CountDownLatch signal = new CountDownLatch(1);
+        final boolean[] result = new boolean[]{ true };
+        queue.setListener(new TransferQueue.Listener() {
+            @Override
+            public void onProgress(TransferQueue.Transfer transfer, TransferProgress progress) {
+            }
+
+            @Override
+            public void onCompleted(TransferQueue.Transfer transfer, boolean success) {
+                result[0] = success;
+                signal.countDown();
+            }
+        });
+
+        queue.register(provider);
+        assertTrue(signal.await(5, TimeUnit.SECONDS));
+        assertFalse(result[0]);
+        assertEquals(0, queue.getTransfers().size());
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private LocalFile local(String name){
+        return new LocalFile(new File(getContext().getCacheDir(), name));
+    }
+}
@@ -16,6 +16,8 @@
 package com.bingzer.android.driven;
 
 import com.bingzer.android.driven.contracts.Delegate;
+import com.bingzer.android.driven.contracts.Lane;
+import com.bingzer.android.driven.contracts.Operation;
 import com.bingzer.android.driven.contracts.Task;
 
 import java.util.List;
@@ -42,8 +44,8 @@ public abstract class AbsRemoteFile implements RemoteFile {
      * Async for {@link #fetchDetails()}
      */
     @Override
-    public void fetchDetailsAsync(Task<Boolean> task) {
-        doAsync(task, new Delegate<Boolean>() {
+    public Operation<Boolean> fetchDetailsAsync(Task<Boolean> task) {
+        return doAsync(AbsStorageProvider.getExecutor(provider, Lane.INTERACTIVE), task, new Delegate<Boolean>() {
             @Override
             public Boolean invoke() {
                 return fetchDetails();
@@ -55,8 +57,8 @@ public abstract class AbsRemoteFile implements RemoteFile {
      * Async call for {@link #create(LocalFile)}
      */
     @Override
-    public void createAsync(final LocalFile content, Task<RemoteFile> task) {
-        doAsync(task, new Delegate<RemoteFile>() {
+    public Operation<RemoteFile> createAsync(final LocalFile content, Task<RemoteFile> task) {
+        return doAsync(AbsStorageProvider.getExecutor(provider, Lane.TRANSFER), task, new Delegate<RemoteFile>() {
             @Override
             public RemoteFile invoke() {
                 return create(content);
@@ -68,8 +70,8 @@ public abstract class AbsRemoteFile implements RemoteFile {
      * Async call for {@link #create(String)}
      */
     @Override
-    public void createAsync(final String name, Task<RemoteFile> task) {
-        doAsync(task, new Delegate<RemoteFile>() {
+    public Operation<RemoteFile> createAsync(final String name, Task<RemoteFile> task) {
+        return doAsync(AbsStorageProvider.getExecutor(provider, Lane.INTERACTIVE), task, new Delegate<RemoteFile>() {
             @Override
             public RemoteFile invoke() {
                 return create(name);
@@ -81,8 +83,8 @@ public abstract class AbsRemoteFile implements RemoteFile {
      * Async for {@link #get(String)}
      */
     @Override
-    public void getAsync(final String name, Task<RemoteFile> task) {
-        doAsync(task, new Delegate<RemoteFile>() {
+    public Operation<RemoteFile> getAsync(final String name, Task<RemoteFile> task) {
+        return doAsync(AbsStorageProvider.getExecutor(provider, Lane.INTERACTIVE), task, new Delegate<RemoteFile>() {
             @Override
             public RemoteFile invoke() {
                 return get(name);
@@ -94,8 +96,8 @@ public abstract class AbsRemoteFile implements RemoteFile {
      * Async for {@link #list()}
      */
     @Override
-    public void listAsync(Task<List<RemoteFile>> task) {
-        doAsync(task, new Delegate<List<RemoteFile>>() {
+    public Operation<List<RemoteFile>> listAsync(Task<List<RemoteFile>> task) {
+        return doAsync(AbsStorageProvider.getExecutor(provider, Lane.INTERACTIVE), task, new Delegate<List<RemoteFile>>() {
             @Override
             public List<RemoteFile> invoke() {
                 return list();
@@ -107,8 +109,8 @@ public abstract class AbsRemoteFile implements RemoteFile {
      * Async for {@link #download(LocalFile)}
      */
     @Override
-    public void downloadAsync(final LocalFile local, Task<Boolean> task) {
-        doAsync(task, new Delegate<Boolean>() {
+    public Operation<Boolean> downloadAsync(final LocalFile local, Task<Boolean> task) {
+        return doAsync(AbsStorageProvider.getExecutor(provider, Lane.TRANSFER), task, new Delegate<Boolean>() {
             @Override
             public Boolean invoke() {
                 return download(local);
@@ -120,8 +122,8 @@ public abstract class AbsRemoteFile implements RemoteFile {
      * Async for {@link #upload(com.bingzer.android.driven.LocalFile)}
      */
     @Override
-    public void uploadAsync(final LocalFile local, Task<Boolean> task) {
-        doAsync(task, new Delegate<Boolean>() {
+    public Operation<Boolean> uploadAsync(final LocalFile local, Task<Boolean> task) {
+        return doAsync(AbsStorageProvider.getExecutor(provider, Lane.TRANSFER), task, new Delegate<Boolean>() {
             @Override
             public Boolean invoke() {
                 return upload(local);
@@ -133,8 +135,8 @@ public abstract class AbsRemoteFile implements RemoteFile {
      * Async for {@link #share(String)}
      */
     @Override
-    public void shareAsync(final String user, Task<String> task) {
-        doAsync(task, new Delegate<String>() {
+    public Operation<String> shareAsync(final String user, Task<String> task) {
+        return doAsync(AbsStorageProvider.getExecutor(provider, Lane.INTERACTIVE), task, new Delegate<String>() {
             @Override
             public String invoke() {
                 return share(user);
@@ -146,8 +148,8 @@ public abstract class AbsRemoteFile implements RemoteFile {
      * Async for {@link #share(String, int)}
      */
     @Override
-    public void shareAsync(final String user, final int kind, Task<String> task) {
-        doAsync(task, new Delegate<String>() {
+    public Operation<String> shareAsync(final String user, final int kind, Task<String> task) {
+        return doAsync(AbsStorageProvider.getExecutor(provider, Lane.INTERACTIVE), task, new Delegate<String>() {
             @Override
             public String invoke() {
                 return share(user, kind);
@@ -159,8 +161,8 @@ public abstract class AbsRemoteFile implements RemoteFile {
      * Async for {@link #delete()}
      */
     @Override
-    public void deleteAsync(Task<Boolean> task) {
-        doAsync(task, new Delegate<Boolean>() {
+    public Operation<Boolean> deleteAsync(Task<Boolean> task) {
+        return doAsync(AbsStorageProvider.getExecutor(provider, Lane.INTERACTIVE), task, new Delegate<Boolean>() {
             @Override
             public Boolean invoke() {
                 return delete();
@@ -172,8 +174,8 @@ public abstract class AbsRemoteFile implements RemoteFile {
      * Async call for {@link #rename(String)}
      */
     @Override
-    public void renameAsync(final String name, Task<Boolean> task) {
-        doAsync(task, new Delegate<Boolean>() {
+    public Operation<Boolean> renameAsync(final String name, Task<Boolean> task) {
+        return doAsync(AbsStorageProvider.getExecutor(provider, Lane.INTERACTIVE), task, new Delegate<Boolean>() {
             @Override
             public Boolean invoke() {
                 return rename(name);
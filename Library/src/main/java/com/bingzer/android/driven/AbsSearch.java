@@ -16,6 +16,8 @@
 package com.bingzer.android.driven;
 
 import com.bingzer.android.driven.contracts.Delegate;
+import com.bingzer.android.driven.contracts.Lane;
+import com.bingzer.android.driven.contracts.Operation;
 import com.bingzer.android.driven.contracts.Search;
 import com.bingzer.android.driven.contracts.Task;
 
@@ -28,12 +30,32 @@ import static com.bingzer.android.driven.utils.AsyncUtils.doAsync;
  */
 public abstract class AbsSearch implements Search {
 
+    protected StorageProvider provider;
+
+    /**
+     * Creates an instance that is not bound to any provider.
+     * "Async" calls will run on the default executor
+     */
+    protected AbsSearch(){
+        this(null);
+    }
+
+    /**
+     * Creates an instance bound to {@code provider}.
+     * "Async" calls will run on the provider's executor
+     */
+    protected AbsSearch(StorageProvider provider){
+        this.provider = provider;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////
+
     /**
      * Async call for {@link #first(String)}
      */
     @Override
-    public void firstAsync(final String query, Task<RemoteFile> task) {
-        doAsync(task, new Delegate<RemoteFile>() {
+    public Operation<RemoteFile> firstAsync(final String query, Task<RemoteFile> task) {
+        return doAsync(AbsStorageProvider.getExecutor(provider, Lane.INTERACTIVE), task, new Delegate<RemoteFile>() {
             @Override
             public RemoteFile invoke() {
                 return first(query);
@@ -45,8 +67,8 @@ public abstract class AbsSearch implements Search {
      * Async call for {@link #query(String)}
      */
     @Override
-    public void queryAsync(final String query, Task<List<RemoteFile>> task) {
-        doAsync(task, new Delegate<List<RemoteFile>>() {
+    public Operation<List<RemoteFile>> queryAsync(final String query, Task<List<RemoteFile>> task) {
+        return doAsync(AbsStorageProvider.getExecutor(provider, Lane.INTERACTIVE), task, new Delegate<List<RemoteFile>>() {
             @Override
             public List<RemoteFile> invoke() {
                 return query(query);
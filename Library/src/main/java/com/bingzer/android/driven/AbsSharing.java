@@ -16,6 +16,8 @@
 package com.bingzer.android.driven;
 
 import com.bingzer.android.driven.contracts.Delegate;
+import com.bingzer.android.driven.contracts.Lane;
+import com.bingzer.android.driven.contracts.Operation;
 import com.bingzer.android.driven.contracts.Sharing;
 import com.bingzer.android.driven.contracts.Task;
 
@@ -26,12 +28,32 @@ import static com.bingzer.android.driven.utils.AsyncUtils.doAsync;
 */
 public abstract class AbsSharing implements Sharing {
 
+    protected StorageProvider provider;
+
+    /**
+     * Creates an instance that is not bound to any provider.
+     * "Async" calls will run on the default executor
+     */
+    protected AbsSharing(){
+        this(null);
+    }
+
+    /**
+     * Creates an instance bound to {@code provider}.
+     * "Async" calls will run on the provider's executor
+     */
+    protected AbsSharing(StorageProvider provider){
+        this.provider = provider;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////
+
     /**
      * Async call for {@link #share(RemoteFile, String)}
      */
     @Override
-    public void shareAsync(final RemoteFile remoteFile, final String user, Task<String> task) {
-        doAsync(task, new Delegate<String>() {
+    public Operation<String> shareAsync(final RemoteFile remoteFile, final String user, Task<String> task) {
+        return doAsync(AbsStorageProvider.getExecutor(provider, Lane.INTERACTIVE), task, new Delegate<String>() {
             @Override
             public String invoke() {
                 return share(remoteFile, user);
@@ -43,8 +65,8 @@ public abstract class AbsSharing implements Sharing {
      * Async call for {@link #share(RemoteFile, String, int)}
      */
     @Override
-    public void shareAsync(final RemoteFile remoteFile, final String user, final int kind, Task<String> task) {
-        doAsync(task, new Delegate<String>() {
+    public Operation<String> shareAsync(final RemoteFile remoteFile, final String user, final int kind, Task<String> task) {
+        return doAsync(AbsStorageProvider.getExecutor(provider, Lane.INTERACTIVE), task, new Delegate<String>() {
             @Override
             public String invoke() {
                 return share(remoteFile, user, kind);
@@ -53,8 +75,8 @@ public abstract class AbsSharing implements Sharing {
     }
 
     @Override
-    public void removeSharingAsync(final RemoteFile remoteFile, final String user, Task<Boolean> task) {
-        doAsync(task, new Delegate<Boolean>() {
+    public Operation<Boolean> removeSharingAsync(final RemoteFile remoteFile, final String user, Task<Boolean> task) {
+        return doAsync(AbsStorageProvider.getExecutor(provider, Lane.INTERACTIVE), task, new Delegate<Boolean>() {
             @Override public Boolean invoke() {
                 return removeSharing(remoteFile, user);
             }
@@ -16,15 +16,33 @@
 package com.bingzer.android.driven;
 
 import android.content.Context;
+import android.util.Log;
 
 import com.bingzer.android.driven.contracts.Delegate;
+import com.bingzer.android.driven.contracts.ExecutorFactory;
+import com.bingzer.android.driven.contracts.Lane;
+import com.bingzer.android.driven.contracts.Operation;
 import com.bingzer.android.driven.contracts.Search;
 import com.bingzer.android.driven.contracts.SharedWithMe;
 import com.bingzer.android.driven.contracts.Sharing;
 import com.bingzer.android.driven.contracts.Task;
 import com.bingzer.android.driven.contracts.Trashed;
+import com.bingzer.android.driven.utils.AsyncUtils;
+import com.bingzer.android.driven.utils.BandwidthLimiter;
+import com.bingzer.android.driven.utils.ConcurrencyLimiter;
+import com.bingzer.android.driven.utils.IOUtils;
+import com.bingzer.android.driven.utils.Path;
+import com.bingzer.android.driven.utils.SingleFlight;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 
 import static com.bingzer.android.driven.utils.AsyncUtils.doAsync;
 
@@ -33,11 +51,153 @@ import static com.bingzer.android.driven.utils.AsyncUtils.doAsync;
  */
 public abstract class AbsStorageProvider implements StorageProvider {
 
+    private static final String LISTING_TOKEN = "listing:";
+
     protected Search search;
     protected Sharing sharing;
     protected SharedWithMe sharedWithMe;
     protected Trashed trashed;
 
+    private ExecutorFactory executorFactory;
+    private final Map<Lane, ExecutorService> executors = new EnumMap<Lane, ExecutorService>(Lane.class);
+    private ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter();
+    private final SingleFlight singleFlight = new SingleFlight();
+    private volatile MetadataCache metadataCache;
+    private volatile ListingCache listingCache;
+    private volatile MetadataStore metadataStore;
+    private volatile ContentCache contentCache;
+    private final BandwidthLimiter bandwidthLimiter = new BandwidthLimiter(BandwidthLimiter.UNLIMITED);
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Sets the {@link ExecutorFactory} used to run all "Async" calls
+     * of this provider. If none is set, the shared executors from
+     * {@link com.bingzer.android.driven.utils.AsyncUtils#getDefaultExecutor(Lane)} are used.
+     * The previous executors (if any) are shut down gracefully.
+     */
+    public synchronized void setExecutorFactory(ExecutorFactory executorFactory) {
+        this.executorFactory = executorFactory;
+        for(ExecutorService executor : executors.values()){
+            executor.shutdown();
+        }
+        executors.clear();
+    }
+
+    /**
+     * Returns the executor that runs the "Async" calls of this provider
+     * for the specified {@code lane}
+     */
+    public synchronized Executor getExecutor(Lane lane) {
+        if(executorFactory == null)
+            return AsyncUtils.getDefaultExecutor(lane);
+
+        ExecutorService executor = executors.get(lane);
+        if(executor == null) {
+            executor = executorFactory.createExecutor(getName(), lane);
+            executors.put(lane, executor);
+        }
+        return executor;
+    }
+
+    /**
+     * Returns the limiter that caps the number of in-flight requests
+     * made to this provider
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * Sets the limiter that caps the number of in-flight requests
+     * made to this provider
+     */
+    public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+        if(concurrencyLimiter == null) throw new NullPointerException("concurrencyLimiter");
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    /**
+     * Returns the {@link MetadataCache} or null if caching is disabled
+     */
+    public MetadataCache getMetadataCache() {
+        return metadataCache;
+    }
+
+    /**
+     * Sets the {@link MetadataCache} used by lookups (get, id, exists and getDetails).
+     * Caching is disabled by default. Set to null to disable it.
+     */
+    public void setMetadataCache(MetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+    }
+
+    /**
+     * Returns the {@link ListingCache} or null if caching is disabled
+     */
+    public ListingCache getListingCache() {
+        return listingCache;
+    }
+
+    /**
+     * Sets the {@link ListingCache} used by {@link #list(RemoteFile)}.
+     * Cached listings are revalidated with the provider before they are returned.
+     * Caching is disabled by default. Set to null to disable it.
+     */
+    public void setListingCache(ListingCache listingCache) {
+        this.listingCache = listingCache;
+    }
+
+    /**
+     * Returns the {@link MetadataStore} or null if none is set
+     */
+    public MetadataStore getMetadataStore() {
+        return metadataStore;
+    }
+
+    /**
+     * Sets the {@link MetadataStore} where listings (and their sync tokens)
+     * are persisted. Set to null to disable it.
+     */
+    public void setMetadataStore(MetadataStore metadataStore) {
+        this.metadataStore = metadataStore;
+    }
+
+    /**
+     * Returns the {@link ContentCache} or null if caching is disabled
+     */
+    public ContentCache getContentCache() {
+        return contentCache;
+    }
+
+    /**
+     * Sets the {@link ContentCache} used by {@link #download(RemoteFile, LocalFile)}.
+     * Caching is disabled by default. Set to null to disable it.
+     */
+    public void setContentCache(ContentCache contentCache) {
+        this.contentCache = contentCache;
+    }
+
+    /**
+     * Returns the {@link BandwidthLimiter} of this provider's uploads and downloads.
+     * Use {@link BandwidthLimiter#setRate(long)} to cap them (unlimited by default).
+     * Transfers are also held to {@link BandwidthLimiter#getGlobal()}
+     */
+    public BandwidthLimiter getBandwidthLimiter() {
+        return bandwidthLimiter;
+    }
+
+    /**
+     * Returns the children of {@code parent} (null for root) as they were
+     * when last listed, straight from the {@link MetadataStore} without any network call.
+     * Returns null if there's no {@link MetadataStore} or the folder has never been listed.
+     */
+    public List<RemoteFile> listStored(RemoteFile parent) {
+        return listStored(getFolderKey(parent));
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
     @Override
     public final boolean hasSavedCredential(Context context) {
         Credential credential = new Credential(context);
@@ -62,8 +222,8 @@ public abstract class AbsStorageProvider implements StorageProvider {
      * Async call for {@link #clearSavedCredential(android.content.Context)}
      */
     @Override
-    public void clearSavedCredentialAsync(final Context context, Task<Result<DrivenException>> task) {
-        doAsync(task, new Delegate<Result<DrivenException>>() {
+    public Operation<Result<DrivenException>> clearSavedCredentialAsync(final Context context, Task<Result<DrivenException>> task) {
+        return doAsync(getExecutor(Lane.INTERACTIVE), task, new Delegate<Result<DrivenException>>() {
             @Override
             public Result<DrivenException> invoke() {
                 return clearSavedCredential(context);
@@ -75,8 +235,8 @@ public abstract class AbsStorageProvider implements StorageProvider {
      * Async call for {@link #authenticate(android.content.Context)}
      */
     @Override
-    public void authenticateAsync(final Context context, Task<Result<DrivenException>> task) {
-        doAsync(task, new Delegate<Result<DrivenException>>() {
+    public Operation<Result<DrivenException>> authenticateAsync(final Context context, Task<Result<DrivenException>> task) {
+        return doAsync(getExecutor(Lane.INTERACTIVE), task, new Delegate<Result<DrivenException>>() {
             @Override
             public Result<DrivenException> invoke() {
                 return authenticate(context);
@@ -88,8 +248,8 @@ public abstract class AbsStorageProvider implements StorageProvider {
      * Async call for {@link #authenticate(Credential)}
      */
     @Override
-    public void authenticateAsync(final Credential credential, Task<Result<DrivenException>> task) {
-        doAsync(task, new Delegate<Result<DrivenException>>() {
+    public Operation<Result<DrivenException>> authenticateAsync(final Credential credential, Task<Result<DrivenException>> task) {
+        return doAsync(getExecutor(Lane.INTERACTIVE), task, new Delegate<Result<DrivenException>>() {
             @Override
             public Result<DrivenException> invoke() {
                 return authenticate(credential);
@@ -101,8 +261,8 @@ public abstract class AbsStorageProvider implements StorageProvider {
      * Async API for {@link #exists(String)}
      */
     @Override
-    public void existsAsync(final String name, Task<Boolean> task) {
-        doAsync(task, new Delegate<Boolean>() {
+    public Operation<Boolean> existsAsync(final String name, Task<Boolean> task) {
+        return doAsync(getExecutor(Lane.INTERACTIVE), task, new Delegate<Boolean>() {
             @Override
             public Boolean invoke() {
                 return exists(name);
@@ -114,8 +274,8 @@ public abstract class AbsStorageProvider implements StorageProvider {
      * Async call for {@link #exists(RemoteFile, String)}
      */
     @Override
-    public void existsAsync(final RemoteFile parent, final String name, Task<Boolean> task) {
-        doAsync(task, new Delegate<Boolean>() {
+    public Operation<Boolean> existsAsync(final RemoteFile parent, final String name, Task<Boolean> task) {
+        return doAsync(getExecutor(Lane.INTERACTIVE), task, new Delegate<Boolean>() {
             @Override
             public Boolean invoke() {
                 return exists(parent, name);
@@ -127,8 +287,8 @@ public abstract class AbsStorageProvider implements StorageProvider {
      * Async call for {@link #getPermission(RemoteFile)}
      */
     @Override
-    public void getPermissionAsync(final RemoteFile remoteFile, Task<Permission> task) {
-        doAsync(task, new Delegate<Permission>() {
+    public Operation<Permission> getPermissionAsync(final RemoteFile remoteFile, Task<Permission> task) {
+        return doAsync(getExecutor(Lane.INTERACTIVE), task, new Delegate<Permission>() {
             @Override
             public Permission invoke() {
                 return getPermission(remoteFile);
@@ -140,8 +300,8 @@ public abstract class AbsStorageProvider implements StorageProvider {
      * Async call for {@link #get(RemoteFile, String)}
      */
     @Override
-    public void getAsync(final RemoteFile parent, final String name, Task<RemoteFile> task) {
-        doAsync(task, new Delegate<RemoteFile>() {
+    public Operation<RemoteFile> getAsync(final RemoteFile parent, final String name, Task<RemoteFile> task) {
+        return doAsync(getExecutor(Lane.INTERACTIVE), task, new Delegate<RemoteFile>() {
             @Override
             public RemoteFile invoke() {
                 return get(parent, name);
@@ -153,8 +313,8 @@ public abstract class AbsStorageProvider implements StorageProvider {
      * Async call fro {@link #get(String)}
      */
     @Override
-    public void getAsync(final String name, Task<RemoteFile> task) {
-        doAsync(task, new Delegate<RemoteFile>() {
+    public Operation<RemoteFile> getAsync(final String name, Task<RemoteFile> task) {
+        return doAsync(getExecutor(Lane.INTERACTIVE), task, new Delegate<RemoteFile>() {
             @Override
             public RemoteFile invoke() {
                 return get(name);
@@ -162,12 +322,39 @@ public abstract class AbsStorageProvider implements StorageProvider {
         });
     }
 
+    /**
+     * Resolves {@code path} one segment at a time.
+     * Providers should override this if they can do better
+     */
+    @Override
+    public RemoteFile getByPath(String path) {
+        RemoteFile current = null;
+        for(String name : Path.split(path)){
+            current = current == null ? get(name) : get(current, name);
+            if(current == null) return null;
+        }
+        return current;
+    }
+
+    /**
+     * Async call for {@link #getByPath(String)}
+     */
+    @Override
+    public Operation<RemoteFile> getByPathAsync(final String path, Task<RemoteFile> task) {
+        return doAsync(getExecutor(Lane.INTERACTIVE), task, new Delegate<RemoteFile>() {
+            @Override
+            public RemoteFile invoke() {
+                return getByPath(path);
+            }
+        });
+    }
+
     /**
      * Async call for {@link #id(String)}
      */
     @Override
-    public void idAsync(final String id, Task<RemoteFile> task) {
-        doAsync(task, new Delegate<RemoteFile>() {
+    public Operation<RemoteFile> idAsync(final String id, Task<RemoteFile> task) {
+        return doAsync(getExecutor(Lane.INTERACTIVE), task, new Delegate<RemoteFile>() {
             @Override
             public RemoteFile invoke() {
                 return id(id);
@@ -179,8 +366,8 @@ public abstract class AbsStorageProvider implements StorageProvider {
      * Async call for {@link #getDetails(RemoteFile)}
      */
     @Override
-    public void getDetailsAsync(final RemoteFile remoteFile, Task<RemoteFile> task) {
-        doAsync(task, new Delegate<RemoteFile>() {
+    public Operation<RemoteFile> getDetailsAsync(final RemoteFile remoteFile, Task<RemoteFile> task) {
+        return doAsync(getExecutor(Lane.INTERACTIVE), task, new Delegate<RemoteFile>() {
             @Override
             public RemoteFile invoke() {
                 return getDetails(remoteFile);
@@ -192,8 +379,8 @@ public abstract class AbsStorageProvider implements StorageProvider {
      * Async call for {@link #list(RemoteFile)}
      */
     @Override
-    public void listAsync(final RemoteFile folder, Task<List<RemoteFile>> task) {
-        doAsync(task, new Delegate<List<RemoteFile>>() {
+    public Operation<List<RemoteFile>> listAsync(final RemoteFile folder, Task<List<RemoteFile>> task) {
+        return doAsync(getExecutor(Lane.INTERACTIVE), task, new Delegate<List<RemoteFile>>() {
             @Override
             public List<RemoteFile> invoke() {
                 return list(folder);
@@ -205,8 +392,8 @@ public abstract class AbsStorageProvider implements StorageProvider {
      * Async call for {@link #list()}
      */
     @Override
-    public void listAsync(Task<List<RemoteFile>> task) {
-        doAsync(task, new Delegate<List<RemoteFile>>() {
+    public Operation<List<RemoteFile>> listAsync(Task<List<RemoteFile>> task) {
+        return doAsync(getExecutor(Lane.INTERACTIVE), task, new Delegate<List<RemoteFile>>() {
             @Override
             public List<RemoteFile> invoke() {
                 return list();
@@ -218,8 +405,8 @@ public abstract class AbsStorageProvider implements StorageProvider {
      * Async call for {@link StorageProvider#create(RemoteFile, LocalFile)}
      */
     @Override
-    public void createAsync(final RemoteFile parent, final LocalFile local, Task<RemoteFile> task) {
-        doAsync(task, new Delegate<RemoteFile>() {
+    public Operation<RemoteFile> createAsync(final RemoteFile parent, final LocalFile local, Task<RemoteFile> task) {
+        return doAsync(getExecutor(Lane.TRANSFER), task, new Delegate<RemoteFile>() {
             @Override
             public RemoteFile invoke() {
                 return create(parent, local);
@@ -231,8 +418,8 @@ public abstract class AbsStorageProvider implements StorageProvider {
      * Async call for {@link #create(RemoteFile, String)}
      */
     @Override
-    public void createAsync(final RemoteFile parent, final String name, Task<RemoteFile> task) {
-        doAsync(task, new Delegate<RemoteFile>() {
+    public Operation<RemoteFile> createAsync(final RemoteFile parent, final String name, Task<RemoteFile> task) {
+        return doAsync(getExecutor(Lane.INTERACTIVE), task, new Delegate<RemoteFile>() {
             @Override
             public RemoteFile invoke() {
                 return create(parent, name);
@@ -244,8 +431,8 @@ public abstract class AbsStorageProvider implements StorageProvider {
      * Async call for {@link StorageProvider#create(LocalFile)}
      */
     @Override
-    public void createAsync(final LocalFile content, Task<RemoteFile> task) {
-        doAsync(task, new Delegate<RemoteFile>() {
+    public Operation<RemoteFile> createAsync(final LocalFile content, Task<RemoteFile> task) {
+        return doAsync(getExecutor(Lane.TRANSFER), task, new Delegate<RemoteFile>() {
             @Override
             public RemoteFile invoke() {
                 return create(content);
@@ -257,8 +444,8 @@ public abstract class AbsStorageProvider implements StorageProvider {
      * Async call for {@link #create(String)}
      */
     @Override
-    public void createAsync(final String name, Task<RemoteFile> task) {
-        doAsync(task, new Delegate<RemoteFile>() {
+    public Operation<RemoteFile> createAsync(final String name, Task<RemoteFile> task) {
+        return doAsync(getExecutor(Lane.INTERACTIVE), task, new Delegate<RemoteFile>() {
             @Override
             public RemoteFile invoke() {
                 return create(name);
@@ -266,12 +453,25 @@ public abstract class AbsStorageProvider implements StorageProvider {
         });
     }
 
+    /**
+     * Async call for {@link #create(RemoteFile, String, String, java.io.InputStream, long)}
+     */
+    @Override
+    public Operation<RemoteFile> createAsync(final RemoteFile parent, final String name, final String type, final InputStream content, final long length, Task<RemoteFile> task) {
+        return doAsync(getExecutor(Lane.TRANSFER), task, new Delegate<RemoteFile>() {
+            @Override
+            public RemoteFile invoke() {
+                return create(parent, name, type, content, length);
+            }
+        });
+    }
+
     /**
      * Async call for {@link #update(RemoteFile, LocalFile)}
      */
     @Override
-    public void updateAsync(final RemoteFile remoteFile, final LocalFile content, Task<RemoteFile> task) {
-        doAsync(task, new Delegate<RemoteFile>() {
+    public Operation<RemoteFile> updateAsync(final RemoteFile remoteFile, final LocalFile content, Task<RemoteFile> task) {
+        return doAsync(getExecutor(Lane.TRANSFER), task, new Delegate<RemoteFile>() {
             @Override
             public RemoteFile invoke() {
                 return update(remoteFile, content);
@@ -283,8 +483,8 @@ public abstract class AbsStorageProvider implements StorageProvider {
      * Async call for {@link #delete(String)}
      */
     @Override
-    public void deleteAsync(final String id, Task<Boolean> task) {
-        doAsync(task, new Delegate<Boolean>() {
+    public Operation<Boolean> deleteAsync(final String id, Task<Boolean> task) {
+        return doAsync(getExecutor(Lane.INTERACTIVE), task, new Delegate<Boolean>() {
             @Override
             public Boolean invoke() {
                 return delete(id);
@@ -296,8 +496,8 @@ public abstract class AbsStorageProvider implements StorageProvider {
      * Async all for {@link #download(RemoteFile, LocalFile)}
      */
     @Override
-    public void downloadAsync(final RemoteFile remoteFile, final LocalFile local, Task<Boolean> task) {
-        doAsync(task, new Delegate<Boolean>() {
+    public Operation<Boolean> downloadAsync(final RemoteFile remoteFile, final LocalFile local, Task<Boolean> task) {
+        return doAsync(getExecutor(Lane.TRANSFER), task, new Delegate<Boolean>() {
             @Override
             public Boolean invoke() {
                 return download(remoteFile, local);
@@ -305,6 +505,252 @@ public abstract class AbsStorageProvider implements StorageProvider {
         });
     }
 
+    /**
+     * Copies the stream returned by {@link #open(RemoteFile)} to {@code output}.
+     * Providers that can write to {@code output} directly should override this
+     */
+    @Override
+    public boolean download(RemoteFile remoteFile, OutputStream output) {
+        InputStream input = open(remoteFile);
+        if(input == null) return false;
+
+        try {
+            IOUtils.write(input, output, null);
+            return true;
+        }
+        catch (IOException e){
+            Log.e(getName(), "download()", e);
+            return false;
+        }
+        finally {
+            IOUtils.safeClose(input);
+        }
+    }
+
+    /**
+     * Async call for {@link #download(RemoteFile, java.io.OutputStream)}
+     */
+    @Override
+    public Operation<Boolean> downloadAsync(final RemoteFile remoteFile, final OutputStream output, Task<Boolean> task) {
+        return doAsync(getExecutor(Lane.TRANSFER), task, new Delegate<Boolean>() {
+            @Override
+            public Boolean invoke() {
+                return download(remoteFile, output);
+            }
+        });
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Merges identical in-flight lookups into one call.
+     * {@code key} should identify the operation and its arguments
+     * (i.e: "id:" + id). All concurrent callers share the same result.
+     */
+    protected <T> T coalesce(String key, Delegate<T> delegate){
+        return singleFlight.execute(key, delegate);
+    }
+
+    /**
+     * Same as {@link #coalesce(String, Delegate)} but every caller
+     * gets its own copy of the list
+     */
+    protected List<RemoteFile> coalesceList(String key, Delegate<List<RemoteFile>> delegate){
+        List<RemoteFile> list = singleFlight.execute(key, delegate);
+        if(list == null) return null;
+        return new ArrayList<RemoteFile>(list);
+    }
+
     ///////////////////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * Returns the cached {@link RemoteFile} by its id (if caching is enabled)
+     */
+    protected RemoteFile getCached(String id){
+        MetadataCache cache = metadataCache;
+        return cache != null ? cache.get(id) : null;
+    }
+
+    /**
+     * Returns the cached {@link RemoteFile} by its name in {@code parentKey}
+     * (if caching is enabled)
+     */
+    protected RemoteFile getCached(String parentKey, String name){
+        MetadataCache cache = metadataCache;
+        return cache != null ? cache.get(parentKey, name) : null;
+    }
+
+    /**
+     * Caches {@code remoteFile} (if caching is enabled) and returns it
+     */
+    protected <R extends RemoteFile> R cache(String parentKey, R remoteFile){
+        MetadataCache cache = metadataCache;
+        if(cache != null) cache.put(parentKey, remoteFile);
+        return remoteFile;
+    }
+
+    /**
+     * True if {@code name} is known not to exist in {@code parentKey}
+     * (if caching is enabled)
+     */
+    protected boolean isCachedMissing(String parentKey, String name){
+        MetadataCache cache = metadataCache;
+        return cache != null && cache.isMissing(parentKey, name);
+    }
+
+    /**
+     * Remembers that {@code name} doesn't exist in {@code parentKey}
+     * (if caching is enabled). Only call this for confirmed misses, not errors
+     */
+    protected void cacheMissing(String parentKey, String name){
+        MetadataCache cache = metadataCache;
+        if(cache != null) cache.putMissing(parentKey, name);
+    }
+
+    /**
+     * Removes the file from the cache (if caching is enabled)
+     */
+    protected void invalidate(String id){
+        MetadataCache cache = metadataCache;
+        if(cache != null) cache.invalidate(id);
+
+        MetadataStore store = metadataStore;
+        if(store != null && id != null) store.delete(getName(), id);
+    }
+
+    /**
+     * Returns the revision (or checksum) of the content of {@code remoteFile}
+     * or null if unknown. Used as the key of the {@link ContentCache}
+     */
+    protected String getContentRevision(RemoteFile remoteFile){
+        return null;
+    }
+
+    /**
+     * Copies the cached content of {@code remoteFile} to {@code local}.
+     * Returns false if it's not cached
+     */
+    protected boolean downloadFromCache(RemoteFile remoteFile, LocalFile local){
+        ContentCache cache = contentCache;
+        if(cache == null) return false;
+
+        String revision = getContentRevision(remoteFile);
+        return revision != null && cache.get(remoteFile.getId(), revision, local.getFile());
+    }
+
+    /**
+     * Puts the content of {@code local} (just downloaded) to the {@link ContentCache}
+     */
+    protected void putToCache(RemoteFile remoteFile, String revision, LocalFile local){
+        ContentCache cache = contentCache;
+        if(cache != null && revision != null) cache.put(remoteFile.getId(), revision, local.getFile());
+    }
+
+    /**
+     * True if listings are cached (in memory and/or in the {@link MetadataStore})
+     */
+    protected boolean isListingCached(){
+        return listingCache != null || metadataStore != null;
+    }
+
+    /**
+     * Returns the cached listing of {@code folderKey}, falls back to the {@link MetadataStore}
+     * (i.e: after a cold start). Returns null if not found
+     */
+    protected ListingCache.Listing getListing(String folderKey){
+        ListingCache cache = listingCache;
+        ListingCache.Listing listing = cache != null ? cache.get(folderKey) : null;
+        MetadataStore store = metadataStore;
+        if(listing == null && store != null){
+            String validator = store.getToken(getName(), LISTING_TOKEN + folderKey);
+            List<RemoteFile> files = listStored(folderKey);
+            if(validator != null && files != null){
+                listing = new ListingCache.Listing(files, validator);
+                if(cache != null) cache.put(folderKey, files, validator);
+            }
+        }
+        return listing;
+    }
+
+    /**
+     * Puts the listing of {@code folderKey} to the {@link ListingCache}
+     * and the {@link MetadataStore} (if any)
+     */
+    protected void putListing(String folderKey, List<RemoteFile> files, String validator){
+        if(files == null) return;
+
+        ListingCache cache = listingCache;
+        if(cache != null) cache.put(folderKey, files, validator);
+
+        // also refreshes the metadata cache (and forgets the misses)
+        for(RemoteFile remoteFile : files){
+            cache(folderKey, remoteFile);
+        }
+
+        MetadataStore store = metadataStore;
+        if(store != null){
+            List<MetadataStore.Record> records = new ArrayList<MetadataStore.Record>(files.size());
+            for(RemoteFile remoteFile : files){
+                records.add(toRecord(remoteFile));
+            }
+            store.putChildren(getName(), folderKey, records);
+            store.putToken(getName(), LISTING_TOKEN + folderKey, validator);
+        }
+    }
+
+    /**
+     * Returns the key that identifies {@code folder} (null for root)
+     * in the {@link ListingCache} and the {@link MetadataStore}
+     */
+    protected String getFolderKey(RemoteFile folder){
+        return folder != null ? folder.getId() : "";
+    }
+
+    /**
+     * Converts {@code remoteFile} to a {@link MetadataStore.Record}.
+     * Providers may override this to store the size and revision as well
+     */
+    protected MetadataStore.Record toRecord(RemoteFile remoteFile){
+        MetadataStore.Record record = new MetadataStore.Record();
+        record.id = remoteFile.getId();
+        record.name = remoteFile.getName();
+        record.type = remoteFile.getType();
+        record.directory = remoteFile.isDirectory();
+        record.downloadUrl = remoteFile.getDownloadUrl();
+        return record;
+    }
+
+    /**
+     * Converts {@code record} back to a {@link RemoteFile}.
+     * Providers that support the {@link MetadataStore} must override this.
+     */
+    protected RemoteFile fromRecord(MetadataStore.Record record){
+        return null;
+    }
+
+    private List<RemoteFile> listStored(String folderKey){
+        MetadataStore store = metadataStore;
+        if(store == null) return null;
+
+        List<MetadataStore.Record> records = store.getChildren(getName(), folderKey);
+        if(records.isEmpty() && store.getToken(getName(), LISTING_TOKEN + folderKey) == null)
+            return null;
+
+        List<RemoteFile> list = new ArrayList<RemoteFile>(records.size());
+        for(MetadataStore.Record record : records){
+            RemoteFile remoteFile = fromRecord(record);
+            if(remoteFile != null) list.add(remoteFile);
+        }
+        return list;
+    }
+
+    /**
+     * Returns the executor of the specified {@code provider} for {@code lane}
+     */
+    static Executor getExecutor(StorageProvider provider, Lane lane){
+        if(provider instanceof AbsStorageProvider)
+            return ((AbsStorageProvider) provider).getExecutor(lane);
+        return AsyncUtils.getDefaultExecutor(lane);
+    }
+
 }
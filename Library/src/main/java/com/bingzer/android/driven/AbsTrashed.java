@@ -16,6 +16,8 @@
 package com.bingzer.android.driven;
 
 import com.bingzer.android.driven.contracts.Delegate;
+import com.bingzer.android.driven.contracts.Lane;
+import com.bingzer.android.driven.contracts.Operation;
 import com.bingzer.android.driven.contracts.Task;
 import com.bingzer.android.driven.contracts.Trashed;
 
@@ -28,12 +30,32 @@ import static com.bingzer.android.driven.utils.AsyncUtils.doAsync;
 */
 public abstract class AbsTrashed implements Trashed {
 
+    protected StorageProvider provider;
+
+    /**
+     * Creates an instance that is not bound to any provider.
+     * "Async" calls will run on the default executor
+     */
+    protected AbsTrashed(){
+        this(null);
+    }
+
+    /**
+     * Creates an instance bound to {@code provider}.
+     * "Async" calls will run on the provider's executor
+     */
+    protected AbsTrashed(StorageProvider provider){
+        this.provider = provider;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////
+
     /**
      * Async call for {@link #exists(String)}
      */
     @Override
-    public void existsAsync(final String name, Task<Boolean> task) {
-        doAsync(task, new Delegate<Boolean>() {
+    public Operation<Boolean> existsAsync(final String name, Task<Boolean> task) {
+        return doAsync(AbsStorageProvider.getExecutor(provider, Lane.INTERACTIVE), task, new Delegate<Boolean>() {
             @Override
             public Boolean invoke() {
                 return exists(name);
@@ -45,8 +67,8 @@ public abstract class AbsTrashed implements Trashed {
      * Async call fro {@link #get(String)}
      */
     @Override
-    public void getAsync(final String name, Task<RemoteFile> task) {
-        doAsync(task, new Delegate<RemoteFile>() {
+    public Operation<RemoteFile> getAsync(final String name, Task<RemoteFile> task) {
+        return doAsync(AbsStorageProvider.getExecutor(provider, Lane.INTERACTIVE), task, new Delegate<RemoteFile>() {
             @Override
             public RemoteFile invoke() {
                 return get(name);
@@ -58,8 +80,8 @@ public abstract class AbsTrashed implements Trashed {
      * Async call for {@link #list()}
      */
     @Override
-    public void listAsync(Task<List<RemoteFile>> task) {
-        doAsync(task, new Delegate<List<RemoteFile>>() {
+    public Operation<List<RemoteFile>> listAsync(Task<List<RemoteFile>> task) {
+        return doAsync(AbsStorageProvider.getExecutor(provider, Lane.INTERACTIVE), task, new Delegate<List<RemoteFile>>() {
             @Override
             public List<RemoteFile> invoke() {
                 return list();
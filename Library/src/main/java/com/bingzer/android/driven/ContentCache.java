@@ -0,0 +1,211 @@
+/**
+ * Copyright 2014 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance insert the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bingzer.android.driven;
+
+import android.util.Log;
+
+import com.bingzer.android.driven.utils.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * On-disk cache of downloaded content, keyed by the file id and its revision
+ * (i.e: Drive's md5Checksum or Dropbox's rev). A cached revision is copied out
+ * to the caller's {@link LocalFile} without touching the network.
+ * The least recently used entries are evicted when the cache grows
+ * past its byte quota.
+ *
+ * @see AbsStorageProvider#setContentCache(ContentCache)
+ */
+public class ContentCache {
+
+    private static final String TAG = "DrivenContentCache";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    public static final long DEFAULT_MAX_BYTES = 50 * 1024 * 1024;
+
+    private final File directory;
+    private final long maxBytes;
+    // file name -> size, in access order
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+    private long size;
+
+    public ContentCache(File directory){
+        this(directory, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param directory where the content is stored (i.e: a folder in {@code Context.getCacheDir()})
+     * @param maxBytes the byte quota
+     */
+    public ContentCache(File directory, long maxBytes){
+        if(maxBytes <= 0) throw new IllegalArgumentException("maxBytes must be positive");
+
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        IOUtils.safeCreateDir(directory);
+        load();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Copies the cached content of {@code id} at {@code revision} to {@code destination}.
+     * Returns false if it's not cached
+     */
+    public boolean get(String id, String revision, File destination){
+        String name = key(id, revision);
+        File file = new File(directory, name);
+        synchronized (this){
+            if(entries.get(name) == null) return false;
+            file.setLastModified(System.currentTimeMillis());
+        }
+
+        try {
+            IOUtils.copyFile(file, destination);
+            return true;
+        }
+        catch (IOException e){
+            // evicted while copying?
+            Log.w(TAG, "Failed to copy out " + name, e);
+            return false;
+        }
+    }
+
+    /**
+     * Stores a copy of {@code source} as the content of {@code id} at {@code revision}
+     */
+    public void put(String id, String revision, File source){
+        if(source.length() > maxBytes) return;
+
+        String name = key(id, revision);
+        File temp = new File(directory, name + TEMP_SUFFIX);
+        try {
+            IOUtils.copyFile(source, temp);
+        }
+        catch (IOException e){
+            Log.w(TAG, "Failed to cache " + name, e);
+            temp.delete();
+            return;
+        }
+
+        synchronized (this){
+            File file = new File(directory, name);
+            Long previous = entries.remove(name);
+            if(previous != null) size -= previous;
+
+            if(!temp.renameTo(file)){
+                temp.delete();
+                return;
+            }
+            entries.put(name, file.length());
+            size += file.length();
+            trimToSize();
+        }
+    }
+
+    /**
+     * Removes the cached content of {@code id} at {@code revision}
+     */
+    public synchronized void remove(String id, String revision){
+        String name = key(id, revision);
+        Long previous = entries.remove(name);
+        if(previous != null){
+            size -= previous;
+            new File(directory, name).delete();
+        }
+    }
+
+    public synchronized void clear(){
+        IOUtils.deleteTree(directory, false);
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Returns the total size (in bytes) of the cached content
+     */
+    public synchronized long getSize(){
+        return size;
+    }
+
+    public long getMaxBytes(){
+        return maxBytes;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private synchronized void load(){
+        File[] files = directory.listFiles();
+        if(files == null) return;
+
+        // oldest first, so the access order is preserved
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long l = lhs.lastModified(), r = rhs.lastModified();
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+
+        for(File file : files){
+            if(file.getName().endsWith(TEMP_SUFFIX)){
+                file.delete();
+                continue;
+            }
+            entries.put(file.getName(), file.length());
+            size += file.length();
+        }
+        trimToSize();
+    }
+
+    private void trimToSize(){
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while(size > maxBytes && iterator.hasNext()){
+            Map.Entry<String, Long> eldest = iterator.next();
+            new File(directory, eldest.getKey()).delete();
+            size -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    private static String key(String id, String revision){
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest((id + "@" + revision).getBytes("UTF-8"));
+            StringBuilder builder = new StringBuilder();
+            for(byte b : hash){
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        }
+        catch (NoSuchAlgorithmException e){
+            throw new DrivenException(e);
+        }
+        catch (UnsupportedEncodingException e){
+            throw new DrivenException(e);
+        }
+    }
+}
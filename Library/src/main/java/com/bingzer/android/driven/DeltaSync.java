@@ -0,0 +1,311 @@
+/**
+ * Copyright 2014 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance insert the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bingzer.android.driven;
+
+import com.bingzer.android.driven.utils.BufferPool;
+import com.bingzer.android.driven.utils.ChecksumCache;
+import com.bingzer.android.driven.utils.Chunker;
+import com.bingzer.android.driven.utils.IOUtils;
+import com.bingzer.android.driven.utils.PartialFile;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Syncs large files that only change partially (i.e: databases, logs)
+ * by sending only the chunks that have changed.
+ * <p/>
+ * A file is stored as a folder named {@code <name>.delta} holding a {@link #MANIFEST}
+ * (the list of chunks) and one file per chunk, named by the SHA-1 of its content.
+ * Only the calls every {@link StorageProvider} has are used, so it works with any provider.
+ * Downloads reuse the chunks the local file already has.
+ */
+public class DeltaSync {
+
+    public static final String FOLDER_SUFFIX = ".delta";
+    public static final String MANIFEST = "manifest";
+    private static final String MANIFEST_HEADER = "driven-delta 1";
+    private static final String CHUNK_TYPE = "application/octet-stream";
+    private static final String MANIFEST_TYPE = "text/plain";
+
+    private final StorageProvider provider;
+    private final Chunker chunker;
+
+    public DeltaSync(StorageProvider provider){
+        this(provider, new Chunker());
+    }
+
+    public DeltaSync(StorageProvider provider, Chunker chunker){
+        this.provider = provider;
+        this.chunker = chunker;
+    }
+
+    /**
+     * Uploads {@code local} to {@code <name>.delta} in {@code parent} (or the root directory
+     * if {@code parent} is null). Returns the folder or null if the upload failed
+     */
+    public RemoteFile upload(RemoteFile parent, LocalFile local) {
+        try {
+            String folderName = local.getName() + FOLDER_SUFFIX;
+            RemoteFile folder = getFolder(parent, folderName);
+            if(folder == null) folder = parent != null ? provider.create(parent, folderName) : provider.create(folderName);
+            if(folder == null) throw new IOException("Unable to create " + folderName);
+
+            Map<String, RemoteFile> remoteChunks = listChunks(folder);
+            List<Chunker.Chunk> chunks = chunker.split(local.getFile());
+            uploadChunks(folder, local, chunks, remoteChunks);
+
+            // the manifest goes last, so it never points to a missing chunk
+            byte[] content = writeManifest(local.getFile().length(), chunks).getBytes("UTF-8");
+            RemoteFile manifest = provider.get(folder, MANIFEST);
+            if(manifest == null){
+                if(provider.create(folder, MANIFEST, MANIFEST_TYPE, new ByteArrayInputStream(content), content.length) == null)
+                    throw new IOException("Unable to create the manifest");
+            }
+            else {
+                updateManifest(manifest, content);
+            }
+
+            // chunks the new version doesn't use anymore
+            for(Chunker.Chunk chunk : chunks){
+                remoteChunks.remove(chunk.getHash());
+            }
+            for(RemoteFile unused : remoteChunks.values()){
+                provider.delete(unused.getId());
+            }
+            return folder;
+        }
+        catch (IOException e){
+            return null;
+        }
+    }
+
+    /**
+     * Downloads {@code <name>.delta} in {@code parent} (or the root directory if
+     * {@code parent} is null) to {@code local}. The chunks {@code local} already has
+     * are copied from it instead of being downloaded
+     */
+    public boolean download(RemoteFile parent, LocalFile local) {
+        try {
+            RemoteFile folder = getFolder(parent, local.getName() + FOLDER_SUFFIX);
+            RemoteFile manifest = folder != null ? provider.get(folder, MANIFEST) : null;
+            if(manifest == null) return false;
+
+            long[] length = new long[1];
+            List<Chunker.Chunk> chunks = readManifest(manifest, length);
+            Map<String, RemoteFile> remoteChunks = listChunks(folder);
+
+            Map<String, Chunker.Chunk> localChunks = new HashMap<String, Chunker.Chunk>();
+            if(local.getFile().exists()){
+                for(Chunker.Chunk chunk : chunker.split(local.getFile())){
+                    localChunks.put(chunk.getHash(), chunk);
+                }
+            }
+
+            PartialFile partialFile = new PartialFile(local.getFile(), null);
+            OutputStream output = partialFile.openOutput(false);
+            RandomAccessFile existing = localChunks.isEmpty() ? null : new RandomAccessFile(local.getFile(), "r");
+            try {
+                for(Chunker.Chunk chunk : chunks){
+                    Chunker.Chunk localChunk = localChunks.get(chunk.getHash());
+                    if(localChunk != null) copyChunk(existing, localChunk, output);
+                    else downloadChunk(remoteChunks.get(chunk.getHash()), chunk, output);
+                }
+            }
+            catch (IOException e){
+                IOUtils.safeClose(output);
+                partialFile.discard();
+                throw e;
+            }
+            finally {
+                IOUtils.safeClose(output);
+                if(existing != null) existing.close();
+            }
+
+            if(partialFile.getFile().length() != length[0]){
+                partialFile.discard();
+                return false;
+            }
+            partialFile.commit();
+            local.setModified(true);
+            return true;
+        }
+        catch (IOException e){
+            return false;
+        }
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////
+
+    private void uploadChunks(RemoteFile folder, LocalFile local, List<Chunker.Chunk> chunks, Map<String, RemoteFile> remoteChunks) throws IOException {
+        Set<String> uploaded = new HashSet<String>();
+        BufferPool pool = BufferPool.getDefault();
+        byte[] buffer = pool.acquire(chunker.getMaxSize());
+        RandomAccessFile input = new RandomAccessFile(local.getFile(), "r");
+        try {
+            for(Chunker.Chunk chunk : chunks){
+                if(remoteChunks.containsKey(chunk.getHash()) || !uploaded.add(chunk.getHash())) continue;
+
+                IOUtils.throwIfInterrupted();
+                input.seek(chunk.getOffset());
+                input.readFully(buffer, 0, chunk.getLength());
+                InputStream content = new ByteArrayInputStream(buffer, 0, chunk.getLength());
+                if(provider.create(folder, chunk.getHash(), CHUNK_TYPE, content, chunk.getLength()) == null)
+                    throw new IOException("Unable to upload chunk " + chunk.getHash());
+            }
+        }
+        finally {
+            input.close();
+            pool.release(buffer);
+        }
+    }
+
+    /**
+     * Replaces the content of {@code manifest} in place,
+     * so there's a manifest even if the upload fails halfway
+     */
+    private void updateManifest(RemoteFile manifest, byte[] content) throws IOException {
+        File temp = File.createTempFile("driven-", FOLDER_SUFFIX);
+        try {
+            OutputStream output = new FileOutputStream(temp);
+            try {
+                output.write(content);
+            }
+            finally {
+                output.close();
+            }
+            if(provider.update(manifest, new LocalFile(temp, MANIFEST_TYPE, MANIFEST)) == null)
+                throw new IOException("Unable to replace the manifest");
+        }
+        finally {
+            temp.delete();
+        }
+    }
+
+    private void downloadChunk(RemoteFile remoteChunk, Chunker.Chunk chunk, OutputStream output) throws IOException {
+        InputStream input = remoteChunk != null ? provider.open(remoteChunk) : null;
+        if(input == null) throw new IOException("Missing chunk " + chunk.getHash());
+
+        MessageDigest digest = Chunker.newDigest();
+        try {
+            IOUtils.write(new DigestInputStream(input, digest), output, null);
+        }
+        finally {
+            IOUtils.safeClose(input);
+        }
+        if(!chunk.getHash().equals(ChecksumCache.toHex(digest.digest())))
+            throw new IOException("Chunk " + chunk.getHash() + " is corrupted");
+    }
+
+    private static void copyChunk(RandomAccessFile input, Chunker.Chunk chunk, OutputStream output) throws IOException {
+        BufferPool pool = BufferPool.getDefault();
+        byte[] buffer = pool.acquire(IOUtils.COPY_BUFFER_SIZE);
+        try {
+            input.seek(chunk.getOffset());
+            int remaining = chunk.getLength();
+            while(remaining > 0){
+                int count = Math.min(buffer.length, remaining);
+                input.readFully(buffer, 0, count);
+                output.write(buffer, 0, count);
+                remaining -= count;
+            }
+        }
+        finally {
+            pool.release(buffer);
+        }
+    }
+
+    private RemoteFile getFolder(RemoteFile parent, String name){
+        return parent != null ? provider.get(parent, name) : provider.get(name);
+    }
+
+    /**
+     * Returns the chunks in {@code folder} by their hash
+     */
+    private Map<String, RemoteFile> listChunks(RemoteFile folder) throws IOException {
+        List<RemoteFile> children = provider.list(folder);
+        if(children == null) throw new IOException("Unable to list " + folder.getName());
+
+        Map<String, RemoteFile> chunks = new HashMap<String, RemoteFile>();
+        for(RemoteFile child : children){
+            if(!MANIFEST.equals(child.getName())) chunks.put(child.getName(), child);
+        }
+        return chunks;
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * The manifest is the header, the length of the file and one "hash length" line per chunk
+     */
+    static String writeManifest(long length, List<Chunker.Chunk> chunks){
+        StringBuilder builder = new StringBuilder();
+        builder.append(MANIFEST_HEADER).append('\n').append(length).append('\n');
+        for(Chunker.Chunk chunk : chunks){
+            builder.append(chunk.getHash()).append(' ').append(chunk.getLength()).append('\n');
+        }
+        return builder.toString();
+    }
+
+    private List<Chunker.Chunk> readManifest(RemoteFile manifest, long[] length) throws IOException {
+        InputStream input = provider.open(manifest);
+        if(input == null) throw new IOException("Unable to open the manifest");
+        try {
+            return parseManifest(input, length);
+        }
+        finally {
+            IOUtils.safeClose(input);
+        }
+    }
+
+    static List<Chunker.Chunk> parseManifest(InputStream input, long[] length) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, "UTF-8"));
+        if(!MANIFEST_HEADER.equals(reader.readLine())) throw new IOException("Not a manifest");
+
+        List<Chunker.Chunk> chunks = new ArrayList<Chunker.Chunk>();
+        try {
+            length[0] = Long.parseLong(reader.readLine());
+            long offset = 0;
+            String line;
+            while((line = reader.readLine()) != null){
+                if(line.length() == 0) continue;
+                int index = line.indexOf(' ');
+                int chunkLength = Integer.parseInt(line.substring(index + 1));
+                chunks.add(new Chunker.Chunk(line.substring(0, index), offset, chunkLength));
+                offset += chunkLength;
+            }
+        }
+        catch (RuntimeException e){
+            throw new IOException("Malformed manifest");
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright 2014 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance insert the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bingzer.android.driven;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the last listing of a folder along with a provider-specific
+ * "validator" (i.e: Drive's change id or Dropbox's folder hash)
+ * so the provider can revalidate it instead of downloading all the children again.
+ * The least recently used folders are evicted when the cache is full.
+ *
+ * @see AbsStorageProvider#setListingCache(ListingCache)
+ */
+public class ListingCache {
+
+    public static final int DEFAULT_MAX_FOLDERS = 64;
+
+    private final Map<String, Listing> listings;
+
+    public ListingCache(){
+        this(DEFAULT_MAX_FOLDERS);
+    }
+
+    public ListingCache(final int maxFolders){
+        if(maxFolders <= 0) throw new IllegalArgumentException("maxFolders must be positive");
+
+        listings = new LinkedHashMap<String, Listing>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Listing> eldest) {
+                return size() > maxFolders;
+            }
+        };
+    }
+
+    /**
+     * Returns the last listing of {@code folderKey} or null
+     */
+    public synchronized Listing get(String folderKey){
+        return listings.get(folderKey);
+    }
+
+    /**
+     * Stores the listing of {@code folderKey}
+     */
+    public synchronized void put(String folderKey, List<RemoteFile> files, String validator){
+        if(files == null || validator == null) return;
+        listings.put(folderKey, new Listing(files, validator));
+    }
+
+    public synchronized void invalidate(String folderKey){
+        listings.remove(folderKey);
+    }
+
+    public synchronized void clear(){
+        listings.clear();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * The children of a folder and the validator at the time they were listed
+     */
+    public static class Listing {
+        private final List<RemoteFile> files;
+        private final String validator;
+
+        Listing(List<RemoteFile> files, String validator){
+            this.files = Collections.unmodifiableList(new ArrayList<RemoteFile>(files));
+            this.validator = validator;
+        }
+
+        public List<RemoteFile> getFiles() {
+            return files;
+        }
+
+        public String getValidator() {
+            return validator;
+        }
+    }
+}
@@ -15,6 +15,8 @@
  */
 package com.bingzer.android.driven;
 
+import com.bingzer.android.driven.contracts.TransferListener;
+
 import java.io.File;
 
 /**
@@ -25,6 +27,9 @@ public class LocalFile {
     private File file;
     private String type;
     private String name;
+    private String revision;
+    private boolean modified = true;
+    private TransferListener transferListener;
 
     /**
      * Creates an instance of {@linkplain com.bingzer.android.driven.LocalFile}
@@ -104,4 +109,55 @@ public class LocalFile {
             name = file.getName();
         this.name = name;
     }
+
+    /**
+     * Returns the revision of the remote content this file holds
+     * (i.e: an ETag or Dropbox's rev), set by
+     * {@link StorageProvider#download(RemoteFile, LocalFile)}.
+     * Returns null if unknown
+     */
+    public String getRevision() {
+        return revision;
+    }
+
+    /**
+     * Sets the revision of the remote content this file holds.
+     * If set, {@link StorageProvider#download(RemoteFile, LocalFile)} only
+     * downloads the content if it has changed since
+     */
+    public void setRevision(String revision) {
+        this.revision = revision;
+    }
+
+    /**
+     * After {@link StorageProvider#download(RemoteFile, LocalFile)},
+     * returns false if the remote content hasn't changed since {@link #getRevision()}
+     * (and nothing was downloaded)
+     */
+    public boolean isModified() {
+        return modified;
+    }
+
+    /**
+     * Sets whether the content was modified (only used by the providers)
+     */
+    public void setModified(boolean modified) {
+        this.modified = modified;
+    }
+
+    /**
+     * Returns the listener notified of the progress
+     * when this file is uploaded or downloaded
+     */
+    public TransferListener getTransferListener() {
+        return transferListener;
+    }
+
+    /**
+     * Sets the listener notified of the progress
+     * when this file is uploaded or downloaded
+     */
+    public void setTransferListener(TransferListener transferListener) {
+        this.transferListener = transferListener;
+    }
 }
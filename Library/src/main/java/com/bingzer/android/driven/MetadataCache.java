@@ -0,0 +1,150 @@
+/**
+ * Copyright 2014 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance insert the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bingzer.android.driven;
+
+import com.bingzer.android.driven.utils.ExpiringLruCache;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * In-memory cache of {@link RemoteFile}s, keyed by id and by (parent, name).
+ * Entries expire after a TTL and the least recently used ones are evicted
+ * when the cache is full.
+ * <p/>
+ * Confirmed misses (a name that doesn't exist in a parent) are remembered
+ * for a shorter TTL, until a file with that name is put into the cache.
+ *
+ * @see AbsStorageProvider#setMetadataCache(MetadataCache)
+ */
+public class MetadataCache {
+
+    public static final long DEFAULT_TTL = 60 * 1000;
+    public static final int DEFAULT_MAX_ENTRIES = 512;
+    public static final long DEFAULT_MISSING_TTL = 10 * 1000;
+
+    private final ExpiringLruCache<String, RemoteFile> files;
+    private final ExpiringLruCache<String, String> names;
+    // name -> parent keys where the name is known not to exist
+    private final ExpiringLruCache<String, Set<String>> missing;
+
+    public MetadataCache(){
+        this(DEFAULT_TTL, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param ttl how long (in milliseconds) an entry stays valid
+     * @param maxEntries max number of files kept in memory
+     */
+    public MetadataCache(long ttl, int maxEntries){
+        this(ttl, maxEntries, Math.min(ttl, DEFAULT_MISSING_TTL));
+    }
+
+    /**
+     * @param ttl how long (in milliseconds) an entry stays valid
+     * @param maxEntries max number of files kept in memory
+     * @param missingTtl how long (in milliseconds) a confirmed miss stays valid
+     */
+    public MetadataCache(long ttl, int maxEntries, long missingTtl){
+        files = new ExpiringLruCache<String, RemoteFile>(ttl, maxEntries);
+        names = new ExpiringLruCache<String, String>(ttl, maxEntries);
+        missing = new ExpiringLruCache<String, Set<String>>(missingTtl, maxEntries);
+    }
+
+    /**
+     * Returns the cached {@link RemoteFile} by its id
+     */
+    public RemoteFile get(String id){
+        if(id == null) return null;
+        return files.get(id);
+    }
+
+    /**
+     * Returns the cached {@link RemoteFile} by its name in {@code parentKey}
+     */
+    public RemoteFile get(String parentKey, String name){
+        if(name == null) return null;
+        String id = names.get(key(parentKey, name));
+        RemoteFile remoteFile = get(id);
+        // it might have been renamed since
+        if(remoteFile != null && !name.equals(remoteFile.getName())) return null;
+        return remoteFile;
+    }
+
+    /**
+     * Puts {@code remoteFile} into the cache. {@code parentKey} may be null
+     * if the parent is unknown, in which case it can only be found by its id.
+     */
+    public void put(String parentKey, RemoteFile remoteFile){
+        if(remoteFile == null || remoteFile.getId() == null) return;
+
+        files.put(remoteFile.getId(), remoteFile);
+        if(remoteFile.getName() != null){
+            // it exists now, wherever it is
+            missing.remove(remoteFile.getName());
+            if(parentKey != null)
+                names.put(key(parentKey, remoteFile.getName()), remoteFile.getId());
+        }
+    }
+
+    /**
+     * True if {@code name} is known not to exist in {@code parentKey}
+     */
+    public boolean isMissing(String parentKey, String name){
+        if(name == null) return false;
+        synchronized (missing){
+            Set<String> parentKeys = missing.get(name);
+            return parentKeys != null && parentKeys.contains(parentKey);
+        }
+    }
+
+    /**
+     * Remembers that {@code name} doesn't exist in {@code parentKey}
+     */
+    public void putMissing(String parentKey, String name){
+        if(name == null) return;
+        synchronized (missing){
+            Set<String> parentKeys = missing.get(name);
+            if(parentKeys == null){
+                parentKeys = new HashSet<String>();
+                missing.put(name, parentKeys);
+            }
+            parentKeys.add(parentKey);
+        }
+    }
+
+    /**
+     * Removes the file from the cache, along with the names that lead to it
+     */
+    public void invalidate(String id){
+        if(id == null) return;
+        files.remove(id);
+        // it may have been moved or renamed
+        names.removeValue(id);
+    }
+
+    public void clear(){
+        files.clear();
+        names.clear();
+        missing.clear();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static String key(String parentKey, String name){
+        return parentKey + "/" + name;
+    }
+}
@@ -0,0 +1,277 @@
+/**
+ * Copyright 2014 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance insert the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bingzer.android.driven;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SQLite-backed store of file metadata and sync tokens.
+ * Lets an app render the last known listing right after a cold start
+ * (see {@link AbsStorageProvider#listStored(RemoteFile)}) while the
+ * network refresh happens in the background.
+ * <p/>
+ * One store can be shared by all providers, rows are keyed by {@link StorageProvider#getName()}.
+ * A file with more than one parent (i.e: Google Drive) has one row in each of them.
+ *
+ * @see AbsStorageProvider#setMetadataStore(MetadataStore)
+ */
+public class MetadataStore {
+
+    public static final String DEFAULT_NAME = "driven-metadata.db";
+
+    private static final int VERSION = 2;
+
+    private static final String TABLE_FILES     = "files";
+    private static final String TABLE_TOKENS    = "tokens";
+
+    private static final String COL_PROVIDER    = "provider";
+    private static final String COL_ID          = "id";
+    private static final String COL_PARENT      = "parent";
+    private static final String COL_NAME        = "name";
+    private static final String COL_TYPE        = "type";
+    private static final String COL_DIRECTORY   = "directory";
+    private static final String COL_SIZE        = "size";
+    private static final String COL_REVISION    = "revision";
+    private static final String COL_MODIFIED    = "modified";
+    private static final String COL_DOWNLOAD_URL= "download_url";
+    private static final String COL_KEY         = "key";
+    private static final String COL_VALUE       = "value";
+
+    private static final String[] FILE_COLUMNS = {
+            COL_ID, COL_PARENT, COL_NAME, COL_TYPE, COL_DIRECTORY, COL_SIZE, COL_REVISION, COL_MODIFIED, COL_DOWNLOAD_URL
+    };
+
+    private final OpenHelper helper;
+
+    public MetadataStore(Context context){
+        this(context, DEFAULT_NAME);
+    }
+
+    public MetadataStore(Context context, String name){
+        helper = new OpenHelper(context.getApplicationContext(), name);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the stored file by its id or null.
+     * If it has more than one parent, any of its rows is returned
+     */
+    public Record get(String provider, String id){
+        Cursor cursor = helper.getReadableDatabase().query(TABLE_FILES, FILE_COLUMNS,
+                COL_PROVIDER + " = ? AND " + COL_ID + " = ?", new String[]{ provider, id }, null, null, null);
+        try {
+            return cursor.moveToNext() ? read(cursor) : null;
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the stored children of {@code parentKey}
+     */
+    public List<Record> getChildren(String provider, String parentKey){
+        List<Record> records = new ArrayList<Record>();
+        Cursor cursor = helper.getReadableDatabase().query(TABLE_FILES, FILE_COLUMNS,
+                COL_PROVIDER + " = ? AND " + COL_PARENT + " = ?", new String[]{ provider, parentKey }, null, null, COL_NAME);
+        try {
+            while(cursor.moveToNext()){
+                records.add(read(cursor));
+            }
+            return records;
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Replaces all the children of {@code parentKey} with {@code records}
+     */
+    public void putChildren(String provider, String parentKey, List<Record> records){
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(TABLE_FILES, COL_PROVIDER + " = ? AND " + COL_PARENT + " = ?", new String[]{ provider, parentKey });
+            for(Record record : records){
+                record.parentKey = parentKey;
+                db.insertWithOnConflict(TABLE_FILES, null, write(provider, record), SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        }
+        finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Inserts or replaces a single file under its {@code parentKey}
+     */
+    public void put(String provider, Record record){
+        helper.getWritableDatabase().insertWithOnConflict(TABLE_FILES, null, write(provider, record), SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Removes the file from all of its parents
+     */
+    public void delete(String provider, String id){
+        helper.getWritableDatabase().delete(TABLE_FILES, COL_PROVIDER + " = ? AND " + COL_ID + " = ?", new String[]{ provider, id });
+    }
+
+    /**
+     * Returns the sync token (i.e: change id, cursor or hash) stored under {@code key}
+     */
+    public String getToken(String provider, String key){
+        Cursor cursor = helper.getReadableDatabase().query(TABLE_TOKENS, new String[]{ COL_VALUE },
+                COL_PROVIDER + " = ? AND " + COL_KEY + " = ?", new String[]{ provider, key }, null, null, null);
+        try {
+            return cursor.moveToNext() ? cursor.getString(0) : null;
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Stores a sync token. A null {@code value} removes it
+     */
+    public void putToken(String provider, String key, String value){
+        SQLiteDatabase db = helper.getWritableDatabase();
+        if(value == null){
+            db.delete(TABLE_TOKENS, COL_PROVIDER + " = ? AND " + COL_KEY + " = ?", new String[]{ provider, key });
+            return;
+        }
+
+        ContentValues values = new ContentValues();
+        values.put(COL_PROVIDER, provider);
+        values.put(COL_KEY, key);
+        values.put(COL_VALUE, value);
+        db.insertWithOnConflict(TABLE_TOKENS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Removes everything stored for {@code provider}
+     */
+    public void clear(String provider){
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.delete(TABLE_FILES, COL_PROVIDER + " = ?", new String[]{ provider });
+        db.delete(TABLE_TOKENS, COL_PROVIDER + " = ?", new String[]{ provider });
+    }
+
+    public void close(){
+        helper.close();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static Record read(Cursor cursor){
+        Record record = new Record();
+        record.id = cursor.getString(0);
+        record.parentKey = cursor.getString(1);
+        record.name = cursor.getString(2);
+        record.type = cursor.getString(3);
+        record.directory = cursor.getInt(4) != 0;
+        record.size = cursor.isNull(5) ? -1 : cursor.getLong(5);
+        record.revision = cursor.getString(6);
+        record.modified = cursor.getString(7);
+        record.downloadUrl = cursor.getString(8);
+        return record;
+    }
+
+    private static ContentValues write(String provider, Record record){
+        ContentValues values = new ContentValues();
+        values.put(COL_PROVIDER, provider);
+        values.put(COL_ID, record.id);
+        values.put(COL_PARENT, record.parentKey != null ? record.parentKey : "");
+        values.put(COL_NAME, record.name);
+        values.put(COL_TYPE, record.type);
+        values.put(COL_DIRECTORY, record.directory ? 1 : 0);
+        if(record.size >= 0) values.put(COL_SIZE, record.size);
+        else values.putNull(COL_SIZE);
+        values.put(COL_REVISION, record.revision);
+        values.put(COL_MODIFIED, record.modified);
+        values.put(COL_DOWNLOAD_URL, record.downloadUrl);
+        return values;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * A stored file. {@code revision} and {@code modified} are provider-specific
+     * (i.e: md5 checksum or Dropbox's "rev"). {@code size} is -1 if unknown.
+     */
+    public static class Record {
+        public String id;
+        public String parentKey;
+        public String name;
+        public String type;
+        public boolean directory;
+        public long size = -1;
+        public String revision;
+        public String modified;
+        public String downloadUrl;
+    }
+
+    private static class OpenHelper extends SQLiteOpenHelper {
+
+        OpenHelper(Context context, String name){
+            super(context, name, null, VERSION);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            createFiles(db);
+            db.execSQL("CREATE TABLE " + TABLE_TOKENS + " (" +
+                    COL_PROVIDER + " TEXT NOT NULL, " +
+                    COL_KEY + " TEXT NOT NULL, " +
+                    COL_VALUE + " TEXT, " +
+                    "PRIMARY KEY (" + COL_PROVIDER + ", " + COL_KEY + "))");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            // the files are only a cache, but the tokens table also holds
+            // upload sessions and checksums: it has to be migrated, never dropped
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_FILES);
+            createFiles(db);
+        }
+
+        private static void createFiles(SQLiteDatabase db){
+            db.execSQL("CREATE TABLE " + TABLE_FILES + " (" +
+                    COL_PROVIDER + " TEXT NOT NULL, " +
+                    COL_ID + " TEXT NOT NULL, " +
+                    COL_PARENT + " TEXT NOT NULL DEFAULT '', " +
+                    COL_NAME + " TEXT, " +
+                    COL_TYPE + " TEXT, " +
+                    COL_DIRECTORY + " INTEGER NOT NULL DEFAULT 0, " +
+                    COL_SIZE + " INTEGER, " +
+                    COL_REVISION + " TEXT, " +
+                    COL_MODIFIED + " TEXT, " +
+                    COL_DOWNLOAD_URL + " TEXT, " +
+                    "PRIMARY KEY (" + COL_PROVIDER + ", " + COL_PARENT + ", " + COL_ID + "))");
+            // the primary key already covers the lookups by parent
+            db.execSQL("CREATE INDEX idx_files_id ON " + TABLE_FILES + " (" + COL_PROVIDER + ", " + COL_ID + ")");
+        }
+    }
+}
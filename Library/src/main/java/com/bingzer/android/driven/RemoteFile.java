@@ -15,6 +15,7 @@
  */
 package com.bingzer.android.driven;
 
+import com.bingzer.android.driven.contracts.Operation;
 import com.bingzer.android.driven.contracts.Task;
 
 import java.util.List;
@@ -72,7 +73,7 @@ public interface RemoteFile {
     /**
      * Async for {@link #fetchDetails()}
      */
-    void fetchDetailsAsync(Task<Boolean> task);
+    Operation<Boolean> fetchDetailsAsync(Task<Boolean> task);
 
     //////////////////////////////////////////////////////////////////////////////////////
 
@@ -85,7 +86,7 @@ public interface RemoteFile {
     /**
      * Async call for {@link #create(String)}
      */
-    void createAsync(String name, Task<RemoteFile> task);
+    Operation<RemoteFile> createAsync(String name, Task<RemoteFile> task);
 
     /**
      * If this file is {@link #isDirectory()} then
@@ -96,7 +97,7 @@ public interface RemoteFile {
     /**
      * Async call for {@link #create(LocalFile)}
      */
-    void createAsync(LocalFile content, Task<RemoteFile> task);
+    Operation<RemoteFile> createAsync(LocalFile content, Task<RemoteFile> task);
 
     /**
      * If this file is {@link #isDirectory()} then this
@@ -107,7 +108,7 @@ public interface RemoteFile {
     /**
      * Async for {@link #get(String)}
      */
-    void getAsync(String name, Task<RemoteFile> task);
+    Operation<RemoteFile> getAsync(String name, Task<RemoteFile> task);
 
     /**
      * If this file is {@link #isDirectory()} then this
@@ -118,7 +119,7 @@ public interface RemoteFile {
     /**
      * Async for {@link #list()}
      */
-    void listAsync(Task<List<RemoteFile>> task);
+    Operation<List<RemoteFile>> listAsync(Task<List<RemoteFile>> task);
 
     /**
      * Download and keep this file to the local.
@@ -129,7 +130,7 @@ public interface RemoteFile {
     /**
      * Async for {@link #download(LocalFile)}
      */
-    void downloadAsync(LocalFile local, Task<Boolean> task);
+    Operation<Boolean> downloadAsync(LocalFile local, Task<Boolean> task);
 
     /**
      * Upload/Save a file to this file. The remote content file
@@ -140,7 +141,7 @@ public interface RemoteFile {
     /**
      * Async for {@link #upload(com.bingzer.android.driven.LocalFile)}
      */
-    void uploadAsync(LocalFile local, Task<Boolean> task);
+    Operation<Boolean> uploadAsync(LocalFile local, Task<Boolean> task);
 
     /**
      * Share this file to other user. "Sharing" is generic and you should
@@ -157,12 +158,12 @@ public interface RemoteFile {
     /**
      * Async for {@link #share(String)}
      */
-    void shareAsync(String user, Task<String> task);
+    Operation<String> shareAsync(String user, Task<String> task);
 
     /**
      * Async for {@link #share(String, int)}
      */
-    void shareAsync(String user, int kind, Task<String> task);
+    Operation<String> shareAsync(String user, int kind, Task<String> task);
 
     /**
      * Delete or removes this file from remote provider.
@@ -172,7 +173,7 @@ public interface RemoteFile {
     /**
      * Async for {@link #delete()}
      */
-    void deleteAsync(Task<Boolean> task);
+    Operation<Boolean> deleteAsync(Task<Boolean> task);
 
     /**
      * Rename the name of this file. True if successful,
@@ -183,6 +184,6 @@ public interface RemoteFile {
     /**
      * Async call for {@link #rename(String)}
      */
-    void renameAsync(String name, Task<Boolean> task);
+    Operation<Boolean> renameAsync(String name, Task<Boolean> task);
 
 }
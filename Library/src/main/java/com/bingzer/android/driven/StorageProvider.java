@@ -17,12 +17,15 @@ package com.bingzer.android.driven;
 
 import android.content.Context;
 
+import com.bingzer.android.driven.contracts.Operation;
 import com.bingzer.android.driven.contracts.Search;
 import com.bingzer.android.driven.contracts.SharedWithMe;
 import com.bingzer.android.driven.contracts.Sharing;
 import com.bingzer.android.driven.contracts.Task;
 import com.bingzer.android.driven.contracts.Trashed;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 
 /**
@@ -77,7 +80,7 @@ public interface StorageProvider {
     /**
      * Async call for {@link #clearSavedCredential(android.content.Context)}
      */
-    void clearSavedCredentialAsync(Context context, Task<Result<DrivenException>> task);
+    Operation<Result<DrivenException>> clearSavedCredentialAsync(Context context, Task<Result<DrivenException>> task);
 
     ///////////////////////////////////////////////////////////////////////////////////////////
 
@@ -96,12 +99,12 @@ public interface StorageProvider {
     /**
      * Async call for {@link #authenticate(android.content.Context)}
      */
-    void authenticateAsync(Context context, Task<Result<DrivenException>> task);
+    Operation<Result<DrivenException>> authenticateAsync(Context context, Task<Result<DrivenException>> task);
 
     /**
      * Async call for {@link #authenticate(Credential)}
      */
-    void authenticateAsync(Credential credential, Task<Result<DrivenException>> task);
+    Operation<Result<DrivenException>> authenticateAsync(Credential credential, Task<Result<DrivenException>> task);
 
     ///////////////////////////////////////////////////////////////////////////////////////////
 
@@ -120,12 +123,12 @@ public interface StorageProvider {
     /**
      * Async API for {@link #exists(String)}
      */
-    void existsAsync(String name, Task<Boolean> task);
+    Operation<Boolean> existsAsync(String name, Task<Boolean> task);
 
     /**
      * Async call for {@link #exists(RemoteFile, String)}
      */
-    void existsAsync(RemoteFile parent, String name, Task<Boolean> task);
+    Operation<Boolean> existsAsync(RemoteFile parent, String name, Task<Boolean> task);
 
     ///////////////////////////////////////////////////////////////////////////////////////////
 
@@ -141,7 +144,7 @@ public interface StorageProvider {
     /**
      * Async call for {@link #getPermission(RemoteFile)}
      */
-    void getPermissionAsync(RemoteFile remoteFile, Task<Permission> task);
+    Operation<Permission> getPermissionAsync(RemoteFile remoteFile, Task<Permission> task);
 
     ///////////////////////////////////////////////////////////////////////////////////////////
 
@@ -159,12 +162,23 @@ public interface StorageProvider {
     /**
      * Async call for {@link #get(RemoteFile, String)}
      */
-    void getAsync(RemoteFile parent, String name, Task<RemoteFile> task);
+    Operation<RemoteFile> getAsync(RemoteFile parent, String name, Task<RemoteFile> task);
 
     /**
      * Async call fro {@link #get(String)}
      */
-    void getAsync(String name, Task<RemoteFile> task);
+    Operation<RemoteFile> getAsync(String name, Task<RemoteFile> task);
+
+    /**
+     * Returns {@link RemoteFile} (if found) by its full path
+     * from the root directory (i.e: "/Folder/SubFolder/File")
+     */
+    RemoteFile getByPath(String path);
+
+    /**
+     * Async call for {@link #getByPath(String)}
+     */
+    Operation<RemoteFile> getByPathAsync(String path, Task<RemoteFile> task);
 
     ///////////////////////////////////////////////////////////////////////////////////////////
 
@@ -176,7 +190,7 @@ public interface StorageProvider {
     /**
      * Async call for {@link #id(String)}
      */
-    void idAsync(String id, Task<RemoteFile> task);
+    Operation<RemoteFile> idAsync(String id, Task<RemoteFile> task);
 
     /**
      * Returns the details for {@link RemoteFile}
@@ -186,7 +200,7 @@ public interface StorageProvider {
     /**
      * Async call for {@link #getDetails(RemoteFile)}
      */
-    void getDetailsAsync(RemoteFile remoteFile, Task<RemoteFile> task);
+    Operation<RemoteFile> getDetailsAsync(RemoteFile remoteFile, Task<RemoteFile> task);
 
     /**
      * Returns a collection of {@link RemoteFile}s found
@@ -203,12 +217,12 @@ public interface StorageProvider {
     /**
      * Async call for {@link #list(RemoteFile)}
      */
-    void listAsync(RemoteFile folder, Task<List<RemoteFile>> task);
+    Operation<List<RemoteFile>> listAsync(RemoteFile folder, Task<List<RemoteFile>> task);
 
     /**
      * Async call for {@link #list()}
      */
-    void listAsync(Task<List<RemoteFile>> task);
+    Operation<List<RemoteFile>> listAsync(Task<List<RemoteFile>> task);
 
     /**
      * Creates a directory with its name in the root directory
@@ -233,22 +247,35 @@ public interface StorageProvider {
     /**
      * Async call for {@link #create(RemoteFile, LocalFile)}
      */
-    void createAsync(RemoteFile parent, LocalFile local, Task<RemoteFile> task);
+    Operation<RemoteFile> createAsync(RemoteFile parent, LocalFile local, Task<RemoteFile> task);
 
     /**
      * Async call for {@link #create(RemoteFile, String)}
      */
-    void createAsync(RemoteFile parent, String name, Task<RemoteFile> task);
+    Operation<RemoteFile> createAsync(RemoteFile parent, String name, Task<RemoteFile> task);
 
     /**
      * Async call for {@link #create(LocalFile)}
      */
-    void createAsync(LocalFile content, Task<RemoteFile> task);
+    Operation<RemoteFile> createAsync(LocalFile content, Task<RemoteFile> task);
 
     /**
      * Async call for {@link #create(String)}
      */
-    void createAsync(String name, Task<RemoteFile> task);
+    Operation<RemoteFile> createAsync(String name, Task<RemoteFile> task);
+
+    /**
+     * Creates a file named {@code name} in the {@code parent} directory
+     * (or the root directory if {@code parent} is null) with the content read from {@code content}.
+     * {@code length} is the number of bytes in {@code content} or -1 if unknown.
+     * The stream is not closed
+     */
+    RemoteFile create(RemoteFile parent, String name, String type, InputStream content, long length);
+
+    /**
+     * Async call for {@link #create(RemoteFile, String, String, java.io.InputStream, long)}
+     */
+    Operation<RemoteFile> createAsync(RemoteFile parent, String name, String type, InputStream content, long length, Task<RemoteFile> task);
 
     /**
      * Update a file. Content of file is specified by {@link LocalFile}
@@ -258,7 +285,7 @@ public interface StorageProvider {
     /**
      * Async call for {@link #update(RemoteFile, LocalFile)}
      */
-    void updateAsync(RemoteFile remoteFile, LocalFile content, Task<RemoteFile> task);
+    Operation<RemoteFile> updateAsync(RemoteFile remoteFile, LocalFile content, Task<RemoteFile> task);
 
     /**
      * Deletes a file specified by its Id.
@@ -272,19 +299,39 @@ public interface StorageProvider {
     /**
      * Async call for {@link #delete(String)}
      */
-    void deleteAsync(String id, Task<Boolean> task);
+    Operation<Boolean> deleteAsync(String id, Task<Boolean> task);
 
     /**
      * Download remote file to {@code local}. Most of the time
      * you would use {@link RemoteFile#download(LocalFile)}
-     * rather than calling this method
+     * rather than calling this method.
+     * <p/>
+     * If {@link LocalFile#getRevision()} is set and the remote content hasn't changed,
+     * nothing is downloaded and {@link LocalFile#isModified()} returns false
      */
     boolean download(RemoteFile remoteFile, LocalFile local);
 
     /**
      * Async all for {@link #download(RemoteFile, LocalFile)}
      */
-    void downloadAsync(RemoteFile remoteFile, LocalFile local, Task<Boolean> task);
+    Operation<Boolean> downloadAsync(RemoteFile remoteFile, LocalFile local, Task<Boolean> task);
+
+    /**
+     * Writes the content of {@code remoteFile} to {@code output}.
+     * The stream is not closed
+     */
+    boolean download(RemoteFile remoteFile, OutputStream output);
+
+    /**
+     * Async call for {@link #download(RemoteFile, java.io.OutputStream)}
+     */
+    Operation<Boolean> downloadAsync(RemoteFile remoteFile, OutputStream output, Task<Boolean> task);
+
+    /**
+     * Opens the content of {@code remoteFile} for reading.
+     * Returns null if it can't be opened. The caller must close the stream
+     */
+    InputStream open(RemoteFile remoteFile);
 
     ///////////////////////////////////////////////////////////////////////////////////////////
 
@@ -0,0 +1,85 @@
+/**
+ * Copyright 2014 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance insert the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bingzer.android.driven;
+
+/**
+ * A snapshot of the progress of an upload or a download
+ */
+public final class TransferProgress {
+
+    private final long bytesTransferred;
+    private final long totalBytes;
+    private final long rate;
+    private final long averageRate;
+    private final boolean done;
+
+    public TransferProgress(long bytesTransferred, long totalBytes, long rate, long averageRate, boolean done){
+        this.bytesTransferred = bytesTransferred;
+        this.totalBytes = totalBytes;
+        this.rate = rate;
+        this.averageRate = averageRate;
+        this.done = done;
+    }
+
+    /**
+     * Returns the number of bytes transferred so far
+     */
+    public long getBytesTransferred() {
+        return bytesTransferred;
+    }
+
+    /**
+     * Returns the size of the transfer or -1 if unknown
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Returns the throughput (bytes per second) since the last report
+     */
+    public long getRate() {
+        return rate;
+    }
+
+    /**
+     * Returns the throughput (bytes per second) since the transfer started
+     */
+    public long getAverageRate() {
+        return averageRate;
+    }
+
+    /**
+     * Returns the estimated time left (in milliseconds) or -1 if unknown
+     */
+    public long getEta() {
+        if(done) return 0;
+        if(totalBytes < 0 || averageRate <= 0) return -1;
+        return (totalBytes - bytesTransferred) * 1000 / averageRate;
+    }
+
+    /**
+     * Returns true if this is the last report of the transfer
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public String toString() {
+        return "TransferProgress{" + bytesTransferred + "/" + totalBytes + ", rate=" + rate + ", averageRate=" + averageRate + "}";
+    }
+}
@@ -0,0 +1,518 @@
+/**
+ * Copyright 2014 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance insert the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bingzer.android.driven;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.bingzer.android.driven.contracts.ExecutorFactory;
+import com.bingzer.android.driven.contracts.Lane;
+import com.bingzer.android.driven.contracts.TransferListener;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQLite-backed queue of uploads and downloads that survives the process being killed.
+ * <p/>
+ * Transfers of a provider start once the provider is {@link #register(StorageProvider) registered},
+ * so registering the providers on start resumes whatever was left from the last run.
+ * An interrupted transfer continues where it left off as far as the provider can
+ * (see {@link com.bingzer.android.driven.utils.PartialFile} and the resumable uploads).
+ * <p/>
+ * Enqueuing the same transfer twice returns the one already queued, and transfers
+ * with the same target (the remote file of an upload, the local file of a download)
+ * run one at a time in the order they were enqueued.
+ * <p/>
+ * A failed transfer is tried again after {@link #getRetryDelay()} (doubled on each attempt)
+ * until it has failed {@link #getMaxAttempts()} times. Transfers run in the
+ * {@link Lane#TRANSFER} executor of their provider.
+ */
+public class TransferQueue {
+
+    public static final String DEFAULT_NAME = "driven-transfers.db";
+    public static final int DEFAULT_PARALLELISM = 2;
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_RETRY_DELAY = 5 * 1000;
+
+    public static final int KIND_UPLOAD     = 1;
+    public static final int KIND_UPDATE     = 2;
+    public static final int KIND_DOWNLOAD   = 3;
+
+    private static final int VERSION = 2;
+
+    private static final int STATE_PENDING  = 0;
+    private static final int STATE_RUNNING  = 1;
+
+    private static final String TABLE_TRANSFERS     = "transfers";
+
+    private static final String COL_ID              = "id";
+    private static final String COL_PROVIDER        = "provider";
+    private static final String COL_KIND            = "kind";
+    private static final String COL_LOCAL_PATH      = "local_path";
+    private static final String COL_LOCAL_TYPE      = "local_type";
+    private static final String COL_LOCAL_NAME      = "local_name";
+    private static final String COL_REMOTE_ID       = "remote_id";
+    private static final String COL_TARGET          = "target";
+    private static final String COL_DEDUPE_KEY      = "dedupe_key";
+    private static final String COL_STATE           = "state";
+    private static final String COL_ATTEMPTS        = "attempts";
+    private static final String COL_TRANSFERRED     = "bytes_transferred";
+    private static final String COL_TOTAL           = "total_bytes";
+    private static final String COL_RETRY_AT        = "retry_at";
+
+    private static final String[] TRANSFER_COLUMNS = {
+            COL_ID, COL_PROVIDER, COL_KIND, COL_LOCAL_PATH, COL_LOCAL_TYPE, COL_LOCAL_NAME,
+            COL_REMOTE_ID, COL_TARGET, COL_STATE, COL_ATTEMPTS, COL_TRANSFERRED, COL_TOTAL, COL_RETRY_AT
+    };
+
+    private final OpenHelper helper;
+    private final Map<String, StorageProvider> providers = new ConcurrentHashMap<String, StorageProvider>();
+    private final Set<Long> running = new HashSet<Long>();
+    // only wakes up the queue when a retry is due, the transfers run in their provider's lane
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ExecutorFactory.NamedThreadFactory("queue"));
+    private final Runnable dispatcher = new Runnable() {
+        @Override
+        public void run() {
+            dispatch();
+        }
+    };
+    private ScheduledFuture<?> wakeUp;
+    private boolean closed;
+    private volatile Listener listener;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private long retryDelay = DEFAULT_RETRY_DELAY;
+
+    public TransferQueue(Context context){
+        this(context, DEFAULT_NAME);
+    }
+
+    public TransferQueue(Context context, String name){
+        helper = new OpenHelper(context.getApplicationContext(), name);
+
+        // whatever was running or waiting for a retry when the process died starts over
+        ContentValues values = new ContentValues();
+        values.put(COL_STATE, STATE_PENDING);
+        values.put(COL_RETRY_AT, 0);
+        helper.getWritableDatabase().update(TABLE_TRANSFERS, values, null, null);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the number of transfers that run at the same time
+     */
+    public synchronized int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of transfers that run at the same time
+     */
+    public void setParallelism(int parallelism) {
+        if(parallelism < 1) throw new IllegalArgumentException("parallelism must be at least 1");
+        synchronized (this){
+            this.parallelism = parallelism;
+        }
+        dispatch();
+    }
+
+    /**
+     * Returns the number of times a transfer is tried before it's dropped
+     */
+    public synchronized int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public synchronized void setMaxAttempts(int maxAttempts) {
+        if(maxAttempts < 1) throw new IllegalArgumentException("maxAttempts must be at least 1");
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Returns how long (in milliseconds) a failed transfer waits before its second attempt.
+     * The delay doubles on each attempt after that
+     */
+    public synchronized long getRetryDelay() {
+        return retryDelay;
+    }
+
+    public synchronized void setRetryDelay(long retryDelay) {
+        if(retryDelay < 0) throw new IllegalArgumentException("retryDelay must not be negative");
+        this.retryDelay = retryDelay;
+    }
+
+    public Listener getListener() {
+        return listener;
+    }
+
+    /**
+     * Sets the listener notified of the progress and the end of each transfer
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Makes the transfers of {@code provider} (by {@link StorageProvider#getName()})
+     * runnable, including the ones queued before the process was restarted
+     */
+    public void register(StorageProvider provider){
+        providers.put(provider.getName(), provider);
+        dispatch();
+    }
+
+    /**
+     * Queues the upload of {@code local} as a new file in {@code parent} (or the root directory).
+     * Returns the id of the transfer
+     */
+    public long enqueueUpload(StorageProvider provider, RemoteFile parent, LocalFile local){
+        String parentId = parent != null ? parent.getId() : null;
+        String target = "remote:" + parentId + "/" + local.getName();
+        return enqueue(provider, KIND_UPLOAD, local, parentId, target);
+    }
+
+    /**
+     * Queues the upload of {@code local} as the new content of {@code remoteFile}.
+     * Returns the id of the transfer
+     */
+    public long enqueueUpdate(StorageProvider provider, RemoteFile remoteFile, LocalFile local){
+        return enqueue(provider, KIND_UPDATE, local, remoteFile.getId(), "remote:" + remoteFile.getId());
+    }
+
+    /**
+     * Queues the download of {@code remoteFile} to {@code local}.
+     * Returns the id of the transfer
+     */
+    public long enqueueDownload(StorageProvider provider, RemoteFile remoteFile, LocalFile local){
+        return enqueue(provider, KIND_DOWNLOAD, local, remoteFile.getId(), "local:" + local.getFile().getAbsolutePath());
+    }
+
+    /**
+     * Removes a transfer that hasn't started. Returns false if it's running or gone
+     */
+    public synchronized boolean cancel(long id){
+        if(running.contains(id)) return false;
+        return helper.getWritableDatabase().delete(TABLE_TRANSFERS, COL_ID + " = ?", new String[]{ String.valueOf(id) }) > 0;
+    }
+
+    /**
+     * Retries the failed transfers right away instead of waiting for their next attempt
+     */
+    public void resume(){
+        ContentValues values = new ContentValues();
+        values.put(COL_RETRY_AT, 0);
+        helper.getWritableDatabase().update(TABLE_TRANSFERS, values, COL_RETRY_AT + " > 0", null);
+        dispatch();
+    }
+
+    /**
+     * Returns every queued transfer (running, waiting or failed) in order
+     */
+    public List<Transfer> getTransfers(){
+        List<Transfer> transfers = new ArrayList<Transfer>();
+        Cursor cursor = helper.getReadableDatabase().query(TABLE_TRANSFERS, TRANSFER_COLUMNS, null, null, null, null, COL_ID);
+        try {
+            while(cursor.moveToNext()){
+                transfers.add(read(cursor));
+            }
+            return transfers;
+        }
+        finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Stops starting new transfers. The running ones are left to finish
+     */
+    public void close(){
+        synchronized (this){
+            closed = true;
+        }
+        scheduler.shutdownNow();
+        helper.close();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private long enqueue(StorageProvider provider, int kind, LocalFile local, String remoteId, String target){
+        String path = local.getFile().getAbsolutePath();
+        // targets are only unique within a provider
+        target = provider.getName() + ":" + target;
+        String dedupeKey = kind + " " + target + " " + (kind == KIND_DOWNLOAD ? remoteId : path);
+
+        synchronized (this){
+            SQLiteDatabase db = helper.getWritableDatabase();
+            Cursor cursor = db.query(TABLE_TRANSFERS, new String[]{ COL_ID },
+                    COL_DEDUPE_KEY + " = ?", new String[]{ dedupeKey }, null, null, null);
+            try {
+                if(cursor.moveToNext()) return cursor.getLong(0);
+            }
+            finally {
+                cursor.close();
+            }
+
+            ContentValues values = new ContentValues();
+            values.put(COL_PROVIDER, provider.getName());
+            values.put(COL_KIND, kind);
+            values.put(COL_LOCAL_PATH, path);
+            values.put(COL_LOCAL_TYPE, local.getType());
+            values.put(COL_LOCAL_NAME, local.getName());
+            values.put(COL_REMOTE_ID, remoteId);
+            values.put(COL_TARGET, target);
+            values.put(COL_DEDUPE_KEY, dedupeKey);
+            values.put(COL_STATE, STATE_PENDING);
+            long id = db.insert(TABLE_TRANSFERS, null, values);
+            dispatch();
+            return id;
+        }
+    }
+
+    /**
+     * Starts the oldest transfers whose provider is registered and
+     * whose target isn't busy, up to {@link #getParallelism()}
+     */
+    private synchronized void dispatch(){
+        if(closed || running.size() >= parallelism) return;
+
+        long now = System.currentTimeMillis();
+        long nextRetry = Long.MAX_VALUE;
+        // the first transfer of each target blocks the ones after it
+        Set<String> busyTargets = new HashSet<String>();
+        for(Transfer transfer : getTransfers()){
+            if(running.size() >= parallelism) break;
+            if(!busyTargets.add(transfer.target)) continue;
+            if(transfer.state != STATE_PENDING || !providers.containsKey(transfer.provider)) continue;
+            if(transfer.retryAt > now){
+                nextRetry = Math.min(nextRetry, transfer.retryAt);
+                continue;
+            }
+            if(!start(transfer)){
+                // the lane is full, try again later
+                nextRetry = Math.min(nextRetry, now + retryDelay);
+                break;
+            }
+        }
+
+        if(wakeUp != null) wakeUp.cancel(false);
+        wakeUp = nextRetry < Long.MAX_VALUE ? scheduler.schedule(dispatcher, nextRetry - now, TimeUnit.MILLISECONDS) : null;
+    }
+
+    /**
+     * Runs {@code transfer} in the {@link Lane#TRANSFER} executor of its provider.
+     * Returns false if the executor rejects it
+     */
+    private boolean start(final Transfer transfer){
+        setState(transfer.id, STATE_RUNNING);
+        running.add(transfer.id);
+        try {
+            AbsStorageProvider.getExecutor(providers.get(transfer.provider), Lane.TRANSFER).execute(new Runnable() {
+                @Override
+                public void run() {
+                    boolean success = false;
+                    try {
+                        success = execute(transfer);
+                    }
+                    catch (RuntimeException e){
+                        // counted as a failed attempt
+                    }
+                    finish(transfer, success);
+                }
+            });
+            return true;
+        }
+        catch (RejectedExecutionException e){
+            running.remove(transfer.id);
+            setState(transfer.id, STATE_PENDING);
+            return false;
+        }
+    }
+
+    private boolean execute(final Transfer transfer){
+        StorageProvider provider = providers.get(transfer.provider);
+        LocalFile local = new LocalFile(new File(transfer.localPath), transfer.localType, transfer.localName);
+        local.setTransferListener(new TransferListener() {
+            @Override
+            public void onProgress(TransferProgress progress) {
+                transfer.bytesTransferred = progress.getBytesTransferred();
+                transfer.totalBytes = progress.getTotalBytes();
+                ContentValues values = new ContentValues();
+                values.put(COL_TRANSFERRED, transfer.bytesTransferred);
+                values.put(COL_TOTAL, transfer.totalBytes);
+                helper.getWritableDatabase().update(TABLE_TRANSFERS, values, COL_ID + " = ?", new String[]{ String.valueOf(transfer.id) });
+
+                Listener listener = TransferQueue.this.listener;
+                if(listener != null) listener.onProgress(transfer, progress);
+            }
+        });
+
+        switch (transfer.kind){
+            case KIND_UPLOAD:
+                if(transfer.remoteId == null) return provider.create(local) != null;
+
+                RemoteFile parent = provider.id(transfer.remoteId);
+                return parent != null && provider.create(parent, local) != null;
+            case KIND_UPDATE:
+                RemoteFile remoteFile = provider.id(transfer.remoteId);
+                return remoteFile != null && provider.update(remoteFile, local) != null;
+            case KIND_DOWNLOAD:
+                RemoteFile source = provider.id(transfer.remoteId);
+                return source != null && provider.download(source, local);
+            default:
+                return false;
+        }
+    }
+
+    private void finish(Transfer transfer, boolean success){
+        boolean done;
+        synchronized (this){
+            running.remove(transfer.id);
+            transfer.attempts++;
+            done = success || transfer.attempts >= maxAttempts;
+            if(done) {
+                helper.getWritableDatabase().delete(TABLE_TRANSFERS, COL_ID + " = ?", new String[]{ String.valueOf(transfer.id) });
+            }
+            else {
+                // 1x, 2x, 4x... the retry delay
+                transfer.retryAt = System.currentTimeMillis() + (retryDelay << Math.min(transfer.attempts - 1, 16));
+                ContentValues values = new ContentValues();
+                values.put(COL_STATE, STATE_PENDING);
+                values.put(COL_ATTEMPTS, transfer.attempts);
+                values.put(COL_RETRY_AT, transfer.retryAt);
+                helper.getWritableDatabase().update(TABLE_TRANSFERS, values, COL_ID + " = ?", new String[]{ String.valueOf(transfer.id) });
+            }
+        }
+
+        Listener listener = this.listener;
+        if(listener != null && done) listener.onCompleted(transfer, success);
+        dispatch();
+    }
+
+    private void setState(long id, int state){
+        ContentValues values = new ContentValues();
+        values.put(COL_STATE, state);
+        helper.getWritableDatabase().update(TABLE_TRANSFERS, values, COL_ID + " = ?", new String[]{ String.valueOf(id) });
+    }
+
+    private static Transfer read(Cursor cursor){
+        Transfer transfer = new Transfer();
+        transfer.id = cursor.getLong(0);
+        transfer.provider = cursor.getString(1);
+        transfer.kind = cursor.getInt(2);
+        transfer.localPath = cursor.getString(3);
+        transfer.localType = cursor.getString(4);
+        transfer.localName = cursor.getString(5);
+        transfer.remoteId = cursor.getString(6);
+        transfer.target = cursor.getString(7);
+        transfer.state = cursor.getInt(8);
+        transfer.attempts = cursor.getInt(9);
+        transfer.bytesTransferred = cursor.getLong(10);
+        transfer.totalBytes = cursor.getLong(11);
+        transfer.retryAt = cursor.getLong(12);
+        return transfer;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * A queued transfer. {@code remoteId} is the parent (null for the root directory)
+     * of an upload and the remote file of an update or a download.
+     * {@code totalBytes} is -1 until the transfer has started
+     */
+    public static class Transfer {
+        public long id;
+        public String provider;
+        public int kind;
+        public String localPath;
+        public String localType;
+        public String localName;
+        public String remoteId;
+        public int attempts;
+        public long bytesTransferred;
+        public long totalBytes = -1;
+        /**
+         * When the next attempt is due ({@link System#currentTimeMillis()}),
+         * 0 unless the last attempt has failed
+         */
+        public long retryAt;
+        String target;
+        int state;
+    }
+
+    /**
+     * Notified of the transfers of a {@link TransferQueue}.
+     * Called from the worker threads
+     */
+    public interface Listener {
+
+        void onProgress(Transfer transfer, TransferProgress progress);
+
+        /**
+         * Called when {@code transfer} is done and removed from the queue.
+         * {@code success} is false if it failed {@link TransferQueue#getMaxAttempts()} times
+         */
+        void onCompleted(Transfer transfer, boolean success);
+    }
+
+    private static class OpenHelper extends SQLiteOpenHelper {
+
+        OpenHelper(Context context, String name){
+            super(context, name, null, VERSION);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE " + TABLE_TRANSFERS + " (" +
+                    COL_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    COL_PROVIDER + " TEXT NOT NULL, " +
+                    COL_KIND + " INTEGER NOT NULL, " +
+                    COL_LOCAL_PATH + " TEXT NOT NULL, " +
+                    COL_LOCAL_TYPE + " TEXT, " +
+                    COL_LOCAL_NAME + " TEXT, " +
+                    COL_REMOTE_ID + " TEXT, " +
+                    COL_TARGET + " TEXT NOT NULL, " +
+                    COL_DEDUPE_KEY + " TEXT NOT NULL UNIQUE, " +
+                    COL_STATE + " INTEGER NOT NULL DEFAULT 0, " +
+                    COL_ATTEMPTS + " INTEGER NOT NULL DEFAULT 0, " +
+                    COL_TRANSFERRED + " INTEGER NOT NULL DEFAULT 0, " +
+                    COL_TOTAL + " INTEGER NOT NULL DEFAULT -1, " +
+                    COL_RETRY_AT + " INTEGER NOT NULL DEFAULT 0)");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            if(oldVersion < 2)
+                db.execSQL("ALTER TABLE " + TABLE_TRANSFERS + " ADD COLUMN " + COL_RETRY_AT + " INTEGER NOT NULL DEFAULT 0");
+        }
+    }
+}
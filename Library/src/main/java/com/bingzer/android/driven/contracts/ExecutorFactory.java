@@ -0,0 +1,173 @@
+/**
+ * Copyright 2014 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance insert the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bingzer.android.driven.contracts;
+
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the {@link ExecutorService}s that run all the "Async" calls.
+ * One executor is created for each {@link Lane}.
+ * Each {@link com.bingzer.android.driven.AbsStorageProvider} can have its own
+ * factory so the throughput can be tuned for each backend.
+ *
+ * @see com.bingzer.android.driven.AbsStorageProvider#setExecutorFactory(ExecutorFactory)
+ * @see com.bingzer.android.driven.utils.AsyncUtils#setDefaultExecutorFactory(ExecutorFactory)
+ */
+public interface ExecutorFactory {
+
+    /**
+     * Creates a new executor for {@code lane}.
+     * {@code name} is used to name the worker threads
+     */
+    ExecutorService createExecutor(String name, Lane lane);
+
+    ///////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Default factory. Creates a {@link ThreadPoolExecutor} with a bounded queue for each lane.
+     * When the queue is full and all {@code maxPoolSize} threads are busy,
+     * the task is handed to the {@link RejectedExecutionHandler}
+     * (by default it's rejected and reported back to the {@link Task}).
+     * <p/>
+     * By default {@link Lane#INTERACTIVE} is sized by the number of available processors,
+     * {@link Lane#TRANSFER} runs 2 transfers at a time and {@link Lane#BACKGROUND} runs one.
+     */
+    static class Default implements ExecutorFactory {
+
+        public static final int DEFAULT_QUEUE_CAPACITY = 128;
+        public static final long DEFAULT_KEEP_ALIVE_SECONDS = 30;
+
+        private final int[] corePoolSizes = new int[Lane.values().length];
+        private final int[] maxPoolSizes = new int[Lane.values().length];
+        private final int queueCapacity;
+        private final long keepAliveSeconds;
+        private final RejectedExecutionHandler rejectedExecutionHandler;
+
+        public Default(){
+            this(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors() * 2);
+            setPoolSize(Lane.TRANSFER, 2, 2);
+            setPoolSize(Lane.BACKGROUND, 1, 1);
+        }
+
+        /**
+         * Uses the same pool size for all lanes
+         */
+        public Default(int corePoolSize, int maxPoolSize){
+            this(corePoolSize, maxPoolSize, DEFAULT_QUEUE_CAPACITY);
+        }
+
+        /**
+         * Uses the same pool size for all lanes
+         */
+        public Default(int corePoolSize, int maxPoolSize, int queueCapacity){
+            this(corePoolSize, maxPoolSize, queueCapacity, DEFAULT_KEEP_ALIVE_SECONDS, new ThreadPoolExecutor.AbortPolicy());
+        }
+
+        /**
+         * Uses the same pool size for all lanes
+         */
+        public Default(int corePoolSize, int maxPoolSize, int queueCapacity, long keepAliveSeconds, RejectedExecutionHandler rejectedExecutionHandler){
+            if(queueCapacity < 1) throw new IllegalArgumentException("queueCapacity must be at least 1");
+            if(rejectedExecutionHandler == null) throw new NullPointerException("rejectedExecutionHandler");
+
+            for(Lane lane : Lane.values()){
+                setPoolSize(lane, corePoolSize, maxPoolSize);
+            }
+            this.queueCapacity = queueCapacity;
+            this.keepAliveSeconds = keepAliveSeconds;
+            this.rejectedExecutionHandler = rejectedExecutionHandler;
+        }
+
+        /**
+         * Sets the pool size (concurrency limit) of a specific {@code lane}
+         */
+        public Default setPoolSize(Lane lane, int corePoolSize, int maxPoolSize){
+            if(corePoolSize < 1) throw new IllegalArgumentException("corePoolSize must be at least 1");
+            if(maxPoolSize < corePoolSize) throw new IllegalArgumentException("maxPoolSize must be >= corePoolSize");
+
+            corePoolSizes[lane.ordinal()] = corePoolSize;
+            maxPoolSizes[lane.ordinal()] = maxPoolSize;
+            return this;
+        }
+
+        @Override
+        public ExecutorService createExecutor(String name, Lane lane) {
+            int priority = lane == Lane.BACKGROUND ? Thread.MIN_PRIORITY : Thread.NORM_PRIORITY;
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(getCorePoolSize(lane), getMaxPoolSize(lane),
+                    keepAliveSeconds, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<Runnable>(queueCapacity),
+                    new NamedThreadFactory(name + "-" + lane.name().toLowerCase(Locale.US), priority),
+                    rejectedExecutionHandler);
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+
+        public int getCorePoolSize(Lane lane) {
+            return corePoolSizes[lane.ordinal()];
+        }
+
+        public int getMaxPoolSize(Lane lane) {
+            return maxPoolSizes[lane.ordinal()];
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public long getKeepAliveSeconds() {
+            return keepAliveSeconds;
+        }
+
+        public RejectedExecutionHandler getRejectedExecutionHandler() {
+            return rejectedExecutionHandler;
+        }
+    }
+
+    /**
+     * Names every thread "Driven-{name}-{n}" so they're easy to spot
+     * in a thread dump
+     */
+    static class NamedThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger(1);
+        private final String prefix;
+        private final int priority;
+
+        public NamedThreadFactory(String name){
+            this(name, Thread.NORM_PRIORITY);
+        }
+
+        public NamedThreadFactory(String name, int priority){
+            this.prefix = "Driven-" + name + "-";
+            this.priority = priority;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + count.getAndIncrement());
+            if(thread.isDaemon()) thread.setDaemon(false);
+            thread.setPriority(priority);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright 2014 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance insert the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bingzer.android.driven.contracts;
+
+/**
+ * Execution lanes for "Async" calls. Each lane has its own executor
+ * (and its own concurrency limit) so a large transfer
+ * never holds up a quick metadata call.
+ *
+ * @see ExecutorFactory
+ */
+public enum Lane {
+
+    /**
+     * Metadata calls (i.e: get, exists, list) that the UI is usually waiting for
+     */
+    INTERACTIVE,
+
+    /**
+     * Uploads and downloads
+     */
+    TRANSFER,
+
+    /**
+     * Background synchronization. Runs with the lowest priority
+     */
+    BACKGROUND
+
+}
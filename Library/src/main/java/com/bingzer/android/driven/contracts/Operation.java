@@ -0,0 +1,36 @@
+/**
+ * Copyright 2014 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance insert the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bingzer.android.driven.contracts;
+
+import java.util.concurrent.Future;
+
+/**
+ * A handle to a running "Async" call. Every "Async" method returns one
+ * so that abandoned work (i.e: a download when the user leaves the screen)
+ * can be stopped.
+ * <p/>
+ * Once cancelled, the {@link Task} will not be notified.
+ */
+public interface Operation<T> extends Future<T> {
+
+    /**
+     * Cancels this operation. If it's already running, the worker thread
+     * is interrupted which also stops any transfer in progress.
+     * Returns false if the operation has already completed.
+     */
+    boolean cancel();
+
+}
@@ -33,7 +33,7 @@ public interface Search extends Feature {
     /**
      * Async call for {@link #first(String)}
      */
-    void firstAsync(String query, Task<RemoteFile> task);
+    Operation<RemoteFile> firstAsync(String query, Task<RemoteFile> task);
 
     /**
      * Search for a {@code query} and returns all {@link RemoteFile}
@@ -45,6 +45,6 @@ public interface Search extends Feature {
     /**
      * Async call for {@link #query(String)}
      */
-    void queryAsync(String query, Task<List<RemoteFile>> task);
+    Operation<List<RemoteFile>> queryAsync(String query, Task<List<RemoteFile>> task);
 
 }
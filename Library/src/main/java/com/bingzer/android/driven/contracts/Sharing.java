@@ -48,12 +48,12 @@ public interface Sharing extends Feature {
     /**
      * Async call for {@link #share(com.bingzer.android.driven.RemoteFile, String)}
      */
-    void shareAsync(RemoteFile remoteFile, String user, Task<String> task);
+    Operation<String> shareAsync(RemoteFile remoteFile, String user, Task<String> task);
 
     /**
      * Async call for {@link #share(com.bingzer.android.driven.RemoteFile, String, int)}
      */
-    void shareAsync(RemoteFile remoteFile, String user, int kind, Task<String> task);
+    Operation<String> shareAsync(RemoteFile remoteFile, String user, int kind, Task<String> task);
 
     /**
      * Remove specific user from their share access
@@ -63,5 +63,5 @@ public interface Sharing extends Feature {
     /**
      * Async call for {@link #removeSharing(com.bingzer.android.driven.RemoteFile, String)} }}
      */
-    void removeSharingAsync(RemoteFile remoteFile, String user, Task<Boolean> task);
+    Operation<Boolean> removeSharingAsync(RemoteFile remoteFile, String user, Task<Boolean> task);
 }
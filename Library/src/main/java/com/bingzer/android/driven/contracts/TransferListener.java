@@ -0,0 +1,35 @@
+/**
+ * Copyright 2014 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance insert the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bingzer.android.driven.contracts;
+
+import com.bingzer.android.driven.TransferProgress;
+
+/**
+ * Notified of the progress of an upload or a download.
+ * Set it with {@link com.bingzer.android.driven.LocalFile#setTransferListener(TransferListener)}.
+ * <p/>
+ * Called in the thread doing the transfer, at most once every
+ * {@link com.bingzer.android.driven.utils.ProgressTracker#DEFAULT_INTERVAL} ms
+ * (plus once when the transfer completes)
+ */
+public interface TransferListener {
+
+    /**
+     * Called when more bytes have been transferred
+     */
+    void onProgress(TransferProgress progress);
+
+}
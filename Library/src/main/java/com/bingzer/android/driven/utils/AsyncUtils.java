@@ -15,90 +15,189 @@
  */
 package com.bingzer.android.driven.utils;
 
-import android.os.AsyncTask;
+import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 
+import com.bingzer.android.driven.DrivenException;
 import com.bingzer.android.driven.contracts.Delegate;
+import com.bingzer.android.driven.contracts.ExecutorFactory;
+import com.bingzer.android.driven.contracts.Lane;
+import com.bingzer.android.driven.contracts.Operation;
 import com.bingzer.android.driven.contracts.Task;
 
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Created by Ricky on 5/6/2014.
  */
 public final class AsyncUtils {
 
-    private static ThreadPoolExecutor threadPoolExecutor;
+    private static ExecutorFactory defaultExecutorFactory = new ExecutorFactory.Default();
+    private static Map<Lane, ExecutorService> defaultExecutors = new EnumMap<Lane, ExecutorService>(Lane.class);
+    private static Handler mainHandler;
+    // the executor whose task the current thread is running (if any)
+    private static final ThreadLocal<Executor> currentExecutor = new ThreadLocal<Executor>();
 
     //////////////////////////////////////////////////////////////////////////////////////////////
 
-    public static <T> void doAsync(final Task<T> task, final Delegate<T> action){
+    /**
+     * Sets the factory used to create the shared executors. These executors are used
+     * when no executor is specified (i.e: a provider without its own {@link ExecutorFactory}).
+     * The previous executors (if any) are shut down gracefully.
+     */
+    public static synchronized void setDefaultExecutorFactory(ExecutorFactory factory){
+        if(factory == null) throw new NullPointerException("factory");
+
+        defaultExecutorFactory = factory;
+        for(ExecutorService executor : defaultExecutors.values()){
+            executor.shutdown();
+        }
+        defaultExecutors.clear();
+    }
+
+    /**
+     * Returns the shared executor for {@link Lane#INTERACTIVE}
+     */
+    public static Executor getDefaultExecutor(){
+        return getDefaultExecutor(Lane.INTERACTIVE);
+    }
+
+    /**
+     * Returns the shared executor for the specified {@code lane}
+     */
+    public static synchronized Executor getDefaultExecutor(Lane lane){
+        ExecutorService executor = defaultExecutors.get(lane);
+        if(executor == null) {
+            executor = defaultExecutorFactory.createExecutor("Async", lane);
+            defaultExecutors.put(lane, executor);
+        }
+        return executor;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////
+
+    public static <T> Operation<T> doAsync(final Task<T> task, final Delegate<T> action){
+        return doAsync(Lane.INTERACTIVE, task, action);
+    }
+
+    /**
+     * Runs {@code action} in the shared executor of the specified {@code lane}
+     */
+    public static <T> Operation<T> doAsync(final Lane lane, final Task<T> task, final Delegate<T> action){
+        return doAsync(getDefaultExecutor(lane), task, action);
+    }
+
+    /**
+     * Runs {@code action} in the specified {@code executor}.
+     * If {@code executor} is null, the default {@link Lane#INTERACTIVE} executor is used.
+     * When called from the main thread, the result is posted back
+     * to the main thread.
+     * <p/>
+     * Returns the {@link Operation} that can be used to cancel the call.
+     */
+    public static <T> Operation<T> doAsync(final Executor executor, final Task<T> task, final Delegate<T> action){
+        Handler handler = null;
         if(Looper.myLooper() == Looper.getMainLooper())
-            doAsyncTask(task, action);
-        else
-            doAsyncThread(task, action);
+            handler = getMainHandler();
+
+        return doAsyncThread(executor != null ? executor : getDefaultExecutor(), handler, task, action);
     }
 
     //////////////////////////////////////////////////////////////////////////////////////////////
 
-    private static <T> void doAsyncThread(final Task<T> task, final Delegate<T> action){
-        if(threadPoolExecutor == null){
-            final int numCore = Runtime.getRuntime().availableProcessors();
-            final LinkedBlockingQueue<Runnable> workerQueue = new LinkedBlockingQueue<Runnable>();
-            threadPoolExecutor = new ThreadPoolExecutor(numCore, numCore, 1, TimeUnit.SECONDS, workerQueue);
+    /**
+     * True if the current thread is a worker of {@code executor},
+     * running a task submitted through this class or {@link Pipeline}
+     */
+    static boolean isWorkerOf(Executor executor){
+        return executor != null && currentExecutor.get() == executor;
+    }
+
+    /**
+     * Runs {@code runnable} in the current thread, marked as a worker of {@code executor}
+     */
+    static void runAsWorkerOf(Executor executor, Runnable runnable){
+        Executor previous = currentExecutor.get();
+        currentExecutor.set(executor);
+        try {
+            runnable.run();
+        }
+        finally {
+            currentExecutor.set(previous);
         }
+    }
+
+    /**
+     * Runs {@code action} in the {@code executor}. If {@code handler} is not null
+     * the result (or the error) is delivered through it.
+     * Otherwise it is delivered in the worker thread.
+     */
+    private static <T> Operation<T> doAsyncThread(final Executor executor, final Handler handler, final Task<T> task, final Delegate<T> action){
+        AsyncOperation<T> operation = new AsyncOperation<T>(executor, handler, task, action);
+        try {
+            executor.execute(operation);
+        }
+        catch (RejectedExecutionException e){
+            // queue is full (or executor is shut down)
+            operation.reject(new DrivenException(e));
+        }
+        return operation;
+    }
 
-        threadPoolExecutor.execute(new Runnable() {
+    private static <T> void deliverResult(Handler handler, final Task<T> task, final T result){
+        if(task == null) return;
+        if(handler == null){
+            task.onCompleted(result);
+            return;
+        }
+
+        handler.post(new Runnable() {
             @Override
             public void run() {
-                try {
-                    T result = action.invoke();
-                    task.onCompleted(result);
-                }
-                catch (Throwable error){
-                    if(task instanceof Task.WithErrorReporting){
-                        ((Task.WithErrorReporting) task).onError(error);
-                    }
-                    else{
-                        throwError(error);
-                    }
-                }
+                task.onCompleted(result);
             }
         });
     }
 
-    @SuppressWarnings("unchecked")
-    private static <T> void doAsyncTask(final Task<T> task, final Delegate<T> action){
-        new AsyncTask<Void, Void, T>(){
-
-            @Override protected T doInBackground(Void... params) {
-                try {
-                    return action.invoke();
-                }
-                catch (Throwable e){
-                    reportError(e);
-                }
-
-                return null;
-            }
+    private static void deliverError(Handler handler, final Task<?> task, final Throwable error){
+        if(task == null) {
+            Log.e("AsyncUtils", "Error occurred:", error);
+            return;
+        }
+        if(handler == null){
+            reportError(task, error);
+            return;
+        }
 
+        handler.post(new Runnable() {
             @Override
-            protected void onPostExecute(T result) {
-                task.onCompleted(result);
+            public void run() {
+                reportError(task, error);
             }
+        });
+    }
 
-            void reportError(Throwable error){
-                if(task instanceof Task.WithErrorReporting) {
-                    ((Task.WithErrorReporting) task).onError(error);
-                }
-                else{
-                    throwError(error);
-                }
-            }
-        }.execute();
+    private static synchronized Handler getMainHandler(){
+        if(mainHandler == null)
+            mainHandler = new Handler(Looper.getMainLooper());
+        return mainHandler;
+    }
+
+    private static void reportError(Task<?> task, Throwable error){
+        if(task instanceof Task.WithErrorReporting) {
+            ((Task.WithErrorReporting) task).onError(error);
+        }
+        else{
+            throwError(error);
+        }
     }
 
     private static void throwError(Throwable any){
@@ -108,6 +207,78 @@ public final class AsyncUtils {
 
     //////////////////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * The {@link Operation} returned by all the "Async" calls.
+     * The {@link Task} is notified when the action completes,
+     * unless the operation has been cancelled
+     */
+    private static class AsyncOperation<T> extends FutureTask<T> implements Operation<T> {
+
+        private final Executor executor;
+        private final Handler handler;
+        private final Task<T> task;
+
+        AsyncOperation(Executor executor, Handler handler, Task<T> task, final Delegate<T> action){
+            super(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    return action.invoke();
+                }
+            });
+            this.executor = executor;
+            this.handler = handler;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            runAsWorkerOf(executor, new Runnable() {
+                @Override
+                public void run() {
+                    AsyncOperation.super.run();
+                }
+            });
+        }
+
+        @Override
+        public boolean cancel() {
+            return cancel(true);
+        }
+
+        void reject(Throwable error){
+            setException(error);
+        }
+
+        @Override
+        protected void done() {
+            if(isCancelled()) return;
+
+            T result;
+            try {
+                result = get();
+            }
+            catch (ExecutionException e){
+                deliverError(handler, task, e.getCause());
+                return;
+            }
+            catch (InterruptedException e){
+                // should never happen, we're done
+                deliverError(handler, task, e);
+                return;
+            }
+
+            try {
+                deliverResult(handler, task, result);
+            }
+            catch (Throwable error){
+                // onCompleted() failed in the worker thread
+                deliverError(handler, task, error);
+            }
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////
+
     private AsyncUtils(){
         // nothing
     }
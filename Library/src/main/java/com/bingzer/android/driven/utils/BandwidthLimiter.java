@@ -0,0 +1,138 @@
+/**
+ * Copyright 2014 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance insert the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bingzer.android.driven.utils;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Caps the transfer rate with a token bucket.
+ * Tokens (bytes) are added at {@link #getRate()} per second up to one second's worth,
+ * and a transfer waits until there are tokens for it.
+ * <p/>
+ * Every provider has its own limiter (see {@link com.bingzer.android.driven.AbsStorageProvider#getBandwidthLimiter()})
+ * whose parent is {@link #getGlobal()}, so a transfer is held to whichever limit is lower.
+ * The rate can be changed at any time. Both are unlimited by default.
+ */
+public class BandwidthLimiter {
+
+    public static final long UNLIMITED = 0;
+
+    private static final BandwidthLimiter global = new BandwidthLimiter(UNLIMITED, null);
+
+    private final BandwidthLimiter parent;
+    private volatile long rate;
+    private double tokens;
+    private long lastRefill = -1;
+
+    /**
+     * Returns the limiter shared by all providers
+     */
+    public static BandwidthLimiter getGlobal(){
+        return global;
+    }
+
+    /**
+     * Creates a limiter of {@code rate} bytes per second under {@link #getGlobal()}
+     */
+    public BandwidthLimiter(long rate){
+        this(rate, global);
+    }
+
+    /**
+     * Creates a limiter of {@code rate} bytes per second under {@code parent} (if not null)
+     */
+    public BandwidthLimiter(long rate, BandwidthLimiter parent){
+        this.parent = parent;
+        setRate(rate);
+    }
+
+    /**
+     * Returns the rate in bytes per second or {@link #UNLIMITED}
+     */
+    public long getRate(){
+        return rate;
+    }
+
+    /**
+     * Sets the rate in bytes per second ({@link #UNLIMITED} or less to remove the limit).
+     * Transfers that are waiting pick up the new rate right away
+     */
+    public synchronized void setRate(long rate){
+        this.rate = Math.max(UNLIMITED, rate);
+        tokens = Math.min(tokens, this.rate);
+        lastRefill = -1;
+        notifyAll();
+    }
+
+    /**
+     * True if this limiter or its parent has a limit
+     */
+    public boolean isLimited(){
+        return rate > UNLIMITED || (parent != null && parent.isLimited());
+    }
+
+    /**
+     * Waits until {@code bytes} can be transferred.
+     * A request bigger than the bucket goes through as soon as the bucket isn't empty
+     * and is paid back by the ones after it, so the average rate is still respected
+     * @throws InterruptedIOException if the current thread is interrupted while waiting
+     */
+    public void acquire(long bytes) throws InterruptedIOException {
+        if(bytes <= 0) return;
+        if(rate > UNLIMITED) take(bytes);
+        if(parent != null) parent.acquire(bytes);
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the current time in nanoseconds
+     */
+    protected long now(){
+        return System.nanoTime();
+    }
+
+    private synchronized void take(long bytes) throws InterruptedIOException {
+        try {
+            while(rate > UNLIMITED){
+                refill();
+                if(tokens > 0){
+                    tokens -= bytes;
+                    return;
+                }
+                // wait until the debt is paid back
+                long millis = (long) Math.ceil(-tokens * 1000 / rate);
+                wait(Math.max(1, millis));
+            }
+        }
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Transfer has been cancelled");
+        }
+    }
+
+    private void refill(){
+        long now = now();
+        if(lastRefill < 0){
+            // start with a full bucket
+            tokens = Math.max(tokens, rate);
+        }
+        else {
+            tokens = Math.min(rate, tokens + (now - lastRefill) * rate / 1e9);
+        }
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2014 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance insert the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bingzer.android.driven.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Keeps transfer buffers around so every copy doesn't allocate (and the GC
+ * doesn't have to collect) a large array.
+ * <p/>
+ * Buffers come in power-of-two sizes from {@link #MIN_BUFFER_SIZE} to {@link #MAX_BUFFER_SIZE}.
+ * Only a few buffers of each size are kept, anything else is left to the GC.
+ */
+public final class BufferPool {
+
+    public static final int MIN_BUFFER_SIZE = 64 * 1024;
+    public static final int MAX_BUFFER_SIZE = 1024 * 1024;
+    public static final int DEFAULT_BUFFERS_PER_SIZE = 4;
+
+    private static final BufferPool defaultPool = new BufferPool(DEFAULT_BUFFERS_PER_SIZE);
+
+    private final List<BlockingQueue<byte[]>> tiers = new ArrayList<BlockingQueue<byte[]>>();
+
+    /**
+     * Returns the pool shared by all providers
+     */
+    public static BufferPool getDefault(){
+        return defaultPool;
+    }
+
+    /**
+     * Creates a pool that keeps up to {@code buffersPerSize} buffers of each size
+     */
+    public BufferPool(int buffersPerSize){
+        if(buffersPerSize < 1) throw new IllegalArgumentException("buffersPerSize must be at least 1");
+
+        for(int size = MIN_BUFFER_SIZE; size <= MAX_BUFFER_SIZE; size <<= 1){
+            tiers.add(new ArrayBlockingQueue<byte[]>(buffersPerSize));
+        }
+    }
+
+    /**
+     * Returns a buffer of at least {@code size} bytes.
+     * Buffers bigger than {@link #MAX_BUFFER_SIZE} aren't pooled
+     */
+    public byte[] acquire(int size){
+        if(size > MAX_BUFFER_SIZE) return new byte[size];
+
+        int tierSize = getTierSize(size);
+        byte[] buffer = tiers.get(getTier(tierSize)).poll();
+        return buffer != null ? buffer : new byte[tierSize];
+    }
+
+    /**
+     * Gives {@code buffer} back to the pool. It must not be used afterward
+     */
+    public void release(byte[] buffer){
+        if(buffer == null || buffer.length > MAX_BUFFER_SIZE || getTierSize(buffer.length) != buffer.length) return;
+
+        // the tier is full, let the GC have it
+        tiers.get(getTier(buffer.length)).offer(buffer);
+    }
+
+    /**
+     * Returns the number of buffers waiting to be reused
+     */
+    public int size(){
+        int size = 0;
+        for(BlockingQueue<byte[]> tier : tiers){
+            size += tier.size();
+        }
+        return size;
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Rounds {@code size} up to the size of the buffer that's handed out for it
+     */
+    static int getTierSize(int size){
+        int tierSize = MIN_BUFFER_SIZE;
+        while(tierSize < size) tierSize <<= 1;
+        return tierSize;
+    }
+
+    private static int getTier(int tierSize){
+        return Integer.numberOfTrailingZeros(tierSize) - Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+    }
+}
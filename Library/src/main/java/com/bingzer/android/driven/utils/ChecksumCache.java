@@ -0,0 +1,117 @@
+/**
+ * Copyright 2014 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance insert the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bingzer.android.driven.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes the MD5 of local files and remembers it by the file's
+ * path, size and last modified time, so an unchanged file isn't hashed twice.
+ */
+public final class ChecksumCache {
+
+    public static final long DEFAULT_TTL = 60 * 60 * 1000;
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    private static final ChecksumCache defaultCache = new ChecksumCache(DEFAULT_TTL, DEFAULT_MAX_ENTRIES);
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final ExpiringLruCache<String, String> cache;
+
+    /**
+     * Returns the cache shared by all providers
+     */
+    public static ChecksumCache getDefault(){
+        return defaultCache;
+    }
+
+    public ChecksumCache(long ttl, int maxEntries){
+        cache = new ExpiringLruCache<String, String>(ttl, maxEntries);
+    }
+
+    /**
+     * Returns the MD5 of {@code file} as a lower case hex string
+     */
+    public String getMd5(File file) throws IOException {
+        String key = getKey(file);
+        String md5 = cache.get(key);
+        if(md5 == null){
+            md5 = md5(file);
+            // the file may have changed while we were reading it
+            if(key.equals(getKey(file))) cache.put(key, md5);
+        }
+        return md5;
+    }
+
+    /**
+     * Forgets every checksum
+     */
+    public void clear(){
+        cache.clear();
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Computes the MD5 of {@code file} (as a lower case hex string) without caching it
+     */
+    public static String md5(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        }
+        catch (NoSuchAlgorithmException e){
+            throw new IOException("MD5 is not available");
+        }
+
+        BufferPool pool = BufferPool.getDefault();
+        byte[] buffer = pool.acquire(IOUtils.COPY_BUFFER_SIZE);
+        InputStream input = new FileInputStream(file);
+        try {
+            int read;
+            while((read = input.read(buffer)) != -1){
+                IOUtils.throwIfInterrupted();
+                digest.update(buffer, 0, read);
+            }
+        }
+        finally {
+            IOUtils.safeClose(input);
+            pool.release(buffer);
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Returns {@code bytes} as a lower case hex string
+     */
+    public static String toHex(byte[] bytes){
+        char[] chars = new char[bytes.length * 2];
+        for(int i = 0; i < bytes.length; i++){
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    private static String getKey(File file){
+        return file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright 2014 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance insert the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bingzer.android.driven.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Splits a file into content-defined chunks.
+ * A boundary is placed where a rolling hash of the last 64 bytes matches a pattern,
+ * so an edit only changes the chunks around it and the rest of the file
+ * produces the same chunks (and hashes) as before, even if bytes were inserted.
+ */
+public final class Chunker {
+
+    public static final int DEFAULT_MIN_SIZE     = 64 * 1024;
+    public static final int DEFAULT_AVERAGE_SIZE = 256 * 1024;
+    public static final int DEFAULT_MAX_SIZE     = 1024 * 1024;
+
+    // must never change, otherwise existing chunks won't match anymore
+    private static final long[] GEAR = new long[256];
+    static {
+        Random random = new Random(0x64726976656eL);
+        for(int i = 0; i < GEAR.length; i++){
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final int minSize;
+    private final int maxSize;
+    private final int shift;
+
+    public Chunker(){
+        this(DEFAULT_MIN_SIZE, DEFAULT_AVERAGE_SIZE, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * {@code averageSize} must be a power of two. Chunks are {@code minSize}
+     * plus {@code averageSize} long on average
+     */
+    public Chunker(int minSize, int averageSize, int maxSize){
+        if(averageSize <= 0 || Integer.bitCount(averageSize) != 1)
+            throw new IllegalArgumentException("averageSize must be a power of two");
+        if(minSize <= 0 || maxSize < minSize)
+            throw new IllegalArgumentException("minSize must be positive and not bigger than maxSize");
+
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.shift = 64 - Integer.numberOfTrailingZeros(averageSize);
+    }
+
+    public int getMaxSize(){
+        return maxSize;
+    }
+
+    /**
+     * Returns the chunks of {@code file} in order
+     */
+    public List<Chunk> split(File file) throws IOException {
+        InputStream input = new FileInputStream(file);
+        try {
+            return split(input);
+        }
+        finally {
+            IOUtils.safeClose(input);
+        }
+    }
+
+    /**
+     * Returns the chunks of {@code input} in order. The stream is not closed
+     */
+    public List<Chunk> split(InputStream input) throws IOException {
+        MessageDigest digest = newDigest();
+        List<Chunk> chunks = new ArrayList<Chunk>();
+
+        BufferPool pool = BufferPool.getDefault();
+        byte[] buffer = pool.acquire(IOUtils.COPY_BUFFER_SIZE);
+        try {
+            long offset = 0;
+            int length = 0;
+            long hash = 0;
+            int read;
+            while((read = input.read(buffer)) != -1){
+                IOUtils.throwIfInterrupted();
+                int start = 0;
+                for(int i = 0; i < read; i++){
+                    hash = (hash << 1) + GEAR[buffer[i] & 0xff];
+                    if(++length >= minSize && ((hash >>> shift) == 0 || length >= maxSize)){
+                        digest.update(buffer, start, i + 1 - start);
+                        chunks.add(new Chunk(ChecksumCache.toHex(digest.digest()), offset, length));
+                        offset += length;
+                        length = 0;
+                        hash = 0;
+                        start = i + 1;
+                    }
+                }
+                digest.update(buffer, start, read - start);
+            }
+            if(length > 0) chunks.add(new Chunk(ChecksumCache.toHex(digest.digest()), offset, length));
+        }
+        finally {
+            pool.release(buffer);
+        }
+        return chunks;
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the digest used for the chunk hashes (SHA-1)
+     */
+    public static MessageDigest newDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e){
+            throw new IOException("SHA-1 is not available");
+        }
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * A range of the file and the hash of its content
+     */
+    public static final class Chunk {
+        private final String hash;
+        private final long offset;
+        private final int length;
+
+        public Chunk(String hash, long offset, int length){
+            this.hash = hash;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * Returns the SHA-1 of the content (lower case hex)
+         */
+        public String getHash() {
+            return hash;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public int getLength() {
+            return length;
+        }
+    }
+}
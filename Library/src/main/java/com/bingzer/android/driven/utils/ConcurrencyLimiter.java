@@ -0,0 +1,106 @@
+/**
+ * Copyright 2014 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance insert the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bingzer.android.driven.utils;
+
+/**
+ * AIMD (additive-increase/multiplicative-decrease) concurrency limiter.
+ * Limits the number of in-flight requests to a provider.
+ * The limit grows by one for every "limit" successful requests
+ * and is cut in half whenever the provider throttles us
+ * (i.e: HTTP 429, 503 or Google's "rateLimitExceeded").
+ * <p/>
+ * Usage:
+ * <pre>
+ * limiter.acquire();
+ * boolean throttled = false;
+ * try {
+ *     // make the call
+ * }
+ * catch (SomeException e){
+ *     throttled = isThrottled(e);
+ * }
+ * finally {
+ *     limiter.release(throttled);
+ * }
+ * </pre>
+ */
+public class ConcurrencyLimiter {
+
+    public static final int DEFAULT_INITIAL_LIMIT = 4;
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    public static final int DEFAULT_MAX_LIMIT = 32;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private double limit;
+    private int inFlight;
+
+    public ConcurrencyLimiter(){
+        this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT);
+    }
+
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit){
+        if(minLimit < 1) throw new IllegalArgumentException("minLimit must be at least 1");
+        if(maxLimit < minLimit) throw new IllegalArgumentException("maxLimit must be >= minLimit");
+        if(initialLimit < minLimit || initialLimit > maxLimit)
+            throw new IllegalArgumentException("initialLimit must be between minLimit and maxLimit");
+
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Waits until a request is allowed to go through
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while(inFlight >= getLimit()){
+            wait();
+        }
+        inFlight++;
+    }
+
+    /**
+     * Call this when the request is done.
+     * {@code throttled} is true if the provider rejected the request
+     * because we're calling it too often
+     */
+    public synchronized void release(boolean throttled){
+        if(inFlight > 0) inFlight--;
+
+        if(throttled)
+            limit = Math.max(minLimit, limit / 2);
+        else
+            limit = Math.min(maxLimit, limit + 1 / limit);
+
+        notifyAll();
+    }
+
+    /**
+     * Returns the current number of requests allowed in-flight
+     */
+    public synchronized int getLimit(){
+        return (int) limit;
+    }
+
+    /**
+     * Returns the number of requests currently in-flight
+     */
+    public synchronized int getInFlight(){
+        return inFlight;
+    }
+
+}
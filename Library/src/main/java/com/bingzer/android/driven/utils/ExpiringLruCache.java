@@ -0,0 +1,115 @@
+/**
+ * Copyright 2014 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance insert the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bingzer.android.driven.utils;
+
+import android.os.SystemClock;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A thread-safe LRU cache whose entries expire after {@code ttl} milliseconds.
+ * The least recently used entry is evicted when {@code maxEntries} is reached.
+ */
+public class ExpiringLruCache<K, V> {
+
+    private final long ttl;
+    private final int maxEntries;
+    private final LinkedHashMap<K, Item<V>> map;
+
+    public ExpiringLruCache(long ttl, final int maxEntries){
+        if(ttl <= 0) throw new IllegalArgumentException("ttl must be positive");
+        if(maxEntries <= 0) throw new IllegalArgumentException("maxEntries must be positive");
+
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+        this.map = new LinkedHashMap<K, Item<V>>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Item<V>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the value or null if not found or expired
+     */
+    public synchronized V get(K key){
+        Item<V> entry = map.get(key);
+        if(entry == null) return null;
+        if(entry.expiresAt <= now()){
+            map.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    public synchronized void put(K key, V value){
+        if(value == null) throw new NullPointerException("value");
+        map.put(key, new Item<V>(value, now() + ttl));
+    }
+
+    public synchronized V remove(K key){
+        Item<V> entry = map.remove(key);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * Removes every entry whose value equals {@code value}
+     */
+    public synchronized void removeValue(V value){
+        Iterator<Item<V>> iterator = map.values().iterator();
+        while(iterator.hasNext()){
+            if(iterator.next().value.equals(value)) iterator.remove();
+        }
+    }
+
+    public synchronized void clear(){
+        map.clear();
+    }
+
+    /**
+     * Returns the number of entries (including the expired ones not yet removed)
+     */
+    public synchronized int size(){
+        return map.size();
+    }
+
+    public long getTtl(){
+        return ttl;
+    }
+
+    public int getMaxEntries(){
+        return maxEntries;
+    }
+
+    protected long now(){
+        return SystemClock.elapsedRealtime();
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static class Item<V> {
+        final V value;
+        final long expiresAt;
+
+        Item(V value, long expiresAt){
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -16,22 +16,31 @@
 package com.bingzer.android.driven.utils;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Locale;
 
 @SuppressWarnings("UnusedDeclaration")
 public final class IOUtils {
 
+    // bytes copied at a time between two channels
+    private static final long TRANSFER_SIZE = 1024 * 1024;
+    // size of the (pooled) buffer used to copy streams
+    public static final int COPY_BUFFER_SIZE = BufferPool.MIN_BUFFER_SIZE;
+
     /**
      * Delete dir and its children
      */
@@ -51,6 +60,13 @@ public final class IOUtils {
     }
 
     public static void copyFile(File sourceFile, File destFile) throws IOException {
+        copyFile(sourceFile, destFile, null);
+    }
+
+    /**
+     * Copy sourceFile to destFile, reporting the progress to {@code tracker} (if not null)
+     */
+    public static void copyFile(File sourceFile, File destFile, ProgressTracker tracker) throws IOException {
         if(sourceFile.equals(destFile)) return;
         if(!destFile.exists()) destFile.createNewFile();
 
@@ -59,7 +75,7 @@ public final class IOUtils {
         try {
             source = new FileInputStream(sourceFile).getChannel();
             destination = new FileOutputStream(destFile).getChannel();
-            destination.transferFrom(source, 0, source.size());
+            transfer(source, destination, tracker);
         }
         finally {
             if(source != null) {
@@ -72,22 +88,88 @@ public final class IOUtils {
     }// end copyFile()
 
     /**
-     * Copy source stream and write to destFile
+     * Copy source stream and write to destFile.
+     * Stops (and throws {@link InterruptedIOException}) when the current thread is interrupted
      * @throws java.io.IOException
      */
     public static void copyFile(InputStream input, File destFile) throws IOException{
-        if(!(input instanceof BufferedInputStream)) input = new BufferedInputStream(input);
+        copy(input, new FileOutputStream(destFile));
+    }
 
-        BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(destFile));
-        byte[] buffer = new byte[1024];
-        int read;
-        while((read = input.read(buffer)) != -1){
-            bos.write(buffer, 0, read);
+    /**
+     * Copy source stream to output. Both streams are closed afterward.
+     * Stops (and throws {@link InterruptedIOException}) when the current thread is interrupted
+     * @throws java.io.IOException
+     */
+    public static void copy(InputStream input, OutputStream output) throws IOException{
+        copy(input, output, null);
+    }
+
+    /**
+     * Same as {@link #copy(InputStream, OutputStream)},
+     * reporting the progress to {@code tracker} (if not null)
+     */
+    public static void copy(InputStream input, OutputStream output, ProgressTracker tracker) throws IOException{
+        try {
+            write(input, output, tracker);
         }
-        bos.flush();
-        bos.close();
-        input.close();
-        buffer = null;
+        finally {
+            safeClose(output);
+            safeClose(input);
+        }
+    }
+
+    /**
+     * Writes everything from input to output, reporting the progress to {@code tracker} (if not null).
+     * Neither stream is closed. A file is transferred through its channel, anything else
+     * goes through a buffer from the {@link BufferPool}.
+     * Stops (and throws {@link InterruptedIOException}) when the current thread is interrupted
+     */
+    public static void write(InputStream input, OutputStream output, ProgressTracker tracker) throws IOException{
+        if(input instanceof FileInputStream){
+            FileChannel source = ((FileInputStream) input).getChannel();
+            WritableByteChannel target = output instanceof FileOutputStream ?
+                    ((FileOutputStream) output).getChannel() : Channels.newChannel(output);
+            transfer(source, target, tracker);
+            output.flush();
+            return;
+        }
+
+        BufferPool pool = BufferPool.getDefault();
+        byte[] buffer = pool.acquire(COPY_BUFFER_SIZE);
+        try {
+            int read;
+            while((read = input.read(buffer)) != -1){
+                throwIfInterrupted();
+                output.write(buffer, 0, read);
+                if(tracker != null) tracker.add(read);
+            }
+            output.flush();
+            if(tracker != null) tracker.done();
+        }
+        finally {
+            pool.release(buffer);
+        }
+    }
+
+    /**
+     * Transfers {@code source} (from its current position to the end) to {@code target}
+     * without copying it through the Java heap when the platform allows.
+     * Neither channel is closed.
+     * Stops (and throws {@link InterruptedIOException}) when the current thread is interrupted
+     */
+    public static void transfer(FileChannel source, WritableByteChannel target, ProgressTracker tracker) throws IOException{
+        long size = source.size();
+        long position = source.position();
+        while(position < size){
+            throwIfInterrupted();
+            long count = source.transferTo(position, Math.min(TRANSFER_SIZE, size - position), target);
+            if(count <= 0) break;
+            position += count;
+            if(tracker != null) tracker.add(count);
+        }
+        source.position(position);
+        if(tracker != null) tracker.done();
     }
 
     public static void copy(InputStream source, StringBuilder builder) throws IOException{
@@ -100,6 +182,99 @@ public final class IOUtils {
         buffer = null;
     }
 
+    /**
+     * Throws {@link InterruptedIOException} if the current thread has been interrupted
+     * (i.e: the {@link com.bingzer.android.driven.contracts.Operation} was cancelled)
+     */
+    public static void throwIfInterrupted() throws InterruptedIOException {
+        if(Thread.currentThread().isInterrupted())
+            throw new InterruptedIOException("Transfer has been cancelled");
+    }
+
+    /**
+     * Wraps {@code input} so that reading from it stops
+     * when the current thread is interrupted
+     */
+    public static InputStream interruptible(InputStream input){
+        return new FilterInputStream(input) {
+            @Override
+            public int read() throws IOException {
+                throwIfInterrupted();
+                return super.read();
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int count) throws IOException {
+                throwIfInterrupted();
+                return super.read(buffer, offset, count);
+            }
+        };
+    }
+
+    /**
+     * Wraps {@code output} so that writing to it stops
+     * when the current thread is interrupted
+     */
+    public static OutputStream interruptible(OutputStream output){
+        return new FilterOutputStream(output) {
+            @Override
+            public void write(int oneByte) throws IOException {
+                throwIfInterrupted();
+                super.write(oneByte);
+            }
+
+            @Override
+            public void write(byte[] buffer, int offset, int count) throws IOException {
+                throwIfInterrupted();
+                out.write(buffer, offset, count);
+            }
+        };
+    }
+
+    /**
+     * Wraps {@code input} so that reading from it is held to the rate of {@code limiter}.
+     * Returns {@code input} if {@code limiter} is null
+     */
+    public static InputStream throttle(InputStream input, final BandwidthLimiter limiter){
+        if(limiter == null) return input;
+        return new FilterInputStream(input) {
+            @Override
+            public int read() throws IOException {
+                int read = super.read();
+                if(read != -1) limiter.acquire(1);
+                return read;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int count) throws IOException {
+                int read = super.read(buffer, offset, count);
+                if(read > 0) limiter.acquire(read);
+                return read;
+            }
+        };
+    }
+
+    /**
+     * Wraps {@code output} so that writing to it is held to the rate of {@code limiter}.
+     * Returns {@code output} if {@code limiter} is null
+     */
+    public static OutputStream throttle(OutputStream output, final BandwidthLimiter limiter){
+        if(limiter == null) return output;
+        return new FilterOutputStream(output) {
+            @Override
+            public void write(int oneByte) throws IOException {
+                limiter.acquire(1);
+                super.write(oneByte);
+            }
+
+            @Override
+            public void write(byte[] buffer, int offset, int count) throws IOException {
+                limiter.acquire(count);
+                out.write(buffer, offset, count);
+            }
+        };
+    }
+
     public static String stripExtension(File file){
         if(file == null) return "";
         return stripExtension(file.getName());
@@ -0,0 +1,145 @@
+/**
+ * Copyright 2014 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance insert the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bingzer.android.driven.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The temp file a download is written to before it's complete.
+ * It lives next to the target file and is named after the revision being
+ * downloaded, so a failed download can continue from {@link #length()}
+ * as long as the remote content hasn't changed.
+ * <p/>
+ * {@link #commit()} renames it to the target file once the download completes.
+ * Downloads that write several ranges at once go to {@link #getSegmentedFile()}
+ * instead: it's preallocated, so its length says nothing about what was downloaded.
+ */
+public final class PartialFile {
+
+    public static final String SUFFIX = ".part";
+    private static final String SEGMENTED = "-segmented";
+
+    private final File target;
+    private final File file;
+    private final File segmentedFile;
+    private final boolean resumable;
+
+    /**
+     * Creates the partial file of {@code target}. When {@code revision} is null
+     * there's no way to tell whether the remote content has changed,
+     * so the download always starts from the beginning
+     */
+    public PartialFile(File target, String revision){
+        this.target = target.getAbsoluteFile();
+        this.resumable = revision != null;
+        String tag = resumable ? Integer.toHexString(revision.hashCode()) : "0";
+        this.file = new File(this.target.getParentFile(), getPrefix() + tag + SUFFIX);
+        this.segmentedFile = new File(this.target.getParentFile(), getPrefix() + tag + SEGMENTED + SUFFIX);
+
+        deleteOthers();
+        if(!resumable) file.delete();
+    }
+
+    /**
+     * Returns the temp file
+     */
+    public File getFile(){
+        return file;
+    }
+
+    /**
+     * Returns the temp file of a segmented download. It's never resumed,
+     * whatever is left of it from an earlier attempt is deleted
+     */
+    public File getSegmentedFile(){
+        return segmentedFile;
+    }
+
+    /**
+     * Returns the number of bytes already downloaded
+     */
+    public long length(){
+        return resumable && file.exists() ? file.length() : 0;
+    }
+
+    /**
+     * Opens the temp file. If {@code append} is false, whatever
+     * was downloaded before is thrown away
+     */
+    public OutputStream openOutput(boolean append) throws IOException {
+        IOUtils.safeCreateDir(file.getParentFile());
+        return new BufferedOutputStream(new FileOutputStream(file, append && resumable));
+    }
+
+    /**
+     * Moves the temp file to the target file
+     */
+    public void commit() throws IOException {
+        moveToTarget(file);
+    }
+
+    /**
+     * Moves the segmented file to the target file, once every range is written
+     */
+    public void commitSegmented() throws IOException {
+        moveToTarget(segmentedFile);
+    }
+
+    /**
+     * Deletes the temp files
+     */
+    public void discard(){
+        file.delete();
+        segmentedFile.delete();
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////
+
+    private void moveToTarget(File source) throws IOException {
+        if(!source.renameTo(target)){
+            // some file systems won't rename over an existing file
+            target.delete();
+            if(!source.renameTo(target))
+                throw new IOException("Unable to move " + source + " to " + target);
+        }
+    }
+
+    private String getPrefix(){
+        return "." + target.getName() + ".";
+    }
+
+    /**
+     * Deletes the partial files of other revisions
+     */
+    private void deleteOthers(){
+        File[] files = file.getParentFile() != null ? file.getParentFile().listFiles() : null;
+        if(files == null) return;
+
+        String prefix = getPrefix();
+        for(File other : files){
+            String name = other.getName();
+            if(!name.startsWith(prefix) || !name.endsWith(SUFFIX) || other.equals(file)) continue;
+
+            // the tag shouldn't have a '.' (otherwise it belongs to a different target)
+            String tag = name.substring(prefix.length(), name.length() - SUFFIX.length());
+            if(tag.indexOf('.') < 0) other.delete();
+        }
+    }
+}
@@ -17,6 +17,9 @@ package com.bingzer.android.driven.utils;
 
 import com.bingzer.android.driven.RemoteFile;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public final class Path {
 
     public static final String ROOT = "/";
@@ -77,6 +80,20 @@ public final class Path {
         return path;
     }
 
+    /**
+     * Returns the names of all the segments in {@code path}
+     * (i.e: "/Folder/SubFolder/File" returns [Folder, SubFolder, File])
+     */
+    public static List<String> split(String path){
+        List<String> segments = new ArrayList<String>();
+        if(path == null) return segments;
+
+        for(String segment : path.split(SEPARATOR)){
+            if(segment.length() > 0) segments.add(segment);
+        }
+        return segments;
+    }
+
     /////////////////////////////////////////////////////////////////////////////////////////////
 
     public static String clean(String path){
@@ -0,0 +1,347 @@
+/**
+ * Copyright 2014 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance insert the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bingzer.android.driven.utils;
+
+import com.bingzer.android.driven.DrivenException;
+import com.bingzer.android.driven.contracts.Delegate;
+import com.bingzer.android.driven.contracts.Function;
+import com.bingzer.android.driven.contracts.Lane;
+import com.bingzer.android.driven.contracts.Operation;
+import com.bingzer.android.driven.contracts.Task;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Chains multiple (blocking) steps into one async call.
+ * All steps run back-to-back on the same worker thread,
+ * the {@link Task} is notified once at the end.
+ * <pre>
+ * Pipeline.start(new Delegate&lt;RemoteFile&gt;() { ... get folder ... })
+ *         .then(new Function&lt;RemoteFile, RemoteFile&gt;() { ... create child ... })
+ *         .then(new Function&lt;RemoteFile, String&gt;() { ... share ... })
+ *         .recover(new Function&lt;Throwable, String&gt;() { ... })
+ *         .run(task);
+ * </pre>
+ */
+public final class Pipeline<T> {
+
+    private final Delegate<T> delegate;
+
+    private Pipeline(Delegate<T> delegate){
+        if(delegate == null) throw new NullPointerException("delegate");
+        this.delegate = delegate;
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Starts a pipeline with {@code delegate} as its first step
+     */
+    public static <T> Pipeline<T> start(Delegate<T> delegate){
+        return new Pipeline<T>(delegate);
+    }
+
+    /**
+     * Starts a pipeline that invokes all {@code delegates} in parallel
+     * (in the default {@link Lane#INTERACTIVE} executor)
+     * and returns all the results in order
+     */
+    public static <T> Pipeline<List<T>> allOf(List<Delegate<T>> delegates){
+        return allOf(AsyncUtils.getDefaultExecutor(Lane.INTERACTIVE), delegates);
+    }
+
+    /**
+     * Starts a pipeline that invokes all {@code delegates} in parallel
+     * in the specified {@code executor} and returns all the results in order.
+     * Fails as soon as one of the delegates fails.
+     */
+    public static <T> Pipeline<List<T>> allOf(final Executor executor, final List<Delegate<T>> delegates){
+        return new Pipeline<List<T>>(new Delegate<List<T>>() {
+            @Override
+            public List<T> invoke() {
+                List<Step<T>> steps = submit(executor, delegates, null);
+                try {
+                    List<T> results = new ArrayList<T>(steps.size());
+                    for(Step<T> step : steps){
+                        // run it ourselves if nobody picked it up yet
+                        step.run();
+                        results.add(await(step));
+                    }
+                    return results;
+                }
+                finally {
+                    cancel(steps);
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts a pipeline that invokes all {@code delegates} in parallel
+     * (in the default {@link Lane#INTERACTIVE} executor)
+     * and returns the first successful result
+     */
+    public static <T> Pipeline<T> anyOf(List<Delegate<T>> delegates){
+        return anyOf(AsyncUtils.getDefaultExecutor(Lane.INTERACTIVE), delegates);
+    }
+
+    /**
+     * Starts a pipeline that invokes all {@code delegates} in parallel
+     * in the specified {@code executor} and returns the first successful result.
+     * The remaining delegates are cancelled.
+     * Fails only if all delegates fail.
+     */
+    public static <T> Pipeline<T> anyOf(final Executor executor, final List<Delegate<T>> delegates){
+        if(delegates.isEmpty()) throw new IllegalArgumentException("delegates is empty");
+
+        return new Pipeline<T>(new Delegate<T>() {
+            @Override
+            public T invoke() {
+                BlockingQueue<Step<T>> completed = new LinkedBlockingQueue<Step<T>>();
+                List<Step<T>> steps = submit(executor, delegates, completed);
+                try {
+                    RuntimeException lastError = null;
+                    int index = 0;
+                    for(int i = 0; i < steps.size(); i++){
+                        Step<T> step = completed.poll();
+                        // help with the ones nobody picked up yet
+                        while(step == null && index < steps.size()){
+                            steps.get(index++).run();
+                            step = completed.poll();
+                        }
+                        if(step == null) step = completed.take();
+
+                        try {
+                            return await(step);
+                        }
+                        catch (RuntimeException e){
+                            lastError = e;
+                        }
+                    }
+                    throw lastError;
+                }
+                catch (InterruptedException e){
+                    Thread.currentThread().interrupt();
+                    throw new DrivenException(e);
+                }
+                finally {
+                    cancel(steps);
+                }
+            }
+        });
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Invokes {@code function} with the result of the previous step,
+     * in the same thread
+     */
+    public <R> Pipeline<R> then(final Function<T, R> function){
+        return new Pipeline<R>(new Delegate<R>() {
+            @Override
+            public R invoke() {
+                return function.invoke(delegate.invoke());
+            }
+        });
+    }
+
+    /**
+     * Invokes {@code function} with the result of the previous step
+     * in the shared executor of the specified {@code lane}
+     * (i.e: hand off an upload to {@link Lane#TRANSFER})
+     */
+    public <R> Pipeline<R> thenAsync(Lane lane, Function<T, R> function){
+        return thenAsync(AsyncUtils.getDefaultExecutor(lane), function);
+    }
+
+    /**
+     * Invokes {@code function} with the result of the previous step
+     * in the specified {@code executor}. The pipeline waits for it to finish.
+     * If the pipeline is already running in {@code executor},
+     * it's invoked in the current thread.
+     */
+    public <R> Pipeline<R> thenAsync(final Executor executor, final Function<T, R> function){
+        return new Pipeline<R>(new Delegate<R>() {
+            @Override
+            public R invoke() {
+                final T input = delegate.invoke();
+                // we hold one of its workers, waiting for another one may never end
+                if(AsyncUtils.isWorkerOf(executor)) return function.invoke(input);
+
+                Step<R> step = new Step<R>(executor, new Delegate<R>() {
+                    @Override
+                    public R invoke() {
+                        return function.invoke(input);
+                    }
+                }, null);
+
+                try {
+                    executor.execute(step);
+                }
+                catch (RejectedExecutionException e){
+                    throw new DrivenException(e);
+                }
+
+                try {
+                    return await(step);
+                }
+                finally {
+                    step.cancel(true);
+                }
+            }
+        });
+    }
+
+    /**
+     * If any of the previous steps fail, {@code function} is invoked
+     * with the error and its result is used instead
+     */
+    public Pipeline<T> recover(final Function<Throwable, T> function){
+        return new Pipeline<T>(new Delegate<T>() {
+            @Override
+            public T invoke() {
+                try {
+                    return delegate.invoke();
+                }
+                catch (RuntimeException e){
+                    return function.invoke(e);
+                }
+            }
+        });
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Runs all the steps in the current thread and returns the result
+     */
+    public T execute(){
+        return delegate.invoke();
+    }
+
+    /**
+     * Runs all the steps in the default {@link Lane#INTERACTIVE} executor
+     */
+    public Operation<T> run(Task<T> task){
+        return AsyncUtils.doAsync(Lane.INTERACTIVE, task, delegate);
+    }
+
+    /**
+     * Runs all the steps in the shared executor of the specified {@code lane}
+     */
+    public Operation<T> run(Lane lane, Task<T> task){
+        return AsyncUtils.doAsync(lane, task, delegate);
+    }
+
+    /**
+     * Runs all the steps in the specified {@code executor}
+     */
+    public Operation<T> run(Executor executor, Task<T> task){
+        return AsyncUtils.doAsync(executor, task, delegate);
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Convenient method to create a list of delegates
+     */
+    public static <T> List<Delegate<T>> delegates(Delegate<T> first, Delegate<T>... others){
+        List<Delegate<T>> list = new ArrayList<Delegate<T>>();
+        list.add(first);
+        list.addAll(Arrays.asList(others));
+        return list;
+    }
+
+    private static <T> List<Step<T>> submit(Executor executor, List<Delegate<T>> delegates, BlockingQueue<Step<T>> completed){
+        List<Step<T>> steps = new ArrayList<Step<T>>(delegates.size());
+        for(Delegate<T> delegate : delegates){
+            Step<T> step = new Step<T>(executor, delegate, completed);
+            steps.add(step);
+            try {
+                executor.execute(step);
+            }
+            catch (RejectedExecutionException e){
+                // queue is full, we'll run it ourselves
+            }
+        }
+        return steps;
+    }
+
+    private static <T> T await(Step<T> step){
+        try {
+            return step.get();
+        }
+        catch (ExecutionException e){
+            if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if(e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new DrivenException(e.getCause());
+        }
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new DrivenException(e);
+        }
+    }
+
+    private static <T> void cancel(List<Step<T>> steps){
+        for(Step<T> step : steps){
+            step.cancel(true);
+        }
+    }
+
+    /**
+     * A parallel step. Puts itself to {@code completed} (if any) when done
+     */
+    private static class Step<T> extends FutureTask<T> {
+        private final Executor executor;
+        private final BlockingQueue<Step<T>> completed;
+
+        Step(Executor executor, final Delegate<T> delegate, BlockingQueue<Step<T>> completed){
+            super(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    return delegate.invoke();
+                }
+            });
+            this.executor = executor;
+            this.completed = completed;
+        }
+
+        @Override
+        public void run() {
+            AsyncUtils.runAsWorkerOf(executor, new Runnable() {
+                @Override
+                public void run() {
+                    Step.super.run();
+                }
+            });
+        }
+
+        @Override
+        protected void done() {
+            if(completed != null) completed.offer(this);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2014 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance insert the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bingzer.android.driven.utils;
+
+import android.os.SystemClock;
+
+import com.bingzer.android.driven.TransferProgress;
+import com.bingzer.android.driven.contracts.TransferListener;
+
+/**
+ * Keeps track of a transfer and reports it to a {@link TransferListener}.
+ * Reports are rate-limited to one every {@link #getInterval()} ms
+ * so a fast copy loop doesn't flood the listener.
+ * <p/>
+ * Thread-safe, a segmented transfer may report from several threads.
+ * Does nothing if the listener is null.
+ */
+public class ProgressTracker {
+
+    public static final long DEFAULT_INTERVAL = 250;
+
+    private final TransferListener listener;
+    private final long totalBytes;
+    private final long interval;
+    private long bytesTransferred;
+    private long startTime = -1;
+    private long lastTime;
+    private long lastBytes;
+    private boolean done;
+
+    public ProgressTracker(TransferListener listener, long totalBytes){
+        this(listener, totalBytes, DEFAULT_INTERVAL);
+    }
+
+    public ProgressTracker(TransferListener listener, long totalBytes, long interval){
+        this.listener = listener;
+        this.totalBytes = totalBytes;
+        this.interval = interval;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    public synchronized long getBytesTransferred() {
+        return bytesTransferred;
+    }
+
+    /**
+     * Adds {@code count} to the bytes transferred
+     */
+    public void add(long count){
+        TransferProgress progress;
+        synchronized (this){
+            progress = update(bytesTransferred + count, false);
+        }
+        report(progress);
+    }
+
+    /**
+     * Sets the bytes transferred (i.e: when the transfer reports its own position)
+     */
+    public void set(long bytesTransferred){
+        TransferProgress progress;
+        synchronized (this){
+            progress = update(bytesTransferred, false);
+        }
+        report(progress);
+    }
+
+    /**
+     * Reports the last progress. Only the first call counts
+     */
+    public void done(){
+        TransferProgress progress;
+        synchronized (this){
+            if(done) return;
+            progress = update(bytesTransferred, true);
+        }
+        report(progress);
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////
+
+    protected long now(){
+        return SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Returns the progress to report or null if it's too soon
+     */
+    private TransferProgress update(long bytes, boolean last){
+        long now = now();
+        if(startTime < 0){
+            startTime = now;
+            lastTime = now;
+        }
+        bytesTransferred = bytes;
+        if(listener == null || done) return null;
+        if(!last && now - lastTime < interval) return null;
+
+        long rate = now > lastTime ? (bytes - lastBytes) * 1000 / (now - lastTime) : 0;
+        long averageRate = now > startTime ? bytes * 1000 / (now - startTime) : 0;
+        lastTime = now;
+        lastBytes = bytes;
+        done = last;
+        return new TransferProgress(bytes, totalBytes, rate, averageRate, last);
+    }
+
+    private void report(TransferProgress progress){
+        // outside the lock, the listener may take a while
+        if(progress != null) listener.onProgress(progress);
+    }
+}
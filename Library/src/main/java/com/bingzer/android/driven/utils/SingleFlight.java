@@ -0,0 +1,124 @@
+/**
+ * Copyright 2014 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance insert the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bingzer.android.driven.utils;
+
+import com.bingzer.android.driven.DrivenException;
+import com.bingzer.android.driven.contracts.Delegate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Merges identical concurrent calls into one.
+ * The first caller of a {@code key} invokes the {@link Delegate},
+ * everyone else calling with the same {@code key} while it's in-flight
+ * waits and gets the same result (or the same exception).
+ * Nothing is cached once the call completes.
+ * <p/>
+ * If the first caller is interrupted (i.e: its {@link com.bingzer.android.driven.contracts.Operation}
+ * is cancelled) its result isn't shared, one of the waiting callers invokes the delegate again.
+ */
+public class SingleFlight {
+
+    private final Map<String, Call> calls = new HashMap<String, Call>();
+
+    /**
+     * Invokes {@code delegate} unless there's already an in-flight
+     * call for {@code key}, in which case its result is returned instead
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Delegate<T> delegate){
+        while(true){
+            Call call;
+            boolean leader = false;
+            synchronized (calls){
+                call = calls.get(key);
+                if(call == null){
+                    call = new Call();
+                    calls.put(key, call);
+                    leader = true;
+                }
+            }
+
+            if(leader) return call.run(key, delegate);
+
+            // the leader was cancelled, try again
+            if(call.await()) return (T) call.result;
+        }
+    }
+
+    /**
+     * Returns the number of in-flight calls
+     */
+    public int size(){
+        synchronized (calls){
+            return calls.size();
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////
+
+    private class Call {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private Object result;
+        private Throwable error;
+        private boolean cancelled;
+
+        <T> T run(String key, Delegate<T> delegate){
+            try {
+                T value = delegate.invoke();
+                result = value;
+                return value;
+            }
+            catch (RuntimeException e){
+                error = e;
+                throw e;
+            }
+            catch (Error e){
+                error = e;
+                throw e;
+            }
+            finally {
+                // an interrupted call usually ends up as "not found"
+                cancelled = Thread.currentThread().isInterrupted();
+                synchronized (calls){
+                    calls.remove(key);
+                }
+                latch.countDown();
+            }
+        }
+
+        /**
+         * Waits for the leader. Returns false if it was cancelled,
+         * otherwise {@code result} is set (or the error is thrown)
+         */
+        boolean await(){
+            try {
+                latch.await();
+            }
+            catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new DrivenException(e);
+            }
+
+            if(cancelled) return false;
+            if(error instanceof RuntimeException) throw (RuntimeException) error;
+            if(error instanceof Error) throw (Error) error;
+            return true;
+        }
+    }
+}
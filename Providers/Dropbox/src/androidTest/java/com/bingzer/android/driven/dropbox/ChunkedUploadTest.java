@@ -0,0 +1,32 @@
+package com.bingzer.android.driven.dropbox;
+
+import android.test.AndroidTestCase;
+
+import java.io.File;
+
+public class ChunkedUploadTest extends AndroidTestCase {
+
+    public void test_getSessionKey() throws Exception {
+        File file = new File(getContext().getCacheDir(), "ChunkedUploadTest");
+        String key = ChunkedUpload.getSessionKey("/Folder/File", file);
+
+        assertTrue(key.startsWith(ChunkedUpload.UPLOAD_TOKEN + "/Folder/File"));
+        assertEquals(key, ChunkedUpload.getSessionKey("/Folder/File", file));
+        assertFalse(key.equals(ChunkedUpload.getSessionKey("/Folder/Other", file)));
+    }
+
+    public void test_setUploadChunkSize() throws Exception {
+        Dropbox dropbox = new Dropbox();
+        dropbox.setUploadChunkSize(2 * 1024 * 1024);
+        // not authenticated, so the active network is unknown
+        assertEquals(2 * 1024 * 1024, dropbox.getUploadChunkSize());
+
+        try {
+            dropbox.setUploadChunkSize(0);
+            fail("Should throw exception");
+        }
+        catch (IllegalArgumentException e){
+            // good
+        }
+    }
+}
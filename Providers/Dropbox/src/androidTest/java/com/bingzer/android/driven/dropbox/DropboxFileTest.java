@@ -4,6 +4,7 @@ import android.test.AndroidTestCase;
 
 import com.bingzer.android.driven.Credential;
 import com.bingzer.android.driven.LocalFile;
+import com.bingzer.android.driven.MetadataCache;
 import com.bingzer.android.driven.RemoteFile;
 import com.bingzer.android.driven.contracts.Task;
 
@@ -276,6 +277,16 @@ public class DropboxFileTest extends AndroidTestCase {
         assertNotNull(driven.get("/Folder100/File101_Renamed"));
     }
 
+    public void test_rename_cached() throws Exception {
+        driven.setMetadataCache(new MetadataCache());
+        assertNotNull(driven.get("/Folder100/File101"));
+        assertFalse(driven.exists("/Folder100/File101_Renamed"));
+
+        assertTrue(remoteFile.rename("File101_Renamed"));
+        assertNull(driven.get("/Folder100/File101"));
+        assertNotNull(driven.get("/Folder100/File101_Renamed"));
+    }
+
     public void test_renameAsync() throws Exception {
         assertEquals("File101", remoteFile.getName());
 
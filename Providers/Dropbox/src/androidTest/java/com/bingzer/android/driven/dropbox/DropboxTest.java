@@ -4,17 +4,33 @@ import android.test.AndroidTestCase;
 
 import com.bingzer.android.driven.Credential;
 import com.bingzer.android.driven.LocalFile;
+import com.bingzer.android.driven.MetadataCache;
 import com.bingzer.android.driven.DrivenException;
 import com.bingzer.android.driven.RemoteFile;
 import com.bingzer.android.driven.Result;
 import com.bingzer.android.driven.contracts.Task;
+import com.bingzer.android.driven.utils.IOUtils;
+import com.bingzer.android.driven.utils.PartialFile;
+import com.dropbox.client2.DropboxAPI;
+import com.dropbox.client2.ProgressListener;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 
 import dagger.ObjectGraph;
 
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
 public class DropboxTest extends AndroidTestCase {
 
     Dropbox driven;
@@ -308,6 +324,23 @@ public class DropboxTest extends AndroidTestCase {
         signal.await();
     }
 
+    public void test_update_again() throws Exception {
+        driven.authenticate(credential);
+        File file = new File(getContext().getCacheDir(), "Update01");
+        write(file, "Hello");
+        LocalFile local = new LocalFile(file, "MimeType001");
+
+        RemoteFile remoteFile = driven.id("File001");
+        RemoteFile updated = driven.update(remoteFile, local);
+        assertNotNull(updated);
+        assertEquals(5, ((DropboxFile) updated).getModel().bytes);
+        assertNotNull(((DropboxFile) updated).getModel().rev);
+
+        // same content, nothing to upload
+        assertSame(updated, driven.update(updated, local));
+        verify(driven.getDropboxApi(), times(1)).putFileOverwrite(anyString(), (InputStream) anyObject(), anyLong(), (ProgressListener) anyObject());
+    }
+
     public void test_delete() throws Exception {
         driven.authenticate(credential);
         RemoteFile remoteFile = driven.id("File003");
@@ -537,6 +570,70 @@ public class DropboxTest extends AndroidTestCase {
         signal.await();
     }
 
+    public void test_create_afterMiss() throws Exception {
+        driven.authenticate(credential);
+        driven.setMetadataCache(new MetadataCache());
+
+        // the miss is cached, create() must not return null because of it
+        assertFalse(driven.exists("Folder200"));
+        RemoteFile parent = driven.create("Folder200");
+        assertNotNull(parent);
+        assertTrue(driven.exists("Folder200"));
+
+        assertFalse(driven.exists("File201"));
+        assertNotNull(driven.create(new LocalFile(new File("File201"), "MimeType201")));
+        assertTrue(driven.exists("File201"));
+
+        assertFalse(driven.exists(parent, "File202"));
+        assertNotNull(driven.create(parent, new LocalFile(new File("File202"), "MimeType202")));
+        assertTrue(driven.exists(parent, "File202"));
+    }
+
+    public void test_cache_get() throws Exception {
+        driven.authenticate(credential);
+        driven.setMetadataCache(new MetadataCache());
+
+        RemoteFile remoteFile = driven.id("File001");
+        assertNotNull(remoteFile);
+        assertSame(remoteFile, driven.id("File001"));
+        assertSame(remoteFile, driven.get("File001"));
+        assertSame(remoteFile, driven.getByPath("/File001"));
+    }
+
+    public void test_cache_update() throws Exception {
+        driven.authenticate(credential);
+        driven.setMetadataCache(new MetadataCache());
+
+        RemoteFile remoteFile = driven.id("File001");
+        driven.update(remoteFile, new LocalFile(new File(""), "MimeType001"));
+
+        RemoteFile updated = driven.id("File001");
+        assertNotSame(remoteFile, updated);
+        assertEquals("MimeType001", updated.getType());
+    }
+
+    public void test_cache_delete() throws Exception {
+        driven.authenticate(credential);
+        driven.setMetadataCache(new MetadataCache());
+
+        assertNotNull(driven.id("File003"));
+        assertTrue(driven.delete("File003"));
+        assertNull(driven.id("File003"));
+        assertFalse(driven.exists("File003"));
+    }
+
+    public void test_cache_rename() throws Exception {
+        driven.authenticate(credential);
+        driven.setMetadataCache(new MetadataCache());
+
+        RemoteFile remoteFile = driven.id("File002");
+        assertFalse(driven.exists("File002_Renamed"));
+
+        assertTrue(remoteFile.rename("File002_Renamed"));
+        assertNull(driven.id("File002"));
+        assertSame(remoteFile, driven.id("File002_Renamed"));
+    }
+
     public void test_list() throws Exception {
         driven.authenticate(credential);
 
@@ -675,6 +772,35 @@ public class DropboxTest extends AndroidTestCase {
         signal.await();
     }
 
+    public void test_download_completePartialFile() throws Exception {
+        driven.authenticate(credential);
+
+        File local = new File(getContext().getCacheDir(), "Download01");
+        local.delete();
+        RemoteFile remoteFile = downloadable("Rev01", 5);
+        // everything was downloaded but the process died before commit()
+        write(new PartialFile(local, "Rev01").getFile(), "World");
+
+        assertTrue(driven.download(remoteFile, new LocalFile(local)));
+        assertEquals("World", read(local));
+    }
+
+    public void test_download_rangeNotSatisfiable() throws Exception {
+        driven.authenticate(credential);
+
+        File local = new File(getContext().getCacheDir(), "Download02");
+        local.delete();
+        RemoteFile remoteFile = downloadable("Rev02", 5);
+        // doesn't match what the server has
+        PartialFile partialFile = new PartialFile(local, "Rev02");
+        write(partialFile.getFile(), "Wor");
+
+        // starts over instead of failing on the same range again
+        assertTrue(driven.download(remoteFile, new LocalFile(local)));
+        assertTrue(local.exists());
+        assertFalse(partialFile.getFile().exists());
+    }
+
     /*
     public void test_download() throws Exception {
         driven.authenticate(credential);
@@ -709,4 +835,38 @@ public class DropboxTest extends AndroidTestCase {
         signal.await();
     }
     */
+
+    //////////////////////////////////////////////////////////////////////////////////////////////
+
+    private RemoteFile downloadable(String rev, long bytes){
+        DropboxAPI.Entry entry = new DropboxAPI.Entry();
+        entry.path = "/File001";
+        entry.mimeType = "MimeType001";
+        entry.rev = rev;
+        entry.bytes = bytes;
+        return new DropboxFile(driven, entry);
+    }
+
+    private static void write(File file, String content) throws IOException {
+        IOUtils.safeCreateDir(file.getParentFile());
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(content.getBytes("UTF-8"));
+        }
+        finally {
+            output.close();
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            IOUtils.copy(input, output);
+            return output.toString("UTF-8");
+        }
+        finally {
+            input.close();
+        }
+    }
 }
@@ -4,8 +4,13 @@ import com.bingzer.android.driven.utils.Path;
 import com.dropbox.client2.DropboxAPI;
 import com.dropbox.client2.MockAccount;
 import com.dropbox.client2.ProgressListener;
+import com.dropbox.client2.exception.DropboxException;
+import com.dropbox.client2.exception.DropboxServerException;
 import com.dropbox.client2.session.Session;
 
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
@@ -32,6 +37,7 @@ import static org.mockito.Mockito.when;
 public class MockDropboxApiFactory implements DropboxApiFactory {
 
     List<DropboxAPI.Entry> entryList;
+    private int revision;
 
     @SuppressWarnings("unchecked")
     @Override
@@ -76,6 +82,20 @@ public class MockDropboxApiFactory implements DropboxApiFactory {
                     });
 
 
+            when(api.getFileStream(anyString(), anyString()))
+                    .then(new Answer<DropboxAPI.DropboxInputStream>() {
+                        @Override
+                        public DropboxAPI.DropboxInputStream answer(InvocationOnMock invocation) throws Throwable {
+                            String path = invocation.getArguments()[0].toString();
+
+                            DropboxAPI.DropboxInputStream input = mock(DropboxAPI.DropboxInputStream.class, RETURNS_DEEP_STUBS);
+                            when(input.getFileInfo().getMetadata()).thenReturn(getEntryByPath(path));
+
+                            return input;
+                        }
+                    });
+
+
             //////////////////////////////////////////////////////////////////////
             // METADATA
             when(api.metadata(anyString(), anyInt(), anyString(), anyBoolean(), anyString()))
@@ -94,6 +114,11 @@ public class MockDropboxApiFactory implements DropboxApiFactory {
                             if(entry != null && entry.isDir && isList){
                                 entry.contents = getChildren(entry);
                             }
+                            if(entry == null && !isList){
+                                DropboxServerException e = mock(DropboxServerException.class);
+                                e.error = DropboxServerException._404_NOT_FOUND;
+                                throw e;
+                            }
 
                             return entry;
                         }
@@ -135,8 +160,14 @@ public class MockDropboxApiFactory implements DropboxApiFactory {
                         @Override
                         public DropboxAPI.Entry answer(InvocationOnMock invocation) throws Throwable {
                             String path = invocation.getArguments()[0].toString();
-                            DropboxAPI.Entry entry = entry(path, "MimeType", false);
-                            entryList.add(entry);
+                            DropboxAPI.Entry entry = getEntryByPath(path);
+                            if(entry == null) {
+                                entry = entry(path, "MimeType", false);
+                                entryList.add(entry);
+                            }
+                            // every upload is a new revision
+                            entry.rev = "Rev" + (++revision);
+                            entry.bytes = (Long) invocation.getArguments()[2];
                             return entry;
                         }
                     });
@@ -208,6 +239,14 @@ public class MockDropboxApiFactory implements DropboxApiFactory {
         return new ByteArrayInputStream(new byte[1024]);
     }
 
+    @Override
+    public HttpResponse execute(Session session, HttpUriRequest request) throws DropboxException {
+        // only ranged downloads get here, pretend the range is past the end
+        DropboxServerException e = mock(DropboxServerException.class);
+        e.error = 416;
+        throw e;
+    }
+
     public DropboxAPI.Entry getEntryByPath(String path){
         for(DropboxAPI.Entry entry : entryList){
             if(entry.path.equals(path)){
@@ -0,0 +1,230 @@
+package com.bingzer.android.driven.dropbox;
+
+import com.bingzer.android.driven.LocalFile;
+import com.bingzer.android.driven.MetadataStore;
+import com.bingzer.android.driven.utils.Path;
+import com.bingzer.android.driven.utils.ProgressTracker;
+import com.dropbox.client2.DropboxAPI;
+import com.dropbox.client2.RESTUtility;
+import com.dropbox.client2.exception.DropboxException;
+import com.dropbox.client2.exception.DropboxIOException;
+import com.dropbox.client2.exception.DropboxServerException;
+import com.dropbox.client2.session.Session;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.entity.InputStreamEntity;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.bingzer.android.driven.utils.IOUtils.interruptible;
+import static com.bingzer.android.driven.utils.IOUtils.safeClose;
+import static com.bingzer.android.driven.utils.IOUtils.throttle;
+import static com.bingzer.android.driven.utils.IOUtils.throwIfInterrupted;
+
+/**
+ * Uploads a file with Dropbox's chunked upload.
+ * Each chunk is retried on its own, and the upload id and offset are kept
+ * in the {@link MetadataStore} (if there's one) so an upload can resume
+ * where it left off after the process dies.
+ */
+final class ChunkedUpload {
+
+    static final String UPLOAD_TOKEN = "upload:";
+    static final int MAX_CHUNK_RETRIES = 3;
+    static final long RETRY_DELAY = 1000;
+
+    // upload sessions when there's no MetadataStore
+    private static final Map<String, String> sessions = new ConcurrentHashMap<String, String>();
+
+    private final Dropbox dropbox;
+    private final int chunkSize;
+
+    ChunkedUpload(Dropbox dropbox, int chunkSize){
+        this.dropbox = dropbox;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Uploads {@code local} to {@code path}. If {@code overwrite} is false
+     * and there's already a file in {@code path}, the file is renamed by Dropbox
+     */
+    DropboxAPI.Entry upload(String path, LocalFile local, boolean overwrite) throws DropboxException, IOException {
+        File file = local.getFile();
+        long length = file.length();
+        String key = getSessionKey(path, file);
+
+        String uploadId = null;
+        long offset = 0;
+        String session = getSession(key);
+        if(session != null){
+            int index = session.indexOf(' ');
+            offset = Long.parseLong(session.substring(0, index));
+            uploadId = session.substring(index + 1);
+        }
+
+        ProgressTracker tracker = new ProgressTracker(local.getTransferListener(), length);
+        int retries = 0;
+        while(offset < length){
+            throwIfInterrupted();
+            try {
+                DropboxAPI.ChunkedUploadResponse response = sendChunk(file, uploadId, offset, Math.min(chunkSize, length - offset));
+                uploadId = response.getUploadId();
+                offset = response.getOffset();
+                putSession(key, offset + " " + uploadId);
+                tracker.set(offset);
+                retries = 0;
+            }
+            catch (DropboxServerException e){
+                if(++retries > MAX_CHUNK_RETRIES) throw e;
+
+                Long expected = getExpectedOffset(e);
+                if(expected != null){
+                    // the server has a different idea of where we are
+                    offset = expected;
+                }
+                else if(e.error == DropboxServerException._404_NOT_FOUND && uploadId != null){
+                    // the upload has expired, start over
+                    uploadId = null;
+                    offset = 0;
+                    putSession(key, null);
+                }
+                else if(isRetriable(e)){
+                    pause(retries);
+                }
+                else throw e;
+            }
+            catch (DropboxIOException e){
+                if(++retries > MAX_CHUNK_RETRIES) throw e;
+                pause(retries);
+            }
+        }
+
+        DropboxAPI.Entry entry = commit(Path.clean(path), uploadId, overwrite);
+        putSession(key, null);
+        tracker.done();
+        return entry;
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Sends one chunk. The request is built here because the SDK's ChunkedUploadRequest
+     * isn't accessible and {@link DropboxAPI.ChunkedUploader} can't resume a stored upload id
+     */
+    private DropboxAPI.ChunkedUploadResponse sendChunk(File file, final String uploadId, final long offset, final long count) throws DropboxException, IOException {
+        InputStream input = null;
+        try {
+            input = dropbox.getApiFactory().createInputStream(file);
+            skipFully(input, offset);
+
+            final InputStream source = throttle(interruptible(input), dropbox.getBandwidthLimiter());
+            return dropbox.execute(new Dropbox.Call<DropboxAPI.ChunkedUploadResponse>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public DropboxAPI.ChunkedUploadResponse call() throws DropboxException {
+                    Session session = dropbox.getDropboxApi().getSession();
+                    String[] params = uploadId == null ?
+                            new String[]{ "offset", String.valueOf(offset) } :
+                            new String[]{ "upload_id", uploadId, "offset", String.valueOf(offset) };
+
+                    HttpPut request = new HttpPut(RESTUtility.buildURL(session.getContentServer(), DropboxAPI.VERSION, "/chunked_upload", params));
+                    session.sign(request);
+                    InputStreamEntity entity = new InputStreamEntity(source, count);
+                    entity.setChunked(false);
+                    request.setEntity(entity);
+
+                    HttpResponse response = RESTUtility.execute(session, request);
+                    return new DropboxAPI.ChunkedUploadResponse((Map<String, Object>) RESTUtility.parseAsJSON(response));
+                }
+            });
+        }
+        finally {
+            safeClose(input);
+        }
+    }
+
+    /**
+     * {@link DropboxAPI.ChunkedUploader#finish(String, String)} only works with the
+     * upload id of its own uploader, so the commit is sent directly
+     */
+    private DropboxAPI.Entry commit(final String path, final String uploadId, final boolean overwrite) throws DropboxException {
+        return dropbox.execute(new Dropbox.Call<DropboxAPI.Entry>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public DropboxAPI.Entry call() throws DropboxException {
+                Session session = dropbox.getDropboxApi().getSession();
+                String[] params = {
+                        "overwrite", String.valueOf(overwrite),
+                        "upload_id", uploadId
+                };
+                Object response = RESTUtility.request(RESTUtility.RequestMethod.POST, session.getContentServer(),
+                        "/commit_chunked_upload/" + session.getAccessType() + path, DropboxAPI.VERSION, params, session);
+                return new DropboxAPI.Entry((Map<String, Object>) response);
+            }
+        });
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////
+
+    private String getSession(String key){
+        MetadataStore store = dropbox.getMetadataStore();
+        if(store != null) return store.getToken(dropbox.getName(), key);
+        return sessions.get(key);
+    }
+
+    private void putSession(String key, String value){
+        MetadataStore store = dropbox.getMetadataStore();
+        if(store != null) store.putToken(dropbox.getName(), key, value);
+        else if(value != null) sessions.put(key, value);
+        else sessions.remove(key);
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * The upload is only resumed for the same target and the same (unmodified) local file
+     */
+    static String getSessionKey(String path, File file){
+        return UPLOAD_TOKEN + path + " " + file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+    }
+
+    /**
+     * Returns the offset Dropbox expects when a chunk was sent
+     * with the wrong offset. Otherwise returns null
+     */
+    static Long getExpectedOffset(DropboxServerException e){
+        if(e.error != DropboxServerException._400_BAD_REQUEST || e.parsedResponse == null) return null;
+
+        Object offset = e.parsedResponse.get("offset");
+        if(offset instanceof Number) return ((Number) offset).longValue();
+        return null;
+    }
+
+    static boolean isRetriable(DropboxServerException e){
+        return e.error >= DropboxServerException._500_INTERNAL_SERVER_ERROR || Dropbox.isThrottled(e);
+    }
+
+    private static void skipFully(InputStream input, long count) throws IOException {
+        while(count > 0){
+            long skipped = input.skip(count);
+            if(skipped <= 0) throw new IOException("Unexpected end of file");
+            count -= skipped;
+        }
+    }
+
+    private static void pause(int retries) throws InterruptedIOException {
+        try {
+            Thread.sleep(RETRY_DELAY << (retries - 1));
+        }
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Upload has been cancelled");
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.bingzer.android.driven.dropbox;
 
 import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
 import android.util.Log;
 
 import com.bingzer.android.driven.AbsPermission;
@@ -12,36 +14,70 @@ import com.bingzer.android.driven.AbsTrashed;
 import com.bingzer.android.driven.Credential;
 import com.bingzer.android.driven.DefaultUserInfo;
 import com.bingzer.android.driven.DrivenException;
+import com.bingzer.android.driven.ListingCache;
+import com.bingzer.android.driven.MetadataStore;
 import com.bingzer.android.driven.LocalFile;
 import com.bingzer.android.driven.Permission;
 import com.bingzer.android.driven.RemoteFile;
 import com.bingzer.android.driven.Result;
 import com.bingzer.android.driven.UserInfo;
 import com.bingzer.android.driven.UserRole;
+import com.bingzer.android.driven.contracts.Delegate;
 import com.bingzer.android.driven.contracts.Search;
 import com.bingzer.android.driven.contracts.SharedWithMe;
 import com.bingzer.android.driven.contracts.Sharing;
 import com.bingzer.android.driven.contracts.Trashed;
+import com.bingzer.android.driven.utils.ChecksumCache;
+import com.bingzer.android.driven.utils.ConcurrencyLimiter;
+import com.bingzer.android.driven.utils.PartialFile;
+import com.bingzer.android.driven.utils.ProgressTracker;
 import com.bingzer.android.driven.utils.Path;
 import com.dropbox.client2.DropboxAPI;
+import com.dropbox.client2.ProgressListener;
+import com.dropbox.client2.RESTUtility;
 import com.dropbox.client2.android.AndroidAuthSession;
 import com.dropbox.client2.exception.DropboxException;
+import com.dropbox.client2.exception.DropboxIOException;
+import com.dropbox.client2.exception.DropboxServerException;
 import com.dropbox.client2.session.AppKeyPair;
+import com.dropbox.client2.session.Session;
 
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 
+import static com.bingzer.android.driven.utils.IOUtils.interruptible;
 import static com.bingzer.android.driven.utils.IOUtils.safeClose;
+import static com.bingzer.android.driven.utils.IOUtils.throttle;
 
 public class Dropbox extends AbsStorageProvider {
     @Inject DropboxApiFactory apiFactory;
     private static DropboxAPI<AndroidAuthSession> dropboxApi;
     private static UserInfo userInfo;
+    // files bigger than this are uploaded in chunks
+    public static final long DEFAULT_CHUNKED_UPLOAD_THRESHOLD = 8 * 1024 * 1024;
+    public static final int DEFAULT_UPLOAD_CHUNK_SIZE         = 4 * 1024 * 1024;
+    public static final int DEFAULT_MOBILE_UPLOAD_CHUNK_SIZE  = 1024 * 1024;
+
+    private volatile long chunkedUploadThreshold = DEFAULT_CHUNKED_UPLOAD_THRESHOLD;
+    private volatile int uploadChunkSize = DEFAULT_UPLOAD_CHUNK_SIZE;
+    private final Map<Integer, Integer> networkChunkSizes = new ConcurrentHashMap<Integer, Integer>();
+    // "rev md5" of the last upload of each path when there's no MetadataStore
+    private static final Map<String, String> checksums = new ConcurrentHashMap<String, String>();
+    private static final String CHECKSUM_TOKEN = "checksum:";
+    private static final int STATUS_RANGE_NOT_SATISFIABLE = 416;
+    private volatile Context context;
 
     ////////////////////////////////////////////////////////////////////////////////////////////
 
@@ -59,6 +95,53 @@ public class Dropbox extends AbsStorageProvider {
         return apiFactory;
     }
 
+    /**
+     * Returns the size (in bytes) above which files are uploaded in chunks
+     */
+    public long getChunkedUploadThreshold() {
+        return chunkedUploadThreshold;
+    }
+
+    /**
+     * Sets the size (in bytes) above which files are uploaded in chunks
+     */
+    public void setChunkedUploadThreshold(long chunkedUploadThreshold) {
+        if(chunkedUploadThreshold < 0) throw new IllegalArgumentException("chunkedUploadThreshold cannot be negative");
+        this.chunkedUploadThreshold = chunkedUploadThreshold;
+    }
+
+    /**
+     * Returns the size (in bytes) of each chunk for the active network
+     */
+    public int getUploadChunkSize() {
+        Integer chunkSize = null;
+        int networkType = getActiveNetworkType();
+        if(networkType >= 0) chunkSize = networkChunkSizes.get(networkType);
+        if(chunkSize != null) return chunkSize;
+
+        // smaller chunks lose less when a mobile connection drops
+        if(networkType == ConnectivityManager.TYPE_MOBILE) return DEFAULT_MOBILE_UPLOAD_CHUNK_SIZE;
+        return uploadChunkSize;
+    }
+
+    /**
+     * Sets the size (in bytes) of each chunk.
+     * Used when there's no specific chunk size for the active network
+     */
+    public void setUploadChunkSize(int uploadChunkSize) {
+        if(uploadChunkSize <= 0) throw new IllegalArgumentException("uploadChunkSize must be positive");
+        this.uploadChunkSize = uploadChunkSize;
+    }
+
+    /**
+     * Sets the size (in bytes) of each chunk when the active network
+     * is {@code networkType} (i.e: {@link ConnectivityManager#TYPE_WIFI})
+     */
+    public void setUploadChunkSize(int networkType, int uploadChunkSize) {
+        if(uploadChunkSize <= 0) throw new IllegalArgumentException("uploadChunkSize must be positive");
+        networkChunkSizes.put(networkType, uploadChunkSize);
+    }
+
     @Override
     public UserInfo getUserInfo() {
         if(!isAuthenticated()) throw new DrivenException("Driven API is not yet authenticated. Call authenticate() first");
@@ -121,6 +204,7 @@ public class Dropbox extends AbsStorageProvider {
         Result<DrivenException> result = new Result<DrivenException>(false);
         try {
             if(credential == null) throw new DrivenException(new IllegalArgumentException("credential cannot be null"));
+            if(credential.getContext() != null) context = credential.getContext().getApplicationContext();
 
             if(credential.hasSavedCredential(getName())){
                 credential.read(getName());
@@ -170,9 +254,16 @@ public class Dropbox extends AbsStorageProvider {
     }
 
     @Override
-    public boolean delete(String id) {
+    public boolean delete(final String id) {
+        invalidate(Path.clean(id));
         try {
-            getDropboxApi().delete(Path.clean(id));
+            execute(new Call<Void>() {
+                @Override
+                public Void call() throws DropboxException {
+                    getDropboxApi().delete(Path.clean(id));
+                    return null;
+                }
+            });
             return true;
         }
         catch (DropboxException e) {
@@ -186,21 +277,117 @@ public class Dropbox extends AbsStorageProvider {
     }
 
     @Override
-    public boolean download(RemoteFile remoteFile, LocalFile local) {
+    public boolean download(final RemoteFile remoteFile, LocalFile local) {
+        local.setModified(true);
+        final String rev = getContentRevision(remoteFile);
+        if(rev != null && rev.equals(local.getRevision()) && local.getFile().exists()){
+            local.setModified(false);
+            return true;
+        }
+        if(downloadFromCache(remoteFile, local)) {
+            local.setRevision(rev);
+            return true;
+        }
+
+        DropboxAPI.DropboxInputStream input = null;
         OutputStream output = null;
+        PartialFile partialFile = null;
         try {
-            output = getApiFactory().createOutputStream(local.getFile());
-            DropboxAPI.DropboxFileInfo fileInfo = getDropboxApi().getFile(Path.clean(remoteFile), null, output, null);
-            return fileInfo != null;
+            // continue where the last attempt left off (if it was the same revision)
+            partialFile = new PartialFile(local.getFile(), rev);
+            final long offset = partialFile.length();
+            final String path = Path.clean(remoteFile);
+            long fileSize = ((DropboxFile) remoteFile).getModel().bytes;
+            if(offset > 0 && offset == fileSize){
+                // everything was downloaded last time but never moved in place
+                partialFile.commit();
+                local.setRevision(rev);
+                putToCache(remoteFile, rev, local);
+                return true;
+            }
+
+            boolean append = false;
+            if(offset > 0){
+                final HttpGet request = createRangedRequest(path, rev, offset);
+                HttpResponse response = execute(new Call<HttpResponse>() {
+                    @Override
+                    public HttpResponse call() throws DropboxException {
+                        return getApiFactory().execute(getDropboxApi().getSession(), request);
+                    }
+                });
+                // the server may ignore the range and send everything
+                append = response.getStatusLine().getStatusCode() == DropboxServerException._206_PARTIAL_CONTENT;
+                input = new DropboxAPI.DropboxInputStream(request, response);
+            }
+            else {
+                input = execute(new Call<DropboxAPI.DropboxInputStream>() {
+                    @Override
+                    public DropboxAPI.DropboxInputStream call() throws DropboxException {
+                        return getDropboxApi().getFileStream(path, rev);
+                    }
+                });
+            }
+
+            ProgressTracker tracker = new ProgressTracker(local.getTransferListener(), fileSize > 0 ? fileSize : -1);
+            output = throttle(interruptible(partialFile.openOutput(append)), getBandwidthLimiter());
+            input.copyStreamToOutput(output, toProgressListener(tracker, append ? offset : 0));
+            safeClose(output);
+            tracker.done();
+            partialFile.commit();
+
+            // key it by the revision we actually got
+            DropboxAPI.DropboxFileInfo fileInfo = input.getFileInfo();
+            local.setRevision(fileInfo != null && fileInfo.getMetadata() != null ? fileInfo.getMetadata().rev : rev);
+            putToCache(remoteFile, local.getRevision(), local);
+            return true;
+        }
+        catch (DropboxServerException e) {
+            if(e.error == STATUS_RANGE_NOT_SATISFIABLE && partialFile != null && partialFile.length() > 0){
+                // the partial file doesn't match the content after all, start over
+                partialFile.discard();
+                return download(remoteFile, local);
+            }
+            return false;
         }
         catch (Exception e) {
             return false;
         }
         finally {
+            safeClose(input);
             safeClose(output);
         }
     }
 
+    @Override
+    public InputStream open(RemoteFile remoteFile) {
+        final String path = Path.clean(remoteFile);
+        try {
+            return throttle(execute(new Call<DropboxAPI.DropboxInputStream>() {
+                @Override
+                public DropboxAPI.DropboxInputStream call() throws DropboxException {
+                    return getDropboxApi().getFileStream(path, null);
+                }
+            }), getBandwidthLimiter());
+        }
+        catch (DropboxException e){
+            return null;
+        }
+    }
+
+    /**
+     * The SDK has no ranged version of getFileStream(), so the request is built here
+     */
+    private HttpGet createRangedRequest(String path, String rev, long offset){
+        Session session = getDropboxApi().getSession();
+        String url = RESTUtility.buildURL(session.getContentServer(), DropboxAPI.VERSION,
+                "/files/" + session.getAccessType() + path, new String[]{ "rev", rev });
+
+        HttpGet request = new HttpGet(url);
+        session.sign(request);
+        request.addHeader("Range", "bytes=" + offset + "-");
+        return request;
+    }
+
     @Override
     public boolean exists(String name) {
         return get(name) != null;
@@ -226,15 +413,35 @@ public class Dropbox extends AbsStorageProvider {
     }
 
     @Override
-    public RemoteFile get(RemoteFile parent, String name) {
-        try {
-            DropboxAPI.Entry entry = getDropboxApi().metadata(Path.combine(parent, name), 1, null, false, null);
-            if(entry != null) return new DropboxFile(this, entry);
-            return null;
-        }
-        catch (DropboxException e) {
-            return null;
-        }
+    public RemoteFile get(final RemoteFile parent, final String name) {
+        final String path = Path.combine(parent, name);
+        RemoteFile cached = getCached(path);
+        if(cached != null) return cached;
+        if(isCachedMissing(Path.getDirectory(path), Path.getFilename(path))) return null;
+
+        return coalesce("get:" + path, new Delegate<RemoteFile>() {
+            @Override
+            public RemoteFile invoke() {
+                try {
+                    DropboxAPI.Entry entry = execute(new Call<DropboxAPI.Entry>() {
+                        @Override
+                        public DropboxAPI.Entry call() throws DropboxException {
+                            return getDropboxApi().metadata(path, 1, null, false, null);
+                        }
+                    });
+                    if(entry != null) return cache(null, new DropboxFile(Dropbox.this, entry));
+                    return null;
+                }
+                catch (DropboxServerException e) {
+                    if(e.error == DropboxServerException._404_NOT_FOUND)
+                        cacheMissing(Path.getDirectory(path), Path.getFilename(path));
+                    return null;
+                }
+                catch (DropboxException e) {
+                    return null;
+                }
+            }
+        });
     }
 
     @Override
@@ -243,51 +450,35 @@ public class Dropbox extends AbsStorageProvider {
     }
 
     @Override
-    public List<RemoteFile> list() {
-        try {
-            DropboxAPI.Entry entry = getDropboxApi().metadata(Path.ROOT, 0, null, true, null);
-
-            List<RemoteFile> list = new ArrayList<RemoteFile>();
-            if(entry != null && entry.contents != null){
-                for(DropboxAPI.Entry children : entry.contents){
-                    list.add(new DropboxFile(this, children));
-                }
-            }
+    public RemoteFile getByPath(String path) {
+        // paths are ids
+        return id(Path.clean(path));
+    }
 
-            return list;
-        }
-        catch (DropboxException e) {
-            return null;
-        }
+    @Override
+    public List<RemoteFile> list() {
+        return list(getFolderKey(null));
     }
 
     @Override
-    public List<RemoteFile> list(RemoteFile parent) {
+    public List<RemoteFile> list(final RemoteFile parent) {
         if(parent == null) return list();
 
-        try {
-            DropboxAPI.Entry entry = getDropboxApi().metadata(Path.clean(parent), 0, null, true, null);
-
-            List<RemoteFile> list = new ArrayList<RemoteFile>();
-            if(entry != null && entry.contents != null){
-                for(DropboxAPI.Entry children : entry.contents){
-                    list.add(new DropboxFile(this, children));
-                }
-            }
-            return list;
-        }
-        catch (DropboxException e) {
-            return null;
-        }
+        return list(getFolderKey(parent));
     }
 
     @Override
-    public RemoteFile create(String name) {
+    public RemoteFile create(final String name) {
         try {
             if(name == null) throw new NullPointerException("name");
-            getDropboxApi().createFolder(Path.clean(name));
+            DropboxAPI.Entry entry = execute(new Call<DropboxAPI.Entry>() {
+                @Override
+                public DropboxAPI.Entry call() throws DropboxException {
+                    return getDropboxApi().createFolder(Path.clean(name));
+                }
+            });
 
-            return get(name);
+            return cache(Path.getDirectory(entry.path), new DropboxFile(this, entry));
         }
         catch (Exception e){
             return null;
@@ -295,15 +486,24 @@ public class Dropbox extends AbsStorageProvider {
     }
 
     @Override
-    public RemoteFile create(LocalFile local) {
+    public RemoteFile create(final LocalFile local) {
         try {
             if(local.getName() == null) throw new NullPointerException("LocalFile.getName()");
-
-            InputStream input = getApiFactory().createInputStream(local.getFile());
-            getDropboxApi().putFile(Path.clean(local.getName()), input, local.getFile().length(), null, null);
+            if(isChunked(local)) return uploadChunked(Path.clean(local.getName()), local);
+
+            final InputStream input = throttle(interruptible(getApiFactory().createInputStream(local.getFile())), getBandwidthLimiter());
+            final ProgressTracker tracker = new ProgressTracker(local.getTransferListener(), local.getFile().length());
+            DropboxAPI.Entry entry = execute(new Call<DropboxAPI.Entry>() {
+                @Override
+                public DropboxAPI.Entry call() throws DropboxException {
+                    return getDropboxApi().putFile(Path.clean(local.getName()), input, local.getFile().length(), null, toProgressListener(tracker, 0));
+                }
+            });
             safeClose(input);
+            tracker.done();
+            putChecksum(entry, local);
 
-            return get(local.getName());
+            return cache(Path.getDirectory(entry.path), new DropboxFile(this, entry));
         }
         catch (Exception e){
             return null;
@@ -316,15 +516,24 @@ public class Dropbox extends AbsStorageProvider {
     }
 
     @Override
-    public RemoteFile create(RemoteFile parent, LocalFile local) {
+    public RemoteFile create(final RemoteFile parent, final LocalFile local) {
         try {
             if(local.getName() == null) throw new NullPointerException("LocalFile.getName()");
-
-            InputStream input = getApiFactory().createInputStream(local.getFile());
-            getDropboxApi().putFile(Path.combine(parent, local.getName()), input, local.getFile().length(), null, null);
+            if(isChunked(local)) return uploadChunked(Path.combine(parent, local.getName()), local);
+
+            final InputStream input = throttle(interruptible(getApiFactory().createInputStream(local.getFile())), getBandwidthLimiter());
+            final ProgressTracker tracker = new ProgressTracker(local.getTransferListener(), local.getFile().length());
+            DropboxAPI.Entry entry = execute(new Call<DropboxAPI.Entry>() {
+                @Override
+                public DropboxAPI.Entry call() throws DropboxException {
+                    return getDropboxApi().putFile(Path.combine(parent, local.getName()), input, local.getFile().length(), null, toProgressListener(tracker, 0));
+                }
+            });
             safeClose(input);
+            tracker.done();
+            putChecksum(entry, local);
 
-            return get(parent, local.getName());
+            return cache(Path.getDirectory(entry.path), new DropboxFile(this, entry));
         }
         catch (Exception e){
             return null;
@@ -332,28 +541,298 @@ public class Dropbox extends AbsStorageProvider {
     }
 
     @Override
-    public RemoteFile update(RemoteFile remoteFile, LocalFile content) {
+    public RemoteFile create(RemoteFile parent, String name, String type, InputStream content, final long length) {
+        try {
+            final String path = Path.combine(parent, name);
+            final InputStream input = throttle(interruptible(content), getBandwidthLimiter());
+            DropboxAPI.Entry entry;
+            if(length >= 0 && length <= chunkedUploadThreshold){
+                entry = execute(new Call<DropboxAPI.Entry>() {
+                    @Override
+                    public DropboxAPI.Entry call() throws DropboxException {
+                        return getDropboxApi().putFile(path, input, length, null, null);
+                    }
+                });
+            }
+            else {
+                // the SDK's uploader reads the stream until it ends when the length is unknown
+                final DropboxAPI<AndroidAuthSession>.ChunkedUploader uploader = getDropboxApi().getChunkedUploader(input, length, getUploadChunkSize());
+                entry = execute(new Call<DropboxAPI.Entry>() {
+                    @Override
+                    public DropboxAPI.Entry call() throws DropboxException {
+                        try {
+                            uploader.upload();
+                        }
+                        catch (IOException e){
+                            throw new DropboxIOException(e);
+                        }
+                        return uploader.finish(path, null);
+                    }
+                });
+            }
+
+            return cache(Path.getDirectory(entry.path), new DropboxFile(this, entry));
+        }
+        catch (Exception e){
+            return null;
+        }
+    }
+
+    @Override
+    public RemoteFile update(final RemoteFile remoteFile, final LocalFile content) {
+        invalidate(remoteFile.getId());
         InputStream input = null;
         try{
-            input = getApiFactory().createInputStream(content.getFile());
-            getDropboxApi().putFileOverwrite(Path.clean(remoteFile), input, content.getFile().length(), null);
-            return remoteFile;
+            if(isUnchanged(remoteFile, content)) return remoteFile;
+
+            if(isChunked(content)) {
+                DropboxAPI.Entry entry = new ChunkedUpload(this, getUploadChunkSize()).upload(Path.clean(remoteFile), content, true);
+                putChecksum(entry, content);
+                // the new rev and size, so the next update() can be skipped
+                return cache(Path.getDirectory(entry.path), new DropboxFile(this, entry));
+            }
+
+            input = throttle(interruptible(getApiFactory().createInputStream(content.getFile())), getBandwidthLimiter());
+            final InputStream source = input;
+            final ProgressTracker tracker = new ProgressTracker(content.getTransferListener(), content.getFile().length());
+            DropboxAPI.Entry entry = execute(new Call<DropboxAPI.Entry>() {
+                @Override
+                public DropboxAPI.Entry call() throws DropboxException {
+                    return getDropboxApi().putFileOverwrite(Path.clean(remoteFile), source, content.getFile().length(), toProgressListener(tracker, 0));
+                }
+            });
+            tracker.done();
+            putChecksum(entry, content);
+            return cache(Path.getDirectory(entry.path), new DropboxFile(this, entry));
         }
         catch (Exception e){
+            return null;
+        }
+        finally {
             safeClose(input);
         }
+    }
+
+    //////////////////////////////////////////////////////////////////////////////////////////////
 
-        return null;
+    @Override
+    protected String getContentRevision(RemoteFile remoteFile) {
+        return ((DropboxFile) remoteFile).getModel().rev;
+    }
+
+    @Override
+    protected String getFolderKey(RemoteFile folder) {
+        return folder != null ? Path.clean(folder) : Path.ROOT;
+    }
+
+    @Override
+    protected MetadataStore.Record toRecord(RemoteFile remoteFile) {
+        MetadataStore.Record record = super.toRecord(remoteFile);
+        DropboxAPI.Entry entry = ((DropboxFile) remoteFile).getModel();
+        record.size = entry.bytes;
+        record.revision = entry.rev;
+        record.modified = entry.modified;
+        return record;
+    }
+
+    @Override
+    protected RemoteFile fromRecord(MetadataStore.Record record) {
+        DropboxAPI.Entry entry = new DropboxAPI.Entry();
+        entry.path = record.id;
+        entry.isDir = record.directory;
+        entry.mimeType = record.type;
+        entry.bytes = Math.max(0, record.size);
+        entry.rev = record.revision;
+        entry.modified = record.modified;
+        return new DropboxFile(this, entry);
+    }
+
+    private List<RemoteFile> list(final String path) {
+        return coalesceList("list:" + path, new Delegate<List<RemoteFile>>() {
+            @Override
+            public List<RemoteFile> invoke() {
+                final ListingCache.Listing listing = isListingCached() ? getListing(path) : null;
+                try {
+                    DropboxAPI.Entry entry = execute(new Call<DropboxAPI.Entry>() {
+                        @Override
+                        public DropboxAPI.Entry call() throws DropboxException {
+                            // Dropbox returns 304 if the folder hash hasn't changed
+                            String hash = listing != null ? listing.getValidator() : null;
+                            return getDropboxApi().metadata(path, 0, hash, true, null);
+                        }
+                    });
+
+                    List<RemoteFile> list = new ArrayList<RemoteFile>();
+                    if(entry != null && entry.contents != null){
+                        for(DropboxAPI.Entry children : entry.contents){
+                            list.add(new DropboxFile(Dropbox.this, children));
+                        }
+                    }
+                    if(entry != null && isListingCached())
+                        putListing(path, list, entry.hash);
+                    return list;
+                }
+                catch (DropboxServerException e) {
+                    if(listing != null && e.error == DropboxServerException._304_NOT_MODIFIED)
+                        return listing.getFiles();
+                    return null;
+                }
+                catch (DropboxException e) {
+                    return null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Called once {@code remoteFile} has been moved from {@code oldPath}
+     */
+    void onMoved(String oldPath, DropboxFile remoteFile){
+        invalidate(oldPath);
+        // clears the misses of the new path
+        cache(Path.getDirectory(remoteFile.getId()), remoteFile);
+    }
+
+    private boolean isChunked(LocalFile local){
+        return local.getFile().length() > chunkedUploadThreshold;
+    }
+
+    private RemoteFile uploadChunked(String path, LocalFile local) throws Exception {
+        DropboxAPI.Entry entry = new ChunkedUpload(this, getUploadChunkSize()).upload(path, local, false);
+        putChecksum(entry, local);
+        return cache(Path.getDirectory(entry.path), new DropboxFile(this, entry));
+    }
+
+    /**
+     * Dropbox has no content hash, so we compare against the MD5 of the
+     * last content we uploaded to the same path, as long as its rev hasn't changed since
+     */
+    private boolean isUnchanged(RemoteFile remoteFile, LocalFile local) throws IOException {
+        DropboxAPI.Entry entry = ((DropboxFile) remoteFile).getModel();
+        if(entry.rev == null || entry.path == null || entry.bytes != local.getFile().length()) return false;
+
+        String checksum = getChecksum(entry.path);
+        if(checksum == null || !checksum.startsWith(entry.rev + " ")) return false;
+
+        return checksum.substring(entry.rev.length() + 1).equals(ChecksumCache.getDefault().getMd5(local.getFile()));
+    }
+
+    /**
+     * Remembers the MD5 of {@code local}, just uploaded as {@code entry}
+     */
+    private void putChecksum(DropboxAPI.Entry entry, LocalFile local){
+        if(entry == null || entry.rev == null || entry.path == null) return;
+        try {
+            String key = CHECKSUM_TOKEN + entry.path.toLowerCase(Locale.US);
+            String value = entry.rev + " " + ChecksumCache.getDefault().getMd5(local.getFile());
+            MetadataStore store = getMetadataStore();
+            if(store != null) store.putToken(getName(), key, value);
+            else checksums.put(key, value);
+        }
+        catch (IOException e){
+            // we'll upload it again next time
+        }
+    }
+
+    private String getChecksum(String path){
+        String key = CHECKSUM_TOKEN + path.toLowerCase(Locale.US);
+        MetadataStore store = getMetadataStore();
+        if(store != null) return store.getToken(getName(), key);
+        return checksums.get(key);
+    }
+
+    /**
+     * Executes {@code call} through the {@link ConcurrencyLimiter}
+     */
+    <T> T execute(Call<T> call) throws DropboxException {
+        ConcurrencyLimiter limiter = getConcurrencyLimiter();
+        try {
+            limiter.acquire();
+        }
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new DropboxException("Interrupted while waiting for the ConcurrencyLimiter");
+        }
+
+        boolean throttled = false;
+        try {
+            return call.call();
+        }
+        catch (DropboxServerException e){
+            throttled = isThrottled(e);
+            throw e;
+        }
+        finally {
+            limiter.release(throttled);
+        }
+    }
+
+    /**
+     * Returns the type of the active network or -1 if unknown
+     */
+    private int getActiveNetworkType(){
+        Context context = this.context;
+        if(context == null) return -1;
+        try {
+            ConnectivityManager manager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+            NetworkInfo info = manager != null ? manager.getActiveNetworkInfo() : null;
+            return info != null ? info.getType() : -1;
+        }
+        catch (SecurityException e){
+            // no ACCESS_NETWORK_STATE permission
+            return -1;
+        }
+    }
+
+    /**
+     * Reports the SDK's progress to {@code tracker}.
+     * {@code offset} is added to the bytes reported (i.e: a resumed download)
+     */
+    static ProgressListener toProgressListener(final ProgressTracker tracker, final long offset){
+        return new ProgressListener() {
+            @Override
+            public void onProgress(long bytes, long total) {
+                tracker.set(offset + bytes);
+            }
+
+            @Override
+            public long progressInterval() {
+                return tracker.getInterval();
+            }
+        };
+    }
+
+    /**
+     * True if Dropbox rejected the request because we're calling it too often
+     */
+    static boolean isThrottled(DropboxServerException e){
+        return e.error == 429 || e.error == DropboxServerException._503_SERVICE_UNAVAILABLE;
+    }
+
+    /**
+     * A single call to {@link DropboxAPI}
+     */
+    interface Call<T> {
+        T call() throws DropboxException;
     }
 
     //////////////////////////////////////////////////////////////////////////////////////////////
 
     class SearchImpl extends AbsSearch {
 
+        SearchImpl(){
+            super(Dropbox.this);
+        }
+
         @Override
-        public RemoteFile first(String query) {
+        public RemoteFile first(final String query) {
             try {
-                List<DropboxAPI.Entry> entryList = getDropboxApi().search(Path.ROOT, query, 1, true);
+                List<DropboxAPI.Entry> entryList = execute(new Call<List<DropboxAPI.Entry>>() {
+                    @Override
+                    public List<DropboxAPI.Entry> call() throws DropboxException {
+                        return getDropboxApi().search(Path.ROOT, query, 1, true);
+                    }
+                });
                 return new DropboxFile(Dropbox.this, entryList.get(0));
             }
             catch (Exception e){
@@ -362,10 +841,15 @@ public class Dropbox extends AbsStorageProvider {
         }
 
         @Override
-        public List<RemoteFile> query(String query) {
+        public List<RemoteFile> query(final String query) {
             try {
                 List<RemoteFile> list = new ArrayList<RemoteFile>();
-                List<DropboxAPI.Entry> entryList = getDropboxApi().search(Path.ROOT, query, 0, true);
+                List<DropboxAPI.Entry> entryList = execute(new Call<List<DropboxAPI.Entry>>() {
+                    @Override
+                    public List<DropboxAPI.Entry> call() throws DropboxException {
+                        return getDropboxApi().search(Path.ROOT, query, 0, true);
+                    }
+                });
                 for(DropboxAPI.Entry entry : entryList){
                     list.add(new DropboxFile(Dropbox.this, entry));
                 }
@@ -387,6 +871,10 @@ public class Dropbox extends AbsStorageProvider {
 
     class SharedWithMeImpl extends AbsSharedWithMe {
 
+        SharedWithMeImpl(){
+            super(Dropbox.this);
+        }
+
         @Override
         public boolean isSupported() {
             return false;
@@ -411,6 +899,10 @@ public class Dropbox extends AbsStorageProvider {
 
     class TrashedImpl extends AbsTrashed {
 
+        TrashedImpl(){
+            super(Dropbox.this);
+        }
+
         @Override
         public boolean isSupported() {
             return false;
@@ -435,6 +927,10 @@ public class Dropbox extends AbsStorageProvider {
 
     class SharingImpl extends AbsSharing {
 
+        SharingImpl(){
+            super(Dropbox.this);
+        }
+
         @Override
         public boolean isSupported() {
             return false;
@@ -446,9 +942,14 @@ public class Dropbox extends AbsStorageProvider {
         }
 
         @Override
-        public String share(RemoteFile remoteFile, String user, int kind) {
+        public String share(final RemoteFile remoteFile, String user, int kind) {
             try {
-                DropboxAPI.DropboxLink link = getDropboxApi().share(remoteFile.getId());
+                DropboxAPI.DropboxLink link = execute(new Call<DropboxAPI.DropboxLink>() {
+                    @Override
+                    public DropboxAPI.DropboxLink call() throws DropboxException {
+                        return getDropboxApi().share(remoteFile.getId());
+                    }
+                });
                 return link.url;
             }
             catch (Exception e) {
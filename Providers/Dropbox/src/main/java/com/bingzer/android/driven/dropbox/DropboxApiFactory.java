@@ -1,8 +1,13 @@
 package com.bingzer.android.driven.dropbox;
 
 import com.dropbox.client2.DropboxAPI;
+import com.dropbox.client2.RESTUtility;
+import com.dropbox.client2.exception.DropboxException;
 import com.dropbox.client2.session.Session;
 
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
@@ -20,6 +25,8 @@ interface DropboxApiFactory {
 
     InputStream createInputStream(File file) throws IOException;
 
+    HttpResponse execute(Session session, HttpUriRequest request) throws DropboxException;
+
     static class Default implements DropboxApiFactory {
 
         @Override
@@ -36,5 +43,10 @@ interface DropboxApiFactory {
         public InputStream createInputStream(File file) throws IOException{
             return new BufferedInputStream(new FileInputStream(file));
         }
+
+        @Override
+        public HttpResponse execute(Session session, HttpUriRequest request) throws DropboxException {
+            return RESTUtility.execute(session, request);
+        }
     }
 }
@@ -54,6 +54,10 @@ class DropboxFile extends AbsRemoteFile {
         return true;
     }
 
+    public DropboxAPI.Entry getModel(){
+        return model;
+    }
+
     public String getParentDirectory(){
         return Path.getDirectory(id);
     }
@@ -116,9 +120,18 @@ class DropboxFile extends AbsRemoteFile {
     @Override
     public boolean rename(String name) {
         try {
-            String newPath = Path.combine(getParentDirectory(), name);
-            DropboxAPI.Entry entry = ((Dropbox) getStorageProvider()).getDropboxApi().move(id, newPath);
-            return init(entry);
+            final String newPath = Path.combine(getParentDirectory(), name);
+            final Dropbox dropbox = (Dropbox) getStorageProvider();
+            DropboxAPI.Entry entry = dropbox.execute(new Dropbox.Call<DropboxAPI.Entry>() {
+                @Override
+                public DropboxAPI.Entry call() throws DropboxException {
+                    return dropbox.getDropboxApi().move(id, newPath);
+                }
+            });
+            String oldPath = id;
+            init(entry);
+            dropbox.onMoved(oldPath, this);
+            return true;
         }
         catch (DropboxException e){
             return false;
@@ -10,7 +10,11 @@ import com.bingzer.android.driven.RemoteFile;
 import com.bingzer.android.driven.Result;
 import com.bingzer.android.driven.contracts.Task;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 
@@ -475,6 +479,24 @@ public class ExternalDriveTest extends AndroidTestCase {
         signal.await();
     }
 
+    public void test_create_stream() throws Exception {
+        driven.authenticate(credential);
+
+        byte[] content = "stream content".getBytes();
+        RemoteFile remoteFile = driven.create(null, "File004", "text/plain", new ByteArrayInputStream(content), -1);
+        assertNotNull(remoteFile);
+        assertFalse(remoteFile.isDirectory());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertTrue(driven.download(remoteFile, output));
+        assertTrue(Arrays.equals(content, output.toByteArray()));
+
+        InputStream input = driven.open(remoteFile);
+        assertNotNull(input);
+        assertEquals(content[0], input.read());
+        input.close();
+    }
+
     public void test_list() throws Exception {
         driven.authenticate(credential);
 
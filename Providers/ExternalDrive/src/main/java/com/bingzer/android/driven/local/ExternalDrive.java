@@ -39,9 +39,14 @@ import com.bingzer.android.driven.contracts.Sharing;
 import com.bingzer.android.driven.contracts.Trashed;
 import com.bingzer.android.driven.utils.IOUtils;
 import com.bingzer.android.driven.utils.Path;
+import com.bingzer.android.driven.utils.ProgressTracker;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -143,6 +148,11 @@ public final class ExternalDrive extends AbsStorageProvider {
         return get(new ExternalDriveFile(this, getRoot().getAbsolutePath()), name);
     }
 
+    @Override
+    public RemoteFile getByPath(String path) {
+        return get(path);
+    }
+
     @Override
     public RemoteFile id(String id) {
         return new ExternalDriveFile(this, id);
@@ -194,7 +204,7 @@ public final class ExternalDrive extends AbsStorageProvider {
     public RemoteFile create(RemoteFile parent, LocalFile local) {
         File f = new File(Path.combine(parent, local.getName()));
         try {
-            IOUtils.copyFile(local.getFile(), f);
+            IOUtils.copyFile(local.getFile(), f, new ProgressTracker(local.getTransferListener(), local.getFile().length()));
             return new ExternalDriveFile(this, f.getAbsolutePath());
         } catch (IOException e) {
             Log.e(getName(), "Create()", e);
@@ -202,6 +212,25 @@ public final class ExternalDrive extends AbsStorageProvider {
         }
     }
 
+    @Override
+    public RemoteFile create(RemoteFile parent, String name, String type, InputStream content, long length) {
+        if(parent == null) parent = new ExternalDriveFile(this, getRoot().getAbsolutePath());
+        File f = new File(Path.combine(parent, name));
+        OutputStream output = null;
+        try {
+            IOUtils.safeCreateDir(f.getParentFile());
+            output = new FileOutputStream(f);
+            IOUtils.write(content, output, null);
+            return new ExternalDriveFile(this, f.getAbsolutePath());
+        } catch (IOException e) {
+            Log.e(getName(), "create()", e);
+            return null;
+        }
+        finally {
+            IOUtils.safeClose(output);
+        }
+    }
+
     @Override
     public RemoteFile update(RemoteFile remoteFile, LocalFile content) {
         // if name does not equal
@@ -214,7 +243,7 @@ public final class ExternalDrive extends AbsStorageProvider {
 
         // copy content
         try {
-            IOUtils.copyFile(content.getFile(), new File(remoteFile.getId()));
+            IOUtils.copyFile(content.getFile(), new File(remoteFile.getId()), new ProgressTracker(content.getTransferListener(), content.getFile().length()));
             return remoteFile;
         }
         catch (IOException e) {
@@ -236,13 +265,51 @@ public final class ExternalDrive extends AbsStorageProvider {
     @Override
     public boolean download(RemoteFile remoteFile, LocalFile local) {
         File from = new File(remoteFile.getId());
+        String revision = from.lastModified() + ":" + from.length();
+
+        local.setModified(true);
+        if(revision.equals(local.getRevision()) && local.getFile().exists()){
+            local.setModified(false);
+            return true;
+        }
+
+        try {
+            IOUtils.copyFile(from, local.getFile(), new ProgressTracker(local.getTransferListener(), from.length()));
+            local.setRevision(revision);
+            return true;
+        } catch (IOException e) {
+            Log.e(getName(), "download()", e);
+            return false;
+        }
+    }
+
+    /**
+     * The file is transferred straight to {@code output} without a copy buffer
+     */
+    @Override
+    public boolean download(RemoteFile remoteFile, OutputStream output) {
+        FileInputStream input = null;
         try {
-            IOUtils.copyFile(from, local.getFile());
+            input = new FileInputStream(remoteFile.getId());
+            IOUtils.write(input, output, null);
             return true;
         } catch (IOException e) {
             Log.e(getName(), "download()", e);
             return false;
         }
+        finally {
+            IOUtils.safeClose(input);
+        }
+    }
+
+    @Override
+    public InputStream open(RemoteFile remoteFile) {
+        try {
+            return new FileInputStream(remoteFile.getId());
+        } catch (IOException e) {
+            Log.e(getName(), "open()", e);
+            return null;
+        }
     }
 
     @Override
@@ -285,6 +352,10 @@ public final class ExternalDrive extends AbsStorageProvider {
 
     class SharedWithMeImpl extends AbsSharedWithMe {
 
+        SharedWithMeImpl(){
+            super(ExternalDrive.this);
+        }
+
         @Override
         public boolean isSupported() {
             return false;
@@ -308,6 +379,10 @@ public final class ExternalDrive extends AbsStorageProvider {
 
     class SharingImpl extends AbsSharing {
 
+        SharingImpl(){
+            super(ExternalDrive.this);
+        }
+
         @Override
         public boolean isSupported() {
             return false;
@@ -332,6 +407,10 @@ public final class ExternalDrive extends AbsStorageProvider {
 
     class TrashedImpl extends AbsTrashed {
 
+        TrashedImpl(){
+            super(ExternalDrive.this);
+        }
+
         @Override
         public boolean isSupported() {
             return false;
@@ -355,6 +434,10 @@ public final class ExternalDrive extends AbsStorageProvider {
 
     class SearchImpl extends AbsSearch {
 
+        SearchImpl(){
+            super(ExternalDrive.this);
+        }
+
         @Override
         public RemoteFile first(String query) {
             throw new UnsupportedOperationException();
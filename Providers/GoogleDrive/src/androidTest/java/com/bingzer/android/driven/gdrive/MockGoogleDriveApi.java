@@ -3,6 +3,9 @@ package com.bingzer.android.driven.gdrive;
 import com.google.api.client.http.AbstractInputStreamContent;
 import com.google.api.client.http.FileContent;
 import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
 import com.google.api.services.drive.Drive;
 import com.google.api.services.drive.model.About;
 import com.google.api.services.drive.model.File;
@@ -267,8 +270,21 @@ public class MockGoogleDriveApi implements GoogleDriveApi {
         return permissions;
     }
 
+    @Override
+    public Drive.Changes changes() {
+        return mock(Drive.Changes.class, RETURNS_DEEP_STUBS);
+    }
+
+    // answers the requests that don't go through files() (i.e: downloads)
+    HttpTransport transport = new MockHttpTransport();
+
     @Override
     public HttpRequestFactory getRequestFactory() {
+        return transport.createRequestFactory();
+    }
+
+    @Override
+    public JsonFactory getJsonFactory() {
         return null;
     }
 
@@ -0,0 +1,56 @@
+package com.bingzer.android.driven.gdrive;
+
+import android.test.AndroidTestCase;
+
+import com.google.api.client.http.EmptyContent;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+public class ResumableUploadTest extends AndroidTestCase {
+
+    public void test_getNextOffset() throws Exception {
+        assertEquals(0, ResumableUpload.getNextOffset(null));
+        assertEquals(0, ResumableUpload.getNextOffset("bytes=garbage"));
+        assertEquals(524288, ResumableUpload.getNextOffset("bytes=0-524287"));
+    }
+
+    public void test_isRetriable() throws Exception {
+        assertTrue(ResumableUpload.isRetriable(new IOException()));
+        assertFalse(ResumableUpload.isRetriable(new InterruptedIOException()));
+    }
+
+    public void test_execute_throttledChunk() throws Exception {
+        GoogleDrive driven = new GoogleDrive();
+        int limit = driven.getConcurrencyLimiter().getLimit();
+
+        HttpTransport transport = new MockHttpTransport.Builder()
+                .setLowLevelHttpResponse(new MockLowLevelHttpResponse().setStatusCode(503))
+                .build();
+        HttpRequest request = transport.createRequestFactory().buildPutRequest(new GenericUrl(ResumableUpload.UPLOAD_URL), new EmptyContent());
+        // same as the chunk requests
+        request.setThrowExceptionOnExecuteError(false);
+
+        assertEquals(503, driven.execute(request).getStatusCode());
+        assertTrue(driven.getConcurrencyLimiter().getLimit() < limit);
+    }
+
+    public void test_setUploadChunkSize() throws Exception {
+        GoogleDrive driven = new GoogleDrive();
+        driven.setUploadChunkSize(512 * 1024);
+        assertEquals(512 * 1024, driven.getUploadChunkSize());
+
+        try {
+            driven.setUploadChunkSize(1000);
+            fail("Should throw exception");
+        }
+        catch (IllegalArgumentException e){
+            // good
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.bingzer.android.driven.gdrive;
+
+import android.test.AndroidTestCase;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.List;
+
+public class SegmentedDownloadTest extends AndroidTestCase {
+
+    public void test_split() throws Exception {
+        List<long[]> ranges = SegmentedDownload.split(10, 3);
+        assertEquals(3, ranges.size());
+        assertEquals(0, ranges.get(0)[0]);
+        assertEquals(3, ranges.get(0)[1]);
+        assertEquals(4, ranges.get(1)[0]);
+        assertEquals(7, ranges.get(1)[1]);
+        assertEquals(8, ranges.get(2)[0]);
+        assertEquals(9, ranges.get(2)[1]);
+    }
+
+    public void test_split_small() throws Exception {
+        List<long[]> ranges = SegmentedDownload.split(2, 4);
+        assertEquals(2, ranges.size());
+        assertEquals(1, ranges.get(1)[0]);
+        assertEquals(1, ranges.get(1)[1]);
+    }
+
+    public void test_isCancelled() throws Exception {
+        assertTrue(SegmentedDownload.isCancelled(new ClosedByInterruptException()));
+        assertTrue(SegmentedDownload.isCancelled(new InterruptedIOException()));
+        assertFalse(SegmentedDownload.isCancelled(new IOException("Unexpected end of range")));
+    }
+}
@@ -28,31 +28,63 @@ import com.bingzer.android.driven.AbsTrashed;
 import com.bingzer.android.driven.Credential;
 import com.bingzer.android.driven.DefaultUserInfo;
 import com.bingzer.android.driven.DrivenException;
+import com.bingzer.android.driven.ListingCache;
+import com.bingzer.android.driven.MetadataStore;
 import com.bingzer.android.driven.LocalFile;
 import com.bingzer.android.driven.RemoteFile;
 import com.bingzer.android.driven.Result;
 import com.bingzer.android.driven.UserInfo;
 import com.bingzer.android.driven.UserRole;
+import com.bingzer.android.driven.contracts.Delegate;
+import com.bingzer.android.driven.contracts.ExecutorFactory;
 import com.bingzer.android.driven.contracts.Search;
 import com.bingzer.android.driven.contracts.SharedWithMe;
 import com.bingzer.android.driven.contracts.Sharing;
 import com.bingzer.android.driven.contracts.Trashed;
+import com.bingzer.android.driven.utils.ChecksumCache;
+import com.bingzer.android.driven.utils.ConcurrencyLimiter;
+import com.bingzer.android.driven.utils.ExpiringLruCache;
 import com.bingzer.android.driven.utils.IOUtils;
+import com.bingzer.android.driven.utils.PartialFile;
+import com.bingzer.android.driven.utils.ProgressTracker;
+import com.bingzer.android.driven.utils.Path;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.media.MediaHttpUploader;
+import com.google.api.client.googleapis.media.MediaHttpUploaderProgressListener;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.http.AbstractInputStreamContent;
+import com.google.api.client.http.FileContent;
 import com.google.api.client.http.GenericUrl;
 import com.google.api.client.http.HttpRequest;
 import com.google.api.client.http.HttpRequestFactory;
 import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.HttpStatusCodes;
+import com.google.api.client.http.InputStreamContent;
+import com.google.api.client.util.DateTime;
 import com.google.api.services.drive.Drive;
 import com.google.api.services.drive.model.About;
+import com.google.api.services.drive.model.Change;
+import com.google.api.services.drive.model.ChangeList;
 import com.google.api.services.drive.model.FileList;
 import com.google.api.services.drive.model.ParentReference;
 import com.google.api.services.drive.model.Permission;
 import com.google.api.services.drive.model.PermissionList;
 
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
@@ -62,14 +94,35 @@ import javax.inject.Inject;
 @SuppressWarnings("unused")
 public final class GoogleDrive extends AbsStorageProvider {
 
-    private static final String defaultFields      = "id,mimeType,title,downloadUrl";
+    private static final String defaultFields      = "id,mimeType,title,downloadUrl,fileSize,md5Checksum,modifiedDate";
     private static final String defaultFieldsItems = "items(" + defaultFields + ")";
+    private static final String changeFields       = "items(deleted,fileId,file(" + defaultFields + ",labels/trashed,parents(id,isRoot))),largestChangeId,nextPageToken";
+    // alias of the root folder
+    private static final String ROOT               = "root";
+    private static final long PATH_CACHE_TTL        = 10 * 60 * 1000;
+    private static final int PATH_CACHE_MAX_ENTRIES = 256;
+    // cache key for lookups by name anywhere in the drive
+    private static final String ANY_PARENT         = "*";
+    // files bigger than this are uploaded with a resumable upload
+    public static final long DEFAULT_RESUMABLE_UPLOAD_THRESHOLD = 5 * 1024 * 1024;
+    public static final int DEFAULT_UPLOAD_CHUNK_SIZE           = 1024 * 1024;
+    public static final int DEFAULT_DOWNLOAD_SEGMENTS           = 4;
+    // Drive wants the chunk size to be a multiple of 256KB
+    private static final int UPLOAD_CHUNK_GRANULARITY           = 256 * 1024;
 
     /////////////////////////////////////////////////////////////////////////////////////////////
 
     @Inject GoogleDriveApi.Factory googleDriveApiFactory;
     private static GoogleDriveApi googleDriveApi;
     private static UserInfo userInfo;
+    private final ExpiringLruCache<String, RemoteFile> pathCache = new ExpiringLruCache<String, RemoteFile>(PATH_CACHE_TTL, PATH_CACHE_MAX_ENTRIES);
+    private volatile long resumableUploadThreshold = DEFAULT_RESUMABLE_UPLOAD_THRESHOLD;
+    private volatile int uploadChunkSize = DEFAULT_UPLOAD_CHUNK_SIZE;
+    // negative means segmented downloads are disabled
+    private volatile long segmentedDownloadThreshold = -1;
+    private volatile int downloadSegments = DEFAULT_DOWNLOAD_SEGMENTS;
+    // fetches the ranges of segmented downloads, so they don't take up the TRANSFER lane
+    private ThreadPoolExecutor segmentExecutor;
 
     /////////////////////////////////////////////////////////////////////////////////////////////
 
@@ -89,6 +142,92 @@ public final class GoogleDrive extends AbsStorageProvider {
         return googleDriveApi;
     }
 
+    /**
+     * Returns the size (in bytes) above which files are uploaded with a resumable upload
+     */
+    public long getResumableUploadThreshold() {
+        return resumableUploadThreshold;
+    }
+
+    /**
+     * Sets the size (in bytes) above which files are uploaded with a resumable upload
+     */
+    public void setResumableUploadThreshold(long resumableUploadThreshold) {
+        if(resumableUploadThreshold < 0) throw new IllegalArgumentException("resumableUploadThreshold cannot be negative");
+        this.resumableUploadThreshold = resumableUploadThreshold;
+    }
+
+    /**
+     * Returns the size (in bytes) of each chunk sent by a resumable upload
+     */
+    public int getUploadChunkSize() {
+        return uploadChunkSize;
+    }
+
+    /**
+     * Sets the size (in bytes) of each chunk sent by a resumable upload.
+     * Must be a multiple of 256KB
+     */
+    public void setUploadChunkSize(int uploadChunkSize) {
+        if(uploadChunkSize <= 0 || uploadChunkSize % UPLOAD_CHUNK_GRANULARITY != 0)
+            throw new IllegalArgumentException("uploadChunkSize must be a multiple of " + UPLOAD_CHUNK_GRANULARITY);
+        this.uploadChunkSize = uploadChunkSize;
+    }
+
+    /**
+     * Returns the size (in bytes) above which files are downloaded in segments.
+     * Negative if segmented downloads are disabled (the default)
+     */
+    public long getSegmentedDownloadThreshold() {
+        return segmentedDownloadThreshold;
+    }
+
+    /**
+     * Downloads files bigger than {@code segmentedDownloadThreshold} (in bytes)
+     * as several byte ranges at the same time. A negative value disables it
+     *
+     * @see #setDownloadSegments(int)
+     */
+    public void setSegmentedDownloadThreshold(long segmentedDownloadThreshold) {
+        this.segmentedDownloadThreshold = segmentedDownloadThreshold;
+    }
+
+    /**
+     * Returns the number of byte ranges fetched at the same time by a segmented download
+     */
+    public int getDownloadSegments() {
+        return downloadSegments;
+    }
+
+    /**
+     * Sets the number of byte ranges fetched at the same time by a segmented download
+     */
+    public synchronized void setDownloadSegments(int downloadSegments) {
+        if(downloadSegments < 1) throw new IllegalArgumentException("downloadSegments must be at least 1");
+        this.downloadSegments = downloadSegments;
+        if(segmentExecutor != null){
+            // the max pool size can't go below the core pool size
+            if(downloadSegments > segmentExecutor.getMaximumPoolSize()) segmentExecutor.setMaximumPoolSize(downloadSegments);
+            segmentExecutor.setCorePoolSize(downloadSegments);
+            segmentExecutor.setMaximumPoolSize(downloadSegments);
+        }
+    }
+
+    /**
+     * Returns the executor that fetches the byte ranges of segmented downloads.
+     * It runs up to {@link #getDownloadSegments()} ranges at a time
+     */
+    synchronized Executor getSegmentExecutor(){
+        if(segmentExecutor == null){
+            segmentExecutor = new ThreadPoolExecutor(downloadSegments, downloadSegments,
+                    ExecutorFactory.Default.DEFAULT_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<Runnable>(ExecutorFactory.Default.DEFAULT_QUEUE_CAPACITY),
+                    new ExecutorFactory.NamedThreadFactory(getName() + "-segments"));
+            segmentExecutor.allowCoreThreadTimeOut(true);
+        }
+        return segmentExecutor;
+    }
+
     public GoogleDriveApi.Factory getGoogleDriveApiFactory(){
         // if it's not injected.. create the default one
         if(googleDriveApiFactory == null) {
@@ -120,7 +259,7 @@ public final class GoogleDrive extends AbsStorageProvider {
             }
 
             googleDriveApi = getGoogleDriveApiFactory().createApi(credential);
-            userInfo = new GoogleDriveUser(googleDriveApi.about().get().setFields("name,user").execute());
+            userInfo = new GoogleDriveUser(execute(googleDriveApi.about().get().setFields("name,user")));
 
             result.setSuccess(true);
             Log.i(getName(), "Driven API successfully authenticated by DriveUser: " + userInfo);
@@ -154,8 +293,12 @@ public final class GoogleDrive extends AbsStorageProvider {
 
     @Override
     public boolean exists(String name) {
+        if(getCached(ANY_PARENT, name) != null) return true;
+        if(isCachedMissing(ANY_PARENT, name)) return false;
         try {
-            return exists("title = '" + name + "'", "id", false);
+            boolean exists = exists("title = '" + name + "'", "id", false);
+            if(!exists) cacheMissing(ANY_PARENT, name);
+            return exists;
         } catch (Exception e) {
             return false;
         }
@@ -163,8 +306,12 @@ public final class GoogleDrive extends AbsStorageProvider {
 
     @Override
     public boolean exists(RemoteFile parent, String name) {
+        if(getCached(parent.getId(), name) != null) return true;
+        if(isCachedMissing(parent.getId(), name)) return false;
         try {
-            return exists("'" + parent.getId() + "' in parents AND title = '" + name + "'", "id", false);
+            boolean exists = exists("'" + parent.getId() + "' in parents AND title = '" + name + "'", "id", false);
+            if(!exists) cacheMissing(parent.getId(), name);
+            return exists;
         } catch (Exception e) {
             return false;
         }
@@ -173,7 +320,7 @@ public final class GoogleDrive extends AbsStorageProvider {
     @Override
     public com.bingzer.android.driven.Permission getPermission(RemoteFile remoteFile) {
         try{
-            PermissionList permissionList = getGoogleDriveApi().permissions().list(remoteFile.getId()).execute();
+            PermissionList permissionList = execute(getGoogleDriveApi().permissions().list(remoteFile.getId()));
             return new GoogleDrivePermission(permissionList);
         }
         catch (Exception e) {
@@ -182,53 +329,119 @@ public final class GoogleDrive extends AbsStorageProvider {
     }
 
     @Override
-    public RemoteFile id(String id) {
-        try{
-            return new GoogleDriveFile(this, getGoogleDriveApi().files().get(id).setFields(defaultFields).execute(), false);
-        }
-        catch (IOException e){
-            return null;
-        }
+    public RemoteFile id(final String id) {
+        RemoteFile cached = getCached(id);
+        if(cached != null) return cached;
+
+        return coalesce("id:" + id, new Delegate<RemoteFile>() {
+            @Override
+            public RemoteFile invoke() {
+                try{
+                    return cache(null, new GoogleDriveFile(GoogleDrive.this, execute(getGoogleDriveApi().files().get(id).setFields(defaultFields)), false));
+                }
+                catch (IOException e){
+                    return null;
+                }
+            }
+        });
     }
 
     @Override
-    public RemoteFile get(String name) {
-        try {
-            return first("title = '" + name + "'", defaultFieldsItems, false);
-        }
-        catch (IOException e){
-            return null;
-        }
+    public RemoteFile get(final String name) {
+        RemoteFile cached = getCached(ANY_PARENT, name);
+        if(cached != null) return cached;
+        if(isCachedMissing(ANY_PARENT, name)) return null;
+
+        return coalesce("get:" + name, new Delegate<RemoteFile>() {
+            @Override
+            public RemoteFile invoke() {
+                try {
+                    RemoteFile remoteFile = first("title = '" + name + "'", defaultFieldsItems, false);
+                    if(remoteFile == null) cacheMissing(ANY_PARENT, name);
+                    return cache(ANY_PARENT, remoteFile);
+                }
+                catch (IOException e){
+                    return null;
+                }
+            }
+        });
     }
 
     @Override
-    public RemoteFile get(RemoteFile parent, String name) {
-        try {
-            return first("'" + parent.getId() + "' in parents AND title = '" + name + "'", defaultFieldsItems, false);
-        }
-        catch (IOException e){
-            return null;
+    public RemoteFile get(final RemoteFile parent, final String name) {
+        RemoteFile cached = getCached(parent.getId(), name);
+        if(cached != null) return cached;
+        if(isCachedMissing(parent.getId(), name)) return null;
+
+        return coalesce("get:" + parent.getId() + "/" + name, new Delegate<RemoteFile>() {
+            @Override
+            public RemoteFile invoke() {
+                try {
+                    RemoteFile remoteFile = first("'" + parent.getId() + "' in parents AND title = '" + name + "'", defaultFieldsItems, false);
+                    if(remoteFile == null) cacheMissing(parent.getId(), name);
+                    return cache(parent.getId(), remoteFile);
+                }
+                catch (IOException e){
+                    return null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Resolves all the uncached segments of {@code path} with one query
+     * (by their titles) and walks the hierarchy locally.
+     * Resolved segments are cached until something is renamed, moved or deleted.
+     */
+    @Override
+    public RemoteFile getByPath(final String path) {
+        final List<String> names = Path.split(path);
+        if(names.isEmpty()) return id(ROOT);
+
+        // longest resolved prefix
+        RemoteFile parent = null;
+        int start = names.size();
+        while(start > 0 && (parent = pathCache.get(joinPath(names, start))) == null){
+            start--;
         }
+        if(start == names.size()) return parent;
+
+        final RemoteFile resolved = parent;
+        final int first = start;
+        return coalesce("path:" + joinPath(names, names.size()), new Delegate<RemoteFile>() {
+            @Override
+            public RemoteFile invoke() {
+                try {
+                    return resolvePath(names, first, resolved);
+                }
+                catch (IOException e){
+                    return null;
+                }
+            }
+        });
     }
 
     @Override
     public RemoteFile update(RemoteFile remoteFile, LocalFile content) {
+        invalidate(remoteFile.getId());
         try{
             GoogleDriveFile driveFile = (GoogleDriveFile) remoteFile;
             com.google.api.services.drive.model.File file;
-            if(content == null){
-                file = getGoogleDriveApi()
+            if(content == null || isUnchanged(driveFile, content)){
+                // only the metadata
+                file = execute(getGoogleDriveApi()
                         .files()
-                        .update(driveFile.getId(), driveFile.getModel())
-                        .execute();
+                        .update(driveFile.getId(), driveFile.getModel()));
+            }
+            else if(isResumable(content)) {
+                file = new ResumableUpload(this, uploadChunkSize).update(driveFile.getId(), driveFile.getModel(), content);
             }
             else {
-                file = getGoogleDriveApi()
+                file = execute(track(getGoogleDriveApi()
                         .files()
-                        .update(driveFile.getId(), driveFile.getModel(), new com.google.api.client.http.FileContent(content.getType(), content.getFile()))
-                        .execute();
+                        .update(driveFile.getId(), driveFile.getModel(), createContent(content)), content));
             }
-            return new GoogleDriveFile(this, file, remoteFile.hasDetails());
+            return cache(null, new GoogleDriveFile(this, file, remoteFile.hasDetails()));
         }
         catch (IOException e){
             return null;
@@ -237,8 +450,9 @@ public final class GoogleDrive extends AbsStorageProvider {
 
     @Override
     public boolean delete(String id) {
+        invalidate(id);
         try {
-            getGoogleDriveApi().files().delete(id).execute();
+            execute(getGoogleDriveApi().files().delete(id));
             return true;
         }
         catch (IOException e){
@@ -267,9 +481,9 @@ public final class GoogleDrive extends AbsStorageProvider {
                 file.setParents(Arrays.asList(new ParentReference().setId(parent.getId())));
 
             /////////////////////////////////////
-            file = getGoogleDriveApi().files().insert(file).execute();
+            file = execute(getGoogleDriveApi().files().insert(file));
 
-            return id(file.getId());
+            return cache(parent != null ? parent.getId() : null, id(file.getId()));
         }
         catch (IOException e){
             return null;
@@ -286,9 +500,12 @@ public final class GoogleDrive extends AbsStorageProvider {
                 file.setParents(Arrays.asList(new ParentReference().setId(parent.getId())));
 
             /////////////////////////////////////
-            file = getGoogleDriveApi().files().insert(file, new com.google.api.client.http.FileContent(local.getType(), local.getFile())).execute();
+            if(isResumable(local))
+                file = new ResumableUpload(this, uploadChunkSize).insert(file, local);
+            else
+                file = execute(track(getGoogleDriveApi().files().insert(file, createContent(local)), local));
 
-            return id(file.getId());
+            return cache(parent != null ? parent.getId() : null, id(file.getId()));
         }
         catch (IOException e){
             return null;
@@ -296,9 +513,23 @@ public final class GoogleDrive extends AbsStorageProvider {
     }
 
     @Override
-    public java.util.List<RemoteFile> list() {
-        try {
-            return list("'root' in parents", defaultFieldsItems, false);
+    public RemoteFile create(RemoteFile parent, String name, String type, InputStream content, long length) {
+        try{
+            com.google.api.services.drive.model.File file = new com.google.api.services.drive.model.File();
+            file.setTitle(name);
+            file.setMimeType(type);
+
+            if (parent != null)
+                file.setParents(Arrays.asList(new ParentReference().setId(parent.getId())));
+
+            /////////////////////////////////////
+            // the client switches to a resumable upload when the length is unknown
+            InputStreamContent mediaContent = new InputStreamContent(type, IOUtils.throttle(IOUtils.interruptible(content), getBandwidthLimiter()))
+                    .setLength(length)
+                    .setCloseInputStream(false);
+            file = execute(getGoogleDriveApi().files().insert(file, mediaContent));
+
+            return cache(parent != null ? parent.getId() : null, id(file.getId()));
         }
         catch (IOException e){
             return null;
@@ -306,21 +537,24 @@ public final class GoogleDrive extends AbsStorageProvider {
     }
 
     @Override
-    public java.util.List<RemoteFile> list(RemoteFile parent) {
+    public java.util.List<RemoteFile> list() {
+        return listChildren(ROOT);
+    }
+
+    @Override
+    public java.util.List<RemoteFile> list(final RemoteFile parent) {
         if(parent == null) return list();
 
-        try {
-            return list("'" + parent.getId() + "' in parents", defaultFieldsItems, false);
-        }
-        catch (IOException e){
-            return null;
-        }
+        return listChildren(parent.getId());
     }
 
     @Override
     public RemoteFile getDetails(RemoteFile remoteFile) {
+        RemoteFile cached = getCached(remoteFile.getId());
+        if(cached != null && cached.hasDetails()) return cached;
+
         try{
-            return new GoogleDriveFile(this, getGoogleDriveApi().files().get(remoteFile.getId()).execute(), true);
+            return cache(null, new GoogleDriveFile(this, execute(getGoogleDriveApi().files().get(remoteFile.getId())), true));
         }
         catch (IOException e){
             return null;
@@ -329,21 +563,78 @@ public final class GoogleDrive extends AbsStorageProvider {
 
     @Override
     public boolean download(RemoteFile remoteFile, LocalFile local) {
+        local.setModified(true);
+        if(downloadFromCache(remoteFile, local)) {
+            // we don't know the ETag of the cached copy
+            local.setRevision(null);
+            return true;
+        }
+
+        PartialFile partialFile = null;
         try{
+            // continue where the last attempt left off (if it was the same content)
+            partialFile = new PartialFile(local.getFile(), getContentRevision(remoteFile));
+            long offset = partialFile.length();
+            if(offset == 0 && isSegmented(remoteFile, local) && downloadSegmented(remoteFile, local, partialFile))
+                return true;
+            if(offset > 0 && offset == getFileSize(remoteFile)){
+                // everything was downloaded last time but never moved in place
+                // (segmented downloads use their own file, this one was written in order)
+                partialFile.commit();
+                local.setRevision(null);
+                putToCache(remoteFile, getContentRevision(remoteFile), local);
+                return true;
+            }
+
             GenericUrl url = new GenericUrl(remoteFile.getDownloadUrl());
             HttpRequestFactory factory = getGoogleDriveApi().getRequestFactory();
             HttpRequest request = factory.buildGetRequest(url);
-            HttpResponse response = request.execute();
-
-            IOUtils.copyFile(response.getContent(), local.getFile());
+            if(local.getRevision() != null && local.getFile().exists())
+                request.getHeaders().setIfNoneMatch(local.getRevision());
+            if(offset > 0)
+                request.getHeaders().setRange("bytes=" + offset + "-");
+            HttpResponse response = execute(request);
+
+            // the server may ignore the range and send everything
+            boolean append = response.getStatusCode() == SegmentedDownload.STATUS_PARTIAL_CONTENT;
+            ProgressTracker tracker = new ProgressTracker(local.getTransferListener(), getFileSize(remoteFile));
+            if(append) tracker.set(offset);
+            IOUtils.copy(IOUtils.throttle(response.getContent(), getBandwidthLimiter()), partialFile.openOutput(append), tracker);
+            partialFile.commit();
+
+            local.setRevision(response.getHeaders().getETag());
+            putToCache(remoteFile, getContentRevision(remoteFile), local);
 
             return true;
         }
+        catch (HttpResponseException e){
+            if(e.getStatusCode() == HttpStatusCodes.STATUS_CODE_NOT_MODIFIED){
+                local.setModified(false);
+                return true;
+            }
+            if(e.getStatusCode() == SegmentedDownload.STATUS_RANGE_NOT_SATISFIABLE && partialFile != null && partialFile.length() > 0){
+                // the partial file doesn't match the content after all, start over
+                partialFile.discard();
+                return download(remoteFile, local);
+            }
+            return false;
+        }
         catch (IOException e){
             return false;
         }
     }
 
+    @Override
+    public InputStream open(RemoteFile remoteFile) {
+        try {
+            HttpRequest request = getGoogleDriveApi().getRequestFactory().buildGetRequest(new GenericUrl(remoteFile.getDownloadUrl()));
+            return IOUtils.throttle(execute(request).getContent(), getBandwidthLimiter());
+        }
+        catch (IOException e){
+            return null;
+        }
+    }
+
     /**
      * Returns the "Search" interface
      */
@@ -384,6 +675,195 @@ public final class GoogleDrive extends AbsStorageProvider {
 
     /////////////////////////////////////////////////////////////////////////////////////////////
 
+    @Override
+    protected void invalidate(String id) {
+        super.invalidate(id);
+        // we don't know which paths go through this file
+        pathCache.clear();
+    }
+
+    @Override
+    protected String getContentRevision(RemoteFile remoteFile) {
+        com.google.api.services.drive.model.File file = ((GoogleDriveFile) remoteFile).getModel();
+        if(file.getMd5Checksum() != null) return file.getMd5Checksum();
+        return file.getHeadRevisionId();
+    }
+
+    @Override
+    protected String getFolderKey(RemoteFile folder) {
+        return folder != null ? folder.getId() : ROOT;
+    }
+
+    @Override
+    protected MetadataStore.Record toRecord(RemoteFile remoteFile) {
+        MetadataStore.Record record = super.toRecord(remoteFile);
+        com.google.api.services.drive.model.File file = ((GoogleDriveFile) remoteFile).getModel();
+        if(file.getFileSize() != null) record.size = file.getFileSize();
+        record.revision = file.getMd5Checksum();
+        if(file.getModifiedDate() != null) record.modified = file.getModifiedDate().toStringRfc3339();
+        return record;
+    }
+
+    @Override
+    protected RemoteFile fromRecord(MetadataStore.Record record) {
+        com.google.api.services.drive.model.File file = new com.google.api.services.drive.model.File()
+                .setId(record.id)
+                .setTitle(record.name)
+                .setMimeType(record.type)
+                .setDownloadUrl(record.downloadUrl)
+                .setMd5Checksum(record.revision);
+        if(record.size >= 0) file.setFileSize(record.size);
+        if(record.modified != null) file.setModifiedDate(DateTime.parseRfc3339(record.modified));
+        return new GoogleDriveFile(this, file, false);
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Executes {@code request} through the {@link ConcurrencyLimiter}
+     */
+    private <T> T execute(AbstractGoogleClientRequest<T> request) throws IOException {
+        ConcurrencyLimiter limiter = acquire();
+        boolean throttled = false;
+        try {
+            return request.execute();
+        }
+        catch (HttpResponseException e){
+            throttled = isThrottled(e);
+            throw e;
+        }
+        finally {
+            limiter.release(throttled);
+        }
+    }
+
+    /**
+     * Executes {@code request} through the {@link ConcurrencyLimiter}
+     */
+    HttpResponse execute(HttpRequest request) throws IOException {
+        ConcurrencyLimiter limiter = acquire();
+        boolean throttled = false;
+        try {
+            HttpResponse response = request.execute();
+            // requests that don't throw on errors (i.e: resumable uploads) are throttled here
+            throttled = isThrottled(response.getStatusCode());
+            return response;
+        }
+        catch (HttpResponseException e){
+            throttled = isThrottled(e);
+            throw e;
+        }
+        finally {
+            limiter.release(throttled);
+        }
+    }
+
+    /**
+     * Only when there's nothing to revalidate (a conditional request is cheaper)
+     */
+    private boolean isSegmented(RemoteFile remoteFile, LocalFile local){
+        long fileSize = getFileSize(remoteFile);
+        return segmentedDownloadThreshold >= 0 && fileSize > segmentedDownloadThreshold
+                && (local.getRevision() == null || !local.getFile().exists());
+    }
+
+    /**
+     * Returns the size of the content or -1 if unknown
+     */
+    private long getFileSize(RemoteFile remoteFile){
+        Long fileSize = ((GoogleDriveFile) remoteFile).getModel().getFileSize();
+        return fileSize != null ? fileSize : -1;
+    }
+
+    /**
+     * Reports the progress of a media upload to the {@link com.bingzer.android.driven.contracts.TransferListener}
+     * of {@code local} (if any)
+     */
+    private <R extends AbstractGoogleClientRequest<?>> R track(R request, LocalFile local){
+        MediaHttpUploader uploader = request.getMediaHttpUploader();
+        if(uploader == null || local.getTransferListener() == null) return request;
+
+        final ProgressTracker tracker = new ProgressTracker(local.getTransferListener(), local.getFile().length());
+        uploader.setProgressListener(new MediaHttpUploaderProgressListener() {
+            @Override
+            public void progressChanged(MediaHttpUploader uploader) throws IOException {
+                tracker.set(uploader.getNumBytesUploaded());
+                if(uploader.getUploadState() == MediaHttpUploader.UploadState.MEDIA_COMPLETE)
+                    tracker.done();
+            }
+        });
+        return request;
+    }
+
+    /**
+     * Returns false if the segmented download failed
+     * and should be retried as a single stream
+     */
+    private boolean downloadSegmented(RemoteFile remoteFile, LocalFile local, PartialFile partialFile) throws IOException {
+        long fileSize = getFileSize(remoteFile);
+        try {
+            ProgressTracker tracker = new ProgressTracker(local.getTransferListener(), fileSize);
+            String etag = new SegmentedDownload(this, downloadSegments).download(remoteFile.getDownloadUrl(), fileSize, partialFile.getSegmentedFile(), tracker);
+            partialFile.commitSegmented();
+
+            local.setRevision(etag);
+            putToCache(remoteFile, getContentRevision(remoteFile), local);
+            return true;
+        }
+        catch (IOException e){
+            // the file is preallocated, it can't be resumed
+            partialFile.discard();
+            if(SegmentedDownload.isCancelled(e)) throw toInterruptedIOException(e);
+            return false;
+        }
+    }
+
+    private static InterruptedIOException toInterruptedIOException(IOException e){
+        if(e instanceof InterruptedIOException) return (InterruptedIOException) e;
+        InterruptedIOException interrupted = new InterruptedIOException("Download cancelled");
+        interrupted.initCause(e);
+        return interrupted;
+    }
+
+    /**
+     * True if {@code local} has the same content as {@code driveFile} (by its MD5)
+     */
+    private boolean isUnchanged(GoogleDriveFile driveFile, LocalFile local) throws IOException {
+        com.google.api.services.drive.model.File file = driveFile.getModel();
+        if(file.getMd5Checksum() == null || file.getFileSize() == null) return false;
+        if(file.getFileSize() != local.getFile().length()) return false;
+
+        return file.getMd5Checksum().equalsIgnoreCase(ChecksumCache.getDefault().getMd5(local.getFile()));
+    }
+
+    /**
+     * The content of a simple upload. It's only read through a stream
+     * when the bandwidth is limited
+     */
+    private AbstractInputStreamContent createContent(LocalFile local) throws IOException {
+        if(!getBandwidthLimiter().isLimited())
+            return new FileContent(local.getType(), local.getFile());
+
+        InputStream input = IOUtils.throttle(new FileInputStream(local.getFile()), getBandwidthLimiter());
+        return new InputStreamContent(local.getType(), input).setLength(local.getFile().length());
+    }
+
+    private boolean isResumable(LocalFile local){
+        return local.getFile().length() > resumableUploadThreshold;
+    }
+
+    private ConcurrencyLimiter acquire() throws IOException {
+        ConcurrencyLimiter limiter = getConcurrencyLimiter();
+        try {
+            limiter.acquire();
+            return limiter;
+        }
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the ConcurrencyLimiter");
+        }
+    }
+
     private boolean exists(String query, String fields, boolean includeTrashed) throws IOException {
         return first(query, fields, includeTrashed) != null;
     }
@@ -403,7 +883,154 @@ public final class GoogleDrive extends AbsStorageProvider {
         if(query != null) list.setQ(query);
         if(!includeTrashed) list.setQ(query + (query != null ? " AND" : "") + " trashed = false");
 
-        return list(list.execute());
+        return list(execute(list));
+    }
+
+    private List<RemoteFile> listChildren(final String folderId){
+        return coalesceList("list:" + folderId, new Delegate<List<RemoteFile>>() {
+            @Override
+            public List<RemoteFile> invoke() {
+                try {
+                    if(!isListingCached())
+                        return list("'" + folderId + "' in parents", defaultFieldsItems, false);
+
+                    ListingCache.Listing listing = getListing(folderId);
+                    if(listing != null){
+                        List<RemoteFile> list = revalidate(folderId, listing);
+                        if(list != null) return list;
+                    }
+
+                    // get the change id first so we won't miss any change made while listing
+                    Long largestChangeId = execute(getGoogleDriveApi().about().get().setFields("largestChangeId")).getLargestChangeId();
+                    List<RemoteFile> list = list("'" + folderId + "' in parents", defaultFieldsItems, false);
+                    putListing(folderId, list, largestChangeId != null ? largestChangeId.toString() : null);
+                    return list;
+                }
+                catch (IOException e){
+                    return null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Applies the changes made since the listing was cached.
+     * Returns null if the listing can't be revalidated
+     */
+    private List<RemoteFile> revalidate(String folderId, ListingCache.Listing listing) throws IOException {
+        long startChangeId;
+        try {
+            startChangeId = Long.parseLong(listing.getValidator()) + 1;
+        }
+        catch (NumberFormatException e){
+            return null;
+        }
+
+        Map<String, RemoteFile> files = new LinkedHashMap<String, RemoteFile>();
+        for(RemoteFile remoteFile : listing.getFiles()){
+            files.put(remoteFile.getId(), remoteFile);
+        }
+
+        Long largestChangeId;
+        String pageToken = null;
+        do {
+            Drive.Changes.List request = getGoogleDriveApi().changes().list()
+                    .setStartChangeId(startChangeId)
+                    .setIncludeDeleted(true)
+                    .setMaxResults(1000)
+                    .setFields(changeFields);
+            if(pageToken != null) request.setPageToken(pageToken);
+
+            ChangeList changeList = execute(request);
+            if(changeList == null) return null;
+            if(changeList.getItems() != null){
+                for(Change change : changeList.getItems()){
+                    if(isChild(folderId, change))
+                        files.put(change.getFileId(), new GoogleDriveFile(this, change.getFile(), false));
+                    else
+                        files.remove(change.getFileId());
+                }
+            }
+
+            largestChangeId = changeList.getLargestChangeId();
+            pageToken = changeList.getNextPageToken();
+        } while(pageToken != null);
+
+        if(largestChangeId == null) return null;
+
+        List<RemoteFile> list = new ArrayList<RemoteFile>(files.values());
+        putListing(folderId, list, largestChangeId.toString());
+        return list;
+    }
+
+    private static boolean isChild(String folderId, Change change){
+        com.google.api.services.drive.model.File file = change.getFile();
+        if(Boolean.TRUE.equals(change.getDeleted()) || file == null)
+            return false;
+        if(file.getLabels() != null && Boolean.TRUE.equals(file.getLabels().getTrashed()))
+            return false;
+
+        return hasParent(file, folderId);
+    }
+
+    private RemoteFile resolvePath(List<String> names, int start, RemoteFile parent) throws IOException {
+        // get all the candidates in one go
+        StringBuilder query = new StringBuilder("(");
+        for(int i = start; i < names.size(); i++){
+            if(i > start) query.append(" OR ");
+            query.append("title = '").append(names.get(i).replace("'", "\\'")).append("'");
+        }
+        query.append(") AND trashed = false");
+
+        List<com.google.api.services.drive.model.File> candidates = new ArrayList<com.google.api.services.drive.model.File>();
+        String pageToken = null;
+        do {
+            Drive.Files.List request = getGoogleDriveApi().files().list()
+                    .setQ(query.toString())
+                    .setFields("items(" + defaultFields + ",parents(id,isRoot)),nextPageToken");
+            if(pageToken != null) request.setPageToken(pageToken);
+
+            FileList fileList = execute(request);
+            if(fileList == null) return null;
+            if(fileList.getItems() != null) candidates.addAll(fileList.getItems());
+            pageToken = fileList.getNextPageToken();
+        } while(pageToken != null);
+
+        // walk down
+        String parentId = parent != null ? parent.getId() : ROOT;
+        RemoteFile current = parent;
+        for(int i = start; i < names.size(); i++){
+            com.google.api.services.drive.model.File match = null;
+            for(com.google.api.services.drive.model.File candidate : candidates){
+                if(names.get(i).equals(candidate.getTitle()) && hasParent(candidate, parentId)){
+                    match = candidate;
+                    break;
+                }
+            }
+            if(match == null) return null;
+
+            current = new GoogleDriveFile(this, match, false);
+            pathCache.put(joinPath(names, i + 1), current);
+            parentId = match.getId();
+        }
+        return current;
+    }
+
+    private static boolean hasParent(com.google.api.services.drive.model.File file, String parentId){
+        if(file.getParents() == null) return false;
+        for(ParentReference parent : file.getParents()){
+            if(parentId.equals(parent.getId())) return true;
+            if(ROOT.equals(parentId) && Boolean.TRUE.equals(parent.getIsRoot())) return true;
+        }
+        return false;
+    }
+
+    private static String joinPath(List<String> names, int count){
+        StringBuilder path = new StringBuilder();
+        for(int i = 0; i < count; i++){
+            path.append(Path.SEPARATOR).append(names.get(i));
+        }
+        return path.toString();
     }
 
     private List<RemoteFile> list(FileList fileList){
@@ -421,6 +1048,10 @@ public final class GoogleDrive extends AbsStorageProvider {
 
     class SearchImpl extends AbsSearch {
 
+        SearchImpl(){
+            super(GoogleDrive.this);
+        }
+
         @Override
         public RemoteFile first(String query) {
             try{
@@ -453,6 +1084,10 @@ public final class GoogleDrive extends AbsStorageProvider {
 
     class SharingImpl extends AbsSharing {
 
+        SharingImpl(){
+            super(GoogleDrive.this);
+        }
+
         @Override
         public boolean isSupported() {
             return true;
@@ -472,7 +1107,7 @@ public final class GoogleDrive extends AbsStorageProvider {
                 permission.setType("user");
                 permission.setRole(getPermissionName(kind));
 
-                permission = getGoogleDriveApi().permissions().insert(remoteFile.getId(), permission).execute();
+                permission = execute(getGoogleDriveApi().permissions().insert(remoteFile.getId(), permission));
                 return permission.getSelfLink();
             }
             catch (IOException e){
@@ -484,10 +1119,10 @@ public final class GoogleDrive extends AbsStorageProvider {
         public boolean removeSharing(RemoteFile remoteFile, String user) {
             try{
                 String fieldId = remoteFile.getId();
-                PermissionList permissionList = getGoogleDriveApi().permissions().list(fieldId).execute();
+                PermissionList permissionList = execute(getGoogleDriveApi().permissions().list(fieldId));
                 for(Permission p : permissionList.getItems()){
                     if(user.equalsIgnoreCase(p.getName()) || user.equalsIgnoreCase(p.getEmailAddress())){
-                        googleDriveApi.permissions().delete(fieldId, p.getId()).execute();
+                        execute(googleDriveApi.permissions().delete(fieldId, p.getId()));
                         return true;
                     }
                 }
@@ -502,6 +1137,10 @@ public final class GoogleDrive extends AbsStorageProvider {
 
     class SharedWithMeImpl extends AbsSharedWithMe {
 
+        SharedWithMeImpl(){
+            super(GoogleDrive.this);
+        }
+
         @Override
         public boolean isSupported() {
             return true;
@@ -540,6 +1179,10 @@ public final class GoogleDrive extends AbsStorageProvider {
 
     class TrashedImpl extends AbsTrashed {
 
+        TrashedImpl(){
+            super(GoogleDrive.this);
+        }
+
         @Override
         public boolean isSupported() {
             return true;
@@ -614,6 +1257,31 @@ public final class GoogleDrive extends AbsStorageProvider {
 
     ///////////////////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * True if Google Drive rejected the request because we're calling it too often
+     */
+    static boolean isThrottled(HttpResponseException e){
+        int statusCode = e.getStatusCode();
+        if(isThrottled(statusCode))
+            return true;
+
+        if(statusCode == HttpStatusCodes.STATUS_CODE_FORBIDDEN && e instanceof GoogleJsonResponseException){
+            GoogleJsonError details = ((GoogleJsonResponseException) e).getDetails();
+            if(details != null && details.getErrors() != null){
+                for(GoogleJsonError.ErrorInfo error : details.getErrors()){
+                    if("rateLimitExceeded".equals(error.getReason()) || "userRateLimitExceeded".equals(error.getReason()))
+                        return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    static boolean isThrottled(int statusCode){
+        return statusCode == 429 || statusCode == HttpStatusCodes.STATUS_CODE_SERVICE_UNAVAILABLE;
+    }
+
     static String getPermissionName(int kind){
         switch (kind){
             default: return "writer";
@@ -22,6 +22,7 @@ import com.google.api.client.extensions.android.http.AndroidHttp;
 import com.google.api.client.extensions.android.json.AndroidJsonFactory;
 import com.google.api.client.googleapis.extensions.android.gms.auth.GoogleAccountCredential;
 import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.json.JsonFactory;
 import com.google.api.services.drive.Drive;
 import com.google.api.services.drive.DriveScopes;
 
@@ -37,7 +38,9 @@ interface GoogleDriveApi {
     Drive.About about();
     Drive.Files files();
     Drive.Permissions permissions();
+    Drive.Changes changes();
     HttpRequestFactory getRequestFactory();
+    JsonFactory getJsonFactory();
 
     ///////////////////////////////////////////////////////////////////////////////
 
@@ -64,10 +67,20 @@ interface GoogleDriveApi {
             return drive.permissions();
         }
 
+        @Override
+        public Drive.Changes changes() {
+            return drive.changes();
+        }
+
         @Override
         public HttpRequestFactory getRequestFactory() {
             return drive.getRequestFactory();
         }
+
+        @Override
+        public JsonFactory getJsonFactory() {
+            return drive.getJsonFactory();
+        }
     }
 
     ///////////////////////////////////////////////////////////////////////////////
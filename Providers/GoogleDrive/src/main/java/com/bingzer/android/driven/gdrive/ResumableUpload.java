@@ -0,0 +1,264 @@
+/**
+ * Copyright 2014 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance insert the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bingzer.android.driven.gdrive;
+
+import com.bingzer.android.driven.LocalFile;
+import com.bingzer.android.driven.MetadataStore;
+import com.bingzer.android.driven.utils.BufferPool;
+import com.bingzer.android.driven.utils.IOUtils;
+import com.bingzer.android.driven.utils.ProgressTracker;
+import com.google.api.client.http.ByteArrayContent;
+import com.google.api.client.http.EmptyContent;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpMethods;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.HttpStatusCodes;
+import com.google.api.client.http.json.JsonHttpContent;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.services.drive.model.File;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Uploads a file using Drive's resumable upload protocol.
+ * The content is sent in chunks and each chunk is retried on its own.
+ * The session URI is kept in the {@link MetadataStore} (if there's one)
+ * so an upload can resume where it left off after the process dies.
+ */
+final class ResumableUpload {
+
+    static final String UPLOAD_TOKEN = "upload:";
+    static final String UPLOAD_URL = "https://www.googleapis.com/upload/drive/v2/files";
+    static final int STATUS_RESUME_INCOMPLETE = 308;
+    static final int MAX_CHUNK_RETRIES = 3;
+    static final long RETRY_DELAY = 1000;
+    private static final String DEFAULT_TYPE = "application/octet-stream";
+
+    // upload sessions when there's no MetadataStore
+    private static final Map<String, String> sessions = new ConcurrentHashMap<String, String>();
+
+    private final GoogleDrive drive;
+    private final int chunkSize;
+
+    ResumableUpload(GoogleDrive drive, int chunkSize){
+        this.drive = drive;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Uploads {@code local} as a new file
+     */
+    File insert(File metadata, LocalFile local) throws IOException {
+        return upload(HttpMethods.POST, new GenericUrl(UPLOAD_URL), metadata, local);
+    }
+
+    /**
+     * Uploads {@code local} as the new content of {@code fileId}
+     */
+    File update(String fileId, File metadata, LocalFile local) throws IOException {
+        return upload(HttpMethods.PUT, new GenericUrl(UPLOAD_URL + "/" + fileId), metadata, local);
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////
+
+    private File upload(String method, GenericUrl url, File metadata, LocalFile local) throws IOException {
+        url.set("uploadType", "resumable");
+
+        java.io.File file = local.getFile();
+        long length = file.length();
+        String type = local.getType() != null ? local.getType() : DEFAULT_TYPE;
+        String key = getSessionKey(method, url, file);
+
+        // -1 means we need to ask the server how much it has
+        long offset = -1;
+        String sessionUri = getSession(key);
+        if(sessionUri == null){
+            sessionUri = startSession(method, url, metadata, type, length);
+            putSession(key, sessionUri);
+            offset = 0;
+        }
+
+        ProgressTracker tracker = new ProgressTracker(local.getTransferListener(), length);
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        BufferPool pool = BufferPool.getDefault();
+        byte[] buffer = pool.acquire(chunkSize);
+        try {
+            boolean restarted = false;
+            int retries = 0;
+            while(true){
+                IOUtils.throwIfInterrupted();
+                try {
+                    HttpResponse response = offset < 0 || offset >= length ?
+                            queryStatus(sessionUri, length) :
+                            putChunk(sessionUri, input, buffer, offset, length, type);
+                    try {
+                        int statusCode = response.getStatusCode();
+                        if(response.isSuccessStatusCode()){
+                            putSession(key, null);
+                            tracker.set(length);
+                            tracker.done();
+                            return response.parseAs(File.class);
+                        }
+                        if(statusCode == STATUS_RESUME_INCOMPLETE){
+                            offset = getNextOffset(response.getHeaders().getRange());
+                            tracker.set(offset);
+                            retries = 0;
+                            continue;
+                        }
+                        if(!restarted && (statusCode == HttpStatusCodes.STATUS_CODE_NOT_FOUND || statusCode == 410)){
+                            // the session has expired, start over
+                            restarted = true;
+                            sessionUri = startSession(method, url, metadata, type, length);
+                            putSession(key, sessionUri);
+                            offset = 0;
+                            continue;
+                        }
+                        throw new HttpResponseException(response);
+                    }
+                    finally {
+                        response.disconnect();
+                    }
+                }
+                catch (IOException e){
+                    if(!isRetriable(e) || ++retries > MAX_CHUNK_RETRIES) throw e;
+
+                    pause(retries);
+                    offset = -1;
+                }
+            }
+        }
+        finally {
+            pool.release(buffer);
+            input.close();
+        }
+    }
+
+    private String startSession(String method, GenericUrl url, File metadata, String type, long length) throws IOException {
+        JsonFactory jsonFactory = drive.getGoogleDriveApi().getJsonFactory();
+        HttpRequest request = getRequestFactory().buildRequest(method, url, new JsonHttpContent(jsonFactory, metadata));
+        request.getHeaders().set("X-Upload-Content-Type", type);
+        request.getHeaders().set("X-Upload-Content-Length", length);
+
+        HttpResponse response = drive.execute(request);
+        try {
+            String location = response.getHeaders().getLocation();
+            if(location == null) throw new IOException("No upload session was returned");
+            return location;
+        }
+        finally {
+            response.disconnect();
+        }
+    }
+
+    private HttpResponse putChunk(String sessionUri, RandomAccessFile input, byte[] buffer, long offset, long length, String type) throws IOException {
+        int count = (int) Math.min(chunkSize, length - offset);
+        input.seek(offset);
+        input.readFully(buffer, 0, count);
+        drive.getBandwidthLimiter().acquire(count);
+
+        HttpRequest request = buildRequest(sessionUri, new ByteArrayContent(type, buffer, 0, count));
+        request.getHeaders().setContentRange("bytes " + offset + "-" + (offset + count - 1) + "/" + length);
+        return drive.execute(request);
+    }
+
+    private HttpResponse queryStatus(String sessionUri, long length) throws IOException {
+        HttpRequest request = buildRequest(sessionUri, new EmptyContent());
+        request.getHeaders().setContentRange("bytes */" + length);
+        return drive.execute(request);
+    }
+
+    private HttpRequest buildRequest(String sessionUri, HttpContent content) throws IOException {
+        HttpRequest request = getRequestFactory().buildPutRequest(new GenericUrl(sessionUri), content);
+        request.setParser(drive.getGoogleDriveApi().getJsonFactory().createJsonObjectParser());
+        // 308 and 404 are part of the protocol
+        request.setThrowExceptionOnExecuteError(false);
+        return request;
+    }
+
+    private HttpRequestFactory getRequestFactory(){
+        return drive.getGoogleDriveApi().getRequestFactory();
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////
+
+    private String getSession(String key){
+        MetadataStore store = drive.getMetadataStore();
+        if(store != null) return store.getToken(drive.getName(), key);
+        return sessions.get(key);
+    }
+
+    private void putSession(String key, String sessionUri){
+        MetadataStore store = drive.getMetadataStore();
+        if(store != null) store.putToken(drive.getName(), key, sessionUri);
+        else if(sessionUri != null) sessions.put(key, sessionUri);
+        else sessions.remove(key);
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * The session is only reused for the same target and the same (unmodified) local file
+     */
+    static String getSessionKey(String method, GenericUrl url, java.io.File file){
+        return UPLOAD_TOKEN + method + " " + url.build() + " " + file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+    }
+
+    /**
+     * Returns the offset of the next byte to send from
+     * the "Range" header (i.e: "bytes=0-524287")
+     */
+    static long getNextOffset(String range){
+        if(range == null) return 0;
+
+        int index = range.lastIndexOf('-');
+        if(index < 0) return 0;
+        try {
+            return Long.parseLong(range.substring(index + 1).trim()) + 1;
+        }
+        catch (NumberFormatException e){
+            return 0;
+        }
+    }
+
+    static boolean isRetriable(IOException e){
+        if(e instanceof InterruptedIOException) return false;
+        if(e instanceof HttpResponseException){
+            HttpResponseException responseException = (HttpResponseException) e;
+            return responseException.getStatusCode() >= HttpStatusCodes.STATUS_CODE_SERVER_ERROR
+                    || GoogleDrive.isThrottled(responseException);
+        }
+        // network errors
+        return true;
+    }
+
+    private static void pause(int retries) throws InterruptedIOException {
+        try {
+            Thread.sleep(RETRY_DELAY << (retries - 1));
+        }
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Upload has been cancelled");
+        }
+    }
+}
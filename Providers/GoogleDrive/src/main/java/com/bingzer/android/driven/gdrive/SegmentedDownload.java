@@ -0,0 +1,163 @@
+/**
+ * Copyright 2014 Ricky Tobing
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance insert the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bingzer.android.driven.gdrive;
+
+import com.bingzer.android.driven.DrivenException;
+import com.bingzer.android.driven.contracts.Delegate;
+import com.bingzer.android.driven.contracts.Lane;
+import com.bingzer.android.driven.utils.BufferPool;
+import com.bingzer.android.driven.utils.IOUtils;
+import com.bingzer.android.driven.utils.Pipeline;
+import com.bingzer.android.driven.utils.ProgressTracker;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Downloads a file as several byte ranges at the same time.
+ * The ranges are fetched in {@link GoogleDrive#getSegmentExecutor()}
+ * (not the {@link Lane#TRANSFER} lane the download itself usually runs in)
+ * and written straight into their position of a preallocated file.
+ */
+final class SegmentedDownload {
+
+    static final int STATUS_PARTIAL_CONTENT = 206;
+    static final int STATUS_RANGE_NOT_SATISFIABLE = 416;
+
+    private final GoogleDrive drive;
+    private final int segments;
+
+    SegmentedDownload(GoogleDrive drive, int segments){
+        this.drive = drive;
+        this.segments = segments;
+    }
+
+    /**
+     * Downloads {@code length} bytes from {@code url} into {@code dest}.
+     * Returns the ETag of the content
+     */
+    String download(final String url, long length, File dest, final ProgressTracker tracker) throws IOException {
+        IOUtils.safeCreateDir(dest.getAbsoluteFile().getParentFile());
+        RandomAccessFile file = new RandomAccessFile(dest, "rw");
+        try {
+            file.setLength(length);
+            final FileChannel channel = file.getChannel();
+
+            List<Delegate<String>> delegates = new ArrayList<Delegate<String>>();
+            for(final long[] range : split(length, segments)){
+                delegates.add(new Delegate<String>() {
+                    @Override
+                    public String invoke() {
+                        try {
+                            return fetch(url, range[0], range[1], channel, tracker);
+                        }
+                        catch (IOException e){
+                            throw new DrivenException(e);
+                        }
+                    }
+                });
+            }
+
+            List<String> etags = Pipeline.allOf(drive.getSegmentExecutor(), delegates).execute();
+            for(String etag : etags){
+                if(etag != null && !etag.equals(etags.get(0)))
+                    throw new IOException("Content changed during the download");
+            }
+            tracker.done();
+            return etags.get(0);
+        }
+        catch (DrivenException e){
+            if(e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if(e.getCause() instanceof InterruptedException){
+                InterruptedIOException interrupted = new InterruptedIOException("Interrupted while waiting for the segments");
+                interrupted.initCause(e.getCause());
+                throw interrupted;
+            }
+            throw e;
+        }
+        finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Fetches the bytes from {@code start} to {@code end} (inclusive)
+     * and writes them at the same position in {@code channel}
+     */
+    private String fetch(String url, long start, long end, FileChannel channel, ProgressTracker tracker) throws IOException {
+        HttpRequest request = drive.getGoogleDriveApi().getRequestFactory().buildGetRequest(new GenericUrl(url));
+        request.getHeaders().setRange("bytes=" + start + "-" + end);
+        HttpResponse response = drive.execute(request);
+        BufferPool pool = BufferPool.getDefault();
+        byte[] buffer = null;
+        try {
+            if(response.getStatusCode() != STATUS_PARTIAL_CONTENT)
+                throw new IOException("Server doesn't support ranged requests");
+
+            InputStream input = IOUtils.throttle(response.getContent(), drive.getBandwidthLimiter());
+            buffer = pool.acquire(IOUtils.COPY_BUFFER_SIZE);
+            long position = start;
+            int read;
+            while(position <= end && (read = input.read(buffer)) != -1){
+                IOUtils.throwIfInterrupted();
+                ByteBuffer source = ByteBuffer.wrap(buffer, 0, read);
+                while(source.hasRemaining()){
+                    position += channel.write(source, position);
+                }
+                tracker.add(read);
+            }
+            if(position <= end) throw new IOException("Unexpected end of range " + start + "-" + end);
+
+            return response.getHeaders().getETag();
+        }
+        finally {
+            pool.release(buffer);
+            response.disconnect();
+        }
+    }
+
+    /**
+     * True if {@code e} was caused by a cancel. A segment interrupted in the middle
+     * of {@link FileChannel#write} throws a {@link ClosedByInterruptException}
+     */
+    static boolean isCancelled(IOException e){
+        return e instanceof InterruptedIOException || e instanceof ClosedByInterruptException
+                || Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * Splits {@code length} bytes into {@code count} (inclusive) ranges
+     */
+    static List<long[]> split(long length, int count){
+        List<long[]> ranges = new ArrayList<long[]>(count);
+        long size = (length + count - 1) / count;
+        for(long start = 0; start < length; start += size){
+            ranges.add(new long[]{ start, Math.min(start + size, length) - 1 });
+        }
+        return ranges;
+    }
+}